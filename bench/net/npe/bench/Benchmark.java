@@ -0,0 +1,81 @@
+/**
+ * Benchmark.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.bench;
+
+import java.util.Arrays;
+
+/**
+ * Minimal benchmark runner in the manner of JMH, which needs no dependency.
+ * <p>
+ * An operation is warmed up for WARMUP_ITERATIONS iterations, then measured for MEASURE_ITERATIONS iterations
+ * of about ITERATION_NANOS each, and the median time per operation is reported.
+ * Run each benchmark in its own JVM (see the bench target of build.xml).
+ * </p>
+ */
+public final class Benchmark {
+	
+	public interface Operation {
+		void run() throws Exception;
+	}
+	
+	/**
+	 * measure an operation.
+	 * @param operation operation
+	 * @return median nanoseconds per operation
+	 * @throws Exception exception of the operation
+	 */
+	public static double measure(Operation operation) throws Exception {
+		for(int i=0; i<WARMUP_ITERATIONS; i++) {
+			iterate(operation);
+		}
+		double [] results = new double[MEASURE_ITERATIONS];
+		for(int i=0; i<MEASURE_ITERATIONS; i++) {
+			results[i] = iterate(operation);
+		}
+		Arrays.sort(results);
+		return results[MEASURE_ITERATIONS/2];
+	}
+	
+	/**
+	 * keep a result alive, so the JIT does not remove the operation.
+	 * @param value result
+	 */
+	public static void consume(int value) {
+		sink += value;
+	}
+	
+	// nanoseconds per operation of an iteration
+	private static double iterate(Operation operation) throws Exception {
+		long start = System.nanoTime();
+		long count = 0;
+		long elapsed;
+		do {
+			operation.run();
+			count++;
+			elapsed = System.nanoTime() - start;
+		} while(elapsed < ITERATION_NANOS);
+		return (double)elapsed / count;
+	}
+	
+	private Benchmark() {}
+	
+	private static volatile int sink;
+	
+	private static final int WARMUP_ITERATIONS = 5;
+	private static final int MEASURE_ITERATIONS = 7;
+	private static final long ITERATION_NANOS = 200*1000*1000L;
+	
+}
@@ -0,0 +1,116 @@
+/**
+ * ByteArrayReaderBench.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.bench;
+
+import java.io.IOException;
+import java.util.Random;
+
+import net.npe.io.ByteArrayReader;
+import net.npe.io.InputReader;
+import net.npe.io.InputReader.ByteOrderReader;
+
+/**
+ * ByteArrayReader of the fixed byte orders against the per-byte path of InputReader.
+ * <p>
+ * Both byte orders are read in the same JVM, as a loader of PSD (big-endian) and DDS/TGA (little-endian) does.
+ * </p>
+ */
+public final class ByteArrayReaderBench {
+	
+	public static void main(String [] args) throws Exception {
+		
+		final byte [] buffer = new byte[LENGTH];
+		new Random(1).nextBytes(buffer);
+		final short [] shorts = new short[LENGTH/2];
+		
+		System.out.println("operation\tper-byte(ns)\tByteArrayReader(ns)");
+		
+		for(final ByteOrderReader endian : new ByteOrderReader [] {InputReader.BigEndian, InputReader.LittleEndian}) {
+			String order = (endian == InputReader.BigEndian) ? "BigEndian" : "LittleEndian";
+			report("readInt "+order, Benchmark.measure(new Benchmark.Operation() {
+				@Override
+				public void run() throws IOException {
+					readInts(new PerByteReader(buffer, endian));
+				}
+			}), Benchmark.measure(new Benchmark.Operation() {
+				@Override
+				public void run() throws IOException {
+					readInts(new ByteArrayReader(buffer, 0, endian));
+				}
+			}));
+			report("readShorts "+order, Benchmark.measure(new Benchmark.Operation() {
+				@Override
+				public void run() throws IOException {
+					new PerByteReader(buffer, endian).readShorts(shorts, 0, shorts.length);
+					Benchmark.consume(shorts[0]);
+				}
+			}), Benchmark.measure(new Benchmark.Operation() {
+				@Override
+				public void run() throws IOException {
+					new ByteArrayReader(buffer, 0, endian).readShorts(shorts, 0, shorts.length);
+					Benchmark.consume(shorts[0]);
+				}
+			}));
+		}
+		
+	}
+	
+	private static void readInts(InputReader reader) throws IOException {
+		int sum = 0;
+		for(int i=0; i<LENGTH/4; i++) {
+			sum += reader.readInt();
+		}
+		Benchmark.consume(sum);
+	}
+	
+	private static void report(String name, double perByte, double reader) {
+		System.out.printf("%s\t%.0f\t%.0f%n", name, perByte, reader);
+	}
+	
+	// the default methods of InputReader, which read an int by four read() calls
+	private static final class PerByteReader extends InputReader {
+		
+		PerByteReader(byte [] buffer, ByteOrderReader endian) {
+			super(endian);
+			this.buffer = buffer;
+		}
+		
+		@Override
+		public int read() {
+			return (position < buffer.length) ? buffer[position++] & 0xFF : -1;
+		}
+		
+		@Override
+		public void mark() {
+			marker = position;
+		}
+		
+		@Override
+		public void reset() {
+			position = marker;
+		}
+		
+		private byte [] buffer;
+		private int position;
+		private int marker;
+		
+	}
+	
+	private ByteArrayReaderBench() {}
+	
+	private static final int LENGTH = 1024*1024;
+	
+}
@@ -0,0 +1,107 @@
+/**
+ * ParallelThresholdBench.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.bench;
+
+import java.util.Random;
+
+import net.npe.image.PixelExecutor;
+import net.npe.image.PixelFormat;
+import net.npe.image.PixelImage;
+import net.npe.image.util.concurrent.ForkJoinPixelExecutor;
+
+/**
+ * Crossover of the sequential and the parallel bulk operations of PixelImage (PixelImage.DEFAULT_PARALLEL_THRESHOLD).
+ * <p>
+ * Each operation is a changeFormat() and a multiplyAlpha() of a square image.
+ * The parallel time on P processors is modeled as sequential / min(P, bands) + overhead,
+ * so the overhead of splitting into bands is measured even on a single processor,
+ * and the crossover on Q processors is the first size of two or more bands
+ * where sequential * (1 - 1/min(Q, bands)) exceeds the overhead.
+ * </p>
+ */
+public final class ParallelThresholdBench {
+	
+	public static void main(String [] args) throws Exception {
+		
+		int processors = Runtime.getRuntime().availableProcessors();
+		ForkJoinPixelExecutor executor = new ForkJoinPixelExecutor();
+		
+		System.out.println("processors: "+processors);
+		System.out.println("pixels\tbands\tsequential(us)\tparallel(us)\toverhead(us)");
+		
+		int [] crossovers = new int[CORES.length];
+		int measured = 0;
+		
+		for(int side : SIDES) {
+			
+			double sequential = measure(side, PixelExecutor.SEQUENTIAL);
+			double parallel = measure(side, executor);
+			int bands = getBands(side, side);
+			double overhead = Math.max(0, parallel - sequential / Math.min(processors, bands));
+			int pixels = side*side;
+			
+			System.out.printf("%d\t%d\t%.1f\t%.1f\t%.1f%n", pixels, bands, sequential/1000, parallel/1000, overhead/1000);
+			
+			// a single band runs on the calling thread
+			if(bands < 2) continue;
+			if(measured == 0 && parallel < sequential) measured = pixels;
+			for(int i=0; i<CORES.length; i++) {
+				if(crossovers[i] == 0 && sequential * (1 - 1.0/Math.min(CORES[i], bands)) > overhead) crossovers[i] = pixels;
+			}
+			
+		}
+		
+		System.out.println("measured crossover: "+((measured != 0) ? measured+" pixels" : "none"));
+		for(int i=0; i<CORES.length; i++) {
+			System.out.println("estimated crossover on "+CORES[i]+" processors: "+((crossovers[i] != 0) ? crossovers[i]+" pixels" : "none"));
+		}
+		System.out.println("DEFAULT_PARALLEL_THRESHOLD: "+PixelImage.DEFAULT_PARALLEL_THRESHOLD+" pixels");
+		
+	}
+	
+	// bands of rows of PixelImage.forEachBand()
+	private static int getBands(int width, int height) {
+		int rows = Math.max(1, BAND_SIZE / width);
+		return (height + rows - 1) / rows;
+	}
+	
+	private static double measure(int side, PixelExecutor executor) throws Exception {
+		int [] pixels = new int[side*side];
+		Random random = new Random(side);
+		for(int i=0; i<pixels.length; i++) pixels[i] = random.nextInt();
+		final PixelImage image = new PixelImage(pixels, side, side, PixelFormat.ARGB);
+		image.setExecutor(executor);
+		image.setParallelThreshold(0);
+		return Benchmark.measure(new Benchmark.Operation() {
+			@Override
+			public void run() {
+				image.changeFormat((image.getFormat() == PixelFormat.ARGB) ? PixelFormat.ABGR : PixelFormat.ARGB);
+				image.multiplyAlpha(250);
+			}
+		});
+	}
+	
+	private ParallelThresholdBench() {}
+	
+	// sides of the square images, about sqrt(2) apart
+	private static final int [] SIDES = {64, 90, 128, 181, 256, 362, 512, 724, 1024, 1448, 2048};
+	
+	private static final int [] CORES = {2, 4, 8};
+	
+	// PixelImage.BAND_SIZE
+	private static final int BAND_SIZE = 64*1024;
+	
+}
@@ -0,0 +1,118 @@
+/**
+ * ResampleBench.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.bench;
+
+import java.util.Random;
+
+import net.npe.image.PixelFormat;
+import net.npe.image.PixelImage;
+import net.npe.image.resample.ResampleFilter;
+import net.npe.image.resample.Resampler;
+import net.npe.image.util.concurrent.ForkJoinPixelExecutor;
+
+/**
+ * Resampler against a naive per-pixel reference, which evaluates the 2D filter over the source window of each pixel.
+ * <p>
+ * A 1024x1024 premultiplied image is reduced to 256x256, sequentially and on a ForkJoinPixelExecutor.
+ * </p>
+ */
+public final class ResampleBench {
+	
+	public static void main(String [] args) throws Exception {
+		
+		final int [] pixels = new int[SOURCE*SOURCE];
+		Random random = new Random(1);
+		for(int i=0; i<pixels.length; i++) pixels[i] = random.nextInt();
+		final PixelImage image = new PixelImage(pixels, SOURCE, SOURCE, PixelFormat.ARGB.premultiplied());
+		final PixelImage parallel = new PixelImage(pixels, SOURCE, SOURCE, PixelFormat.ARGB.premultiplied());
+		parallel.setExecutor(new ForkJoinPixelExecutor());
+		
+		System.out.println("processors: "+Runtime.getRuntime().availableProcessors());
+		System.out.println("filter\tnaive(ms)\tsequential(ms)\tparallel(ms)");
+		
+		for(final ResampleFilter filter : ResampleFilter.values()) {
+			final Resampler resampler = new Resampler(filter);
+			double naive = Benchmark.measure(new Benchmark.Operation() {
+				@Override
+				public void run() {
+					Benchmark.consume(resampleNaive(pixels, SOURCE, SOURCE, TARGET, TARGET, filter)[0]);
+				}
+			});
+			double sequential = Benchmark.measure(new Benchmark.Operation() {
+				@Override
+				public void run() {
+					Benchmark.consume(resampler.resample(image, TARGET, TARGET).getPixels()[0]);
+				}
+			});
+			double concurrent = Benchmark.measure(new Benchmark.Operation() {
+				@Override
+				public void run() {
+					Benchmark.consume(resampler.resample(parallel, TARGET, TARGET).getPixels()[0]);
+				}
+			});
+			System.out.printf("%s\t%.2f\t%.2f\t%.2f%n", filter, naive/1000000, sequential/1000000, concurrent/1000000);
+		}
+		
+	}
+	
+	// the weights of each pixel are evaluated in 2D, without the separable passes and the weight tables
+	private static int [] resampleNaive(int [] source, int sourceWidth, int sourceHeight, int width, int height, ResampleFilter filter) {
+		int [] destination = new int[width*height];
+		double scaleX = (double)sourceWidth / width;
+		double scaleY = (double)sourceHeight / height;
+		double filterX = Math.max(1, scaleX);
+		double filterY = Math.max(1, scaleY);
+		double supportX = filter.getSupport() * filterX;
+		double supportY = filter.getSupport() * filterY;
+		double [] sum = new double[4];
+		for(int y=0; y<height; y++) {
+			double centerY = (y + 0.5) * scaleY;
+			int top = Math.max(0, (int)(centerY - supportY + 0.5));
+			int bottom = Math.min(sourceHeight, (int)(centerY + supportY + 0.5));
+			for(int x=0; x<width; x++) {
+				double centerX = (x + 0.5) * scaleX;
+				int left = Math.max(0, (int)(centerX - supportX + 0.5));
+				int right = Math.min(sourceWidth, (int)(centerX + supportX + 0.5));
+				double total = 0;
+				sum[0] = sum[1] = sum[2] = sum[3] = 0;
+				for(int j=top; j<bottom; j++) {
+					double weightY = filter.evaluate((j - centerY + 0.5) / filterY);
+					for(int i=left; i<right; i++) {
+						double weight = weightY * filter.evaluate((i - centerX + 0.5) / filterX);
+						int pixel = source[j*sourceWidth+i];
+						for(int k=0; k<4; k++) {
+							sum[k] += weight * ((pixel >>> (8*k)) & 0xFF);
+						}
+						total += weight;
+					}
+				}
+				int pixel = 0;
+				for(int k=0; k<4; k++) {
+					int value = (total != 0) ? (int)Math.round(sum[k] / total) : 0;
+					pixel |= Math.max(0, Math.min(255, value)) << (8*k);
+				}
+				destination[y*width+x] = pixel;
+			}
+		}
+		return destination;
+	}
+	
+	private ResampleBench() {}
+	
+	private static final int SOURCE = 1024;
+	private static final int TARGET = 256;
+	
+}
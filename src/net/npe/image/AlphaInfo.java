@@ -0,0 +1,285 @@
+/**
+ * AlphaInfo.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.image;
+
+/**
+ * Summary of the alpha of an image.
+ * <p>
+ * The decoders record it while the pixels are decoded (see PixelImage.getAlphaInfo()),
+ * so the writers and the renderers do not scan the pixels again.
+ * The bounds are the bounding box of the pixels whose alpha is not 0.
+ * </p>
+ */
+public final class AlphaInfo {
+	
+	/**
+	 * Kind of the alpha values.
+	 */
+	public enum Type {
+		/** all the pixels are opaque (alpha 255) */
+		OPAQUE,
+		/** the pixels are opaque or transparent (alpha 255 or 0) */
+		BINARY,
+		/** some pixels are translucent */
+		TRANSLUCENT,
+	}
+	
+	/**
+	 * scan pixels.
+	 * @param pixels pixels
+	 * @param offset index of the top-left pixel
+	 * @param stride number of array elements from a row to the next row
+	 * @param width width
+	 * @param height height
+	 * @param format pixel format
+	 * @return alpha info
+	 */
+	public static AlphaInfo scan(int [] pixels, int offset, int stride, int width, int height, PixelFormat format) {
+		Builder builder = new Builder(format);
+		for(int y=0; y<height; y++) {
+			builder.add(pixels, offset+y*stride, width, y);
+		}
+		return builder.build(width, height);
+	}
+	
+	/**
+	 * get the alpha info of an opaque image.
+	 * @param width width
+	 * @param height height
+	 * @return alpha info
+	 */
+	public static AlphaInfo opaque(int width, int height) {
+		return new AlphaInfo(Type.OPAQUE, 0, 0, width, height);
+	}
+	
+	/**
+	 * get the kind of the alpha values.
+	 * @return type
+	 */
+	public Type getType() {
+		return type;
+	}
+	
+	/**
+	 * check whether all the pixels are opaque.
+	 * @return true if opaque
+	 */
+	public boolean isOpaque() {
+		return type == Type.OPAQUE;
+	}
+	
+	/**
+	 * check whether all the pixels are transparent.
+	 * @return true if the bounds are empty
+	 */
+	public boolean isEmpty() {
+		return left >= right || top >= bottom;
+	}
+	
+	/**
+	 * get the left of the bounds.
+	 * @return left
+	 */
+	public int getLeft() {
+		return left;
+	}
+	
+	/**
+	 * get the top of the bounds.
+	 * @return top
+	 */
+	public int getTop() {
+		return top;
+	}
+	
+	/**
+	 * get the right of the bounds (exclusive).
+	 * @return right
+	 */
+	public int getRight() {
+		return right;
+	}
+	
+	/**
+	 * get the bottom of the bounds (exclusive).
+	 * @return bottom
+	 */
+	public int getBottom() {
+		return bottom;
+	}
+	
+	// alpha info of the flipped pixels
+	AlphaInfo flip(boolean vertical, boolean horizontal, int width, int height) {
+		if(isEmpty()) return this;
+		int left = horizontal ? width - this.right : this.left;
+		int right = horizontal ? width - this.left : this.right;
+		int top = vertical ? height - this.bottom : this.top;
+		int bottom = vertical ? height - this.top : this.bottom;
+		return new AlphaInfo(type, left, top, right, bottom);
+	}
+	
+	// alpha info of the transposed pixels
+	AlphaInfo transpose() {
+		return new AlphaInfo(type, top, left, bottom, right);
+	}
+	
+	@Override
+	public String toString() {
+		return type+" ("+left+", "+top+")-("+right+", "+bottom+")";
+	}
+	
+	/**
+	 * Accumulator of the alpha of the rows of an image.
+	 * The rows may be added in any order, and the builders of the strips decoded in parallel are merged.
+	 */
+	public static final class Builder {
+		
+		/**
+		 * constructor.
+		 * @param format pixel format of the rows
+		 */
+		public Builder(PixelFormat format) {
+			this.alphaMask = format.getAlphaMask();
+			this.alphaShift = format.getAlphaShift();
+		}
+		
+		/**
+		 * add a row of pixels.
+		 * @param pixels pixels
+		 * @param offset offset of the row
+		 * @param width width
+		 * @param y row
+		 */
+		public void add(int [] pixels, int offset, int width, int y) {
+			if(alphaMask == 0) {
+				addOpaque(width, y, 1);
+				return;
+			}
+			int first = -1;
+			int last = -1;
+			for(int x=0; x<width; x++) {
+				int alpha = (pixels[offset+x] & alphaMask) >>> alphaShift;
+				if(alpha == 0) {
+					transparent = true;
+					continue;
+				}
+				if(alpha != 0xFF) translucent = true;
+				if(first < 0) first = x;
+				last = x;
+			}
+			if(first >= 0) include(first, y, last+1, y+1);
+		}
+		
+		/**
+		 * add a row of alpha bytes.
+		 * @param alpha alpha values
+		 * @param offset offset of the row
+		 * @param width width
+		 * @param y row
+		 */
+		public void add(byte [] alpha, int offset, int width, int y) {
+			int first = -1;
+			int last = -1;
+			for(int x=0; x<width; x++) {
+				int a = alpha[offset+x] & 0xFF;
+				if(a == 0) {
+					transparent = true;
+					continue;
+				}
+				if(a != 0xFF) translucent = true;
+				if(first < 0) first = x;
+				last = x;
+			}
+			if(first >= 0) include(first, y, last+1, y+1);
+		}
+		
+		/**
+		 * add opaque rows.
+		 * @param width width
+		 * @param y first row
+		 * @param rows number of rows
+		 */
+		public void addOpaque(int width, int y, int rows) {
+			if(width > 0 && rows > 0) include(0, y, width, y+rows);
+		}
+		
+		/**
+		 * merge a builder of other rows.
+		 * @param builder builder
+		 */
+		public synchronized void merge(Builder builder) {
+			transparent |= builder.transparent;
+			translucent |= builder.translucent;
+			if(builder.right > builder.left) {
+				include(builder.left, builder.top, builder.right, builder.bottom);
+			}
+		}
+		
+		/**
+		 * build the alpha info of all the rows.
+		 * @param width width of the image
+		 * @param height height of the image
+		 * @return alpha info
+		 */
+		public synchronized AlphaInfo build(int width, int height) {
+			if(translucent) return new AlphaInfo(Type.TRANSLUCENT, left, top, right, bottom);
+			// rows which are not added are transparent
+			if(transparent || left > 0 || top > 0 || right < width || bottom < height) {
+				return new AlphaInfo(Type.BINARY, left, top, right, bottom);
+			}
+			return new AlphaInfo(Type.OPAQUE, left, top, right, bottom);
+		}
+		
+		private void include(int left, int top, int right, int bottom) {
+			if(this.right <= this.left) {
+				this.left = left;
+				this.top = top;
+				this.right = right;
+				this.bottom = bottom;
+				return;
+			}
+			this.left = Math.min(this.left, left);
+			this.top = Math.min(this.top, top);
+			this.right = Math.max(this.right, right);
+			this.bottom = Math.max(this.bottom, bottom);
+		}
+		
+		private int alphaMask;
+		private int alphaShift;
+		private boolean transparent;
+		private boolean translucent;
+		private int left;
+		private int top;
+		private int right;
+		private int bottom;
+		
+	}
+	
+	private AlphaInfo(Type type, int left, int top, int right, int bottom) {
+		this.type = type;
+		this.left = left;
+		this.top = top;
+		this.right = right;
+		this.bottom = bottom;
+	}
+	
+	private final Type type;
+	private final int left;
+	private final int top;
+	private final int right;
+	private final int bottom;
+	
+}
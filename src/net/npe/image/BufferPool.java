@@ -0,0 +1,268 @@
+/**
+ * BufferPool.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.image;
+
+/**
+ * Thread-safe pool of int, short, byte and long arrays.
+ * <p>
+ * The arrays are kept in buckets of the powers of 2, so an array may be longer than requested.
+ * The decoders take their work buffers (e.g. scanlines and strips) from the default pool and release them,
+ * so a loader of many images does not allocate them per image.
+ * The pixel arrays of the images may be taken from a pool by allocator(), and released by the caller.
+ * An array which is not released is collected as usual.
+ * </p>
+ */
+public class BufferPool {
+	
+	/**
+	 * get the pool used by the library.
+	 * @return pool
+	 */
+	public static BufferPool getDefault() {
+		return defaultPool;
+	}
+	
+	/**
+	 * set the pool used by the library.
+	 * @param pool pool, or null for the pool of the default limits
+	 */
+	public static void setDefault(BufferPool pool) {
+		defaultPool = (pool != null) ? pool : new BufferPool();
+	}
+	
+	/**
+	 * constructor of the default limits.
+	 */
+	public BufferPool() {
+		this(DEFAULT_MAX_COUNT, DEFAULT_MAX_LENGTH);
+	}
+	
+	/**
+	 * constructor.
+	 * @param maxCount maximum number of the arrays kept in a bucket, 0 for no pooling
+	 * @param maxLength maximum length of the arrays kept in the pool
+	 */
+	public BufferPool(int maxCount, int maxLength) {
+		this.maxCount = maxCount;
+		this.maxLength = maxLength;
+		this.ints = new int[BUCKETS][maxCount][];
+		this.intCounts = new int[BUCKETS];
+		this.shorts = new short[BUCKETS][maxCount][];
+		this.shortCounts = new int[BUCKETS];
+		this.bytes = new byte[BUCKETS][maxCount][];
+		this.byteCounts = new int[BUCKETS];
+		this.longs = new long[BUCKETS][maxCount][];
+		this.longCounts = new int[BUCKETS];
+	}
+	
+	/**
+	 * get an int array. The elements are not cleared.
+	 * @param length minimum length
+	 * @return array of length or more elements
+	 */
+	public int [] getInts(int length) {
+		int bucket = getBucket(length);
+		if(!isPooled(bucket)) return new int[length];
+		synchronized(this) {
+			if(intCounts[bucket] > 0) {
+				int index = --intCounts[bucket];
+				int [] array = ints[bucket][index];
+				ints[bucket][index] = null;
+				return array;
+			}
+		}
+		return new int[1 << bucket];
+	}
+	
+	/**
+	 * get a short array. The elements are not cleared.
+	 * @param length minimum length
+	 * @return array of length or more elements
+	 */
+	public short [] getShorts(int length) {
+		int bucket = getBucket(length);
+		if(!isPooled(bucket)) return new short[length];
+		synchronized(this) {
+			if(shortCounts[bucket] > 0) {
+				int index = --shortCounts[bucket];
+				short [] array = shorts[bucket][index];
+				shorts[bucket][index] = null;
+				return array;
+			}
+		}
+		return new short[1 << bucket];
+	}
+	
+	/**
+	 * get a byte array. The elements are not cleared.
+	 * @param length minimum length
+	 * @return array of length or more elements
+	 */
+	public byte [] getBytes(int length) {
+		int bucket = getBucket(length);
+		if(!isPooled(bucket)) return new byte[length];
+		synchronized(this) {
+			if(byteCounts[bucket] > 0) {
+				int index = --byteCounts[bucket];
+				byte [] array = bytes[bucket][index];
+				bytes[bucket][index] = null;
+				return array;
+			}
+		}
+		return new byte[1 << bucket];
+	}
+	
+	/**
+	 * get a long array. The elements are not cleared.
+	 * @param length minimum length
+	 * @return array of length or more elements
+	 */
+	public long [] getLongs(int length) {
+		int bucket = getBucket(length);
+		if(!isPooled(bucket)) return new long[length];
+		synchronized(this) {
+			if(longCounts[bucket] > 0) {
+				int index = --longCounts[bucket];
+				long [] array = longs[bucket][index];
+				longs[bucket][index] = null;
+				return array;
+			}
+		}
+		return new long[1 << bucket];
+	}
+	
+	/**
+	 * return an int array to the pool. The array must not be used after it is released.
+	 * @param array array taken by getInts(), or null
+	 */
+	public void release(int [] array) {
+		if(array == null) return;
+		int bucket = getBucket(array.length);
+		if(array.length != (1 << bucket) || !isPooled(bucket)) return;
+		synchronized(this) {
+			if(intCounts[bucket] < maxCount) {
+				ints[bucket][intCounts[bucket]++] = array;
+			}
+		}
+	}
+	
+	/**
+	 * return a short array to the pool. The array must not be used after it is released.
+	 * @param array array taken by getShorts(), or null
+	 */
+	public void release(short [] array) {
+		if(array == null) return;
+		int bucket = getBucket(array.length);
+		if(array.length != (1 << bucket) || !isPooled(bucket)) return;
+		synchronized(this) {
+			if(shortCounts[bucket] < maxCount) {
+				shorts[bucket][shortCounts[bucket]++] = array;
+			}
+		}
+	}
+	
+	/**
+	 * return a byte array to the pool. The array must not be used after it is released.
+	 * @param array array taken by getBytes(), or null
+	 */
+	public void release(byte [] array) {
+		if(array == null) return;
+		int bucket = getBucket(array.length);
+		if(array.length != (1 << bucket) || !isPooled(bucket)) return;
+		synchronized(this) {
+			if(byteCounts[bucket] < maxCount) {
+				bytes[bucket][byteCounts[bucket]++] = array;
+			}
+		}
+	}
+	
+	/**
+	 * return a long array to the pool. The array must not be used after it is released.
+	 * @param array array taken by getLongs(), or null
+	 */
+	public void release(long [] array) {
+		if(array == null) return;
+		int bucket = getBucket(array.length);
+		if(array.length != (1 << bucket) || !isPooled(bucket)) return;
+		synchronized(this) {
+			if(longCounts[bucket] < maxCount) {
+				longs[bucket][longCounts[bucket]++] = array;
+			}
+		}
+	}
+	
+	/**
+	 * release all the arrays kept in the pool.
+	 */
+	public synchronized void clear() {
+		for(int i=0; i<BUCKETS; i++) {
+			for(int j=0; j<maxCount; j++) {
+				ints[i][j] = null;
+				shorts[i][j] = null;
+				bytes[i][j] = null;
+				longs[i][j] = null;
+			}
+			intCounts[i] = 0;
+			shortCounts[i] = 0;
+			byteCounts[i] = 0;
+			longCounts[i] = 0;
+		}
+	}
+	
+	/**
+	 * get an allocator of the int arrays of the pool.
+	 * The storage of a decoded image may be longer than width*height, and its array is released by release(storage.getArray()).
+	 * @return allocator
+	 */
+	public PixelStorage.Allocator allocator() {
+		return new PixelStorage.Allocator() {
+			@Override
+			public PixelStorage allocate(int length, PixelFormat format) {
+				return PixelStorage.wrap(getInts(length));
+			}
+		};
+	}
+	
+	// bucket of the smallest power of 2 not less than the length
+	private static int getBucket(int length) {
+		return (length <= 1) ? 0 : 32 - Integer.numberOfLeadingZeros(length - 1);
+	}
+	
+	// only the arrays of the buckets up to maxLength are kept
+	private boolean isPooled(int bucket) {
+		return bucket < 31 && (1 << bucket) <= maxLength;
+	}
+	
+	private int maxCount;
+	private int maxLength;
+	private int [][][] ints;
+	private int [] intCounts;
+	private short [][][] shorts;
+	private int [] shortCounts;
+	private byte [][][] bytes;
+	private int [] byteCounts;
+	private long [][][] longs;
+	private int [] longCounts;
+	
+	private static final int BUCKETS = 32;
+	
+	// 8 arrays of up to 1M elements per bucket
+	private static final int DEFAULT_MAX_COUNT = 8;
+	private static final int DEFAULT_MAX_LENGTH = 1 << 20;
+	
+	private static BufferPool defaultPool = new BufferPool();
+	
+}
@@ -0,0 +1,128 @@
+/**
+ * ContentHash.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.image;
+
+/**
+ * Non-cryptographic 64-bit hash of the pixels of PixelImage.contentHash().
+ * <p>
+ * The pixels are hashed in chunks of CHUNK_SIZE pixels, which may be hashed concurrently,
+ * and the hashes of the chunks are hashed in order, so the hash does not depend on the executor.
+ * Each pixel is mixed into 2 independent 32-bit lanes (the rounds of MurmurHash3 and xxHash32),
+ * since long arithmetic is emulated in GWT.
+ * </p>
+ */
+final class ContentHash {
+	
+	/**
+	 * hash the pixels of a chunk.
+	 * @param pixels pixels
+	 * @param offset offset of the chunk
+	 * @param length number of pixels
+	 * @param hashes hashes of the chunks, 2 lanes per chunk
+	 * @param index chunk index
+	 */
+	static void hashChunk(int [] pixels, int offset, int length, int [] hashes, int index) {
+		// 4 stripes of each lane are independent, so their rounds are run in parallel by the processor
+		int a1 = SEED1, b1 = SEED1 + 1, c1 = SEED1 + 2, d1 = SEED1 + 3;
+		int a2 = SEED2, b2 = SEED2 + 1, c2 = SEED2 + 2, d2 = SEED2 + 3;
+		int i = offset;
+		int end = offset + length;
+		for(; i+4<=end; i+=4) {
+			a1 = round1(a1, pixels[i]);
+			b1 = round1(b1, pixels[i+1]);
+			c1 = round1(c1, pixels[i+2]);
+			d1 = round1(d1, pixels[i+3]);
+			a2 = round2(a2, pixels[i]);
+			b2 = round2(b2, pixels[i+1]);
+			c2 = round2(c2, pixels[i+2]);
+			d2 = round2(d2, pixels[i+3]);
+		}
+		int h1 = Integer.rotateLeft(a1, 1) + Integer.rotateLeft(b1, 7) + Integer.rotateLeft(c1, 12) + Integer.rotateLeft(d1, 18);
+		int h2 = Integer.rotateLeft(a2, 1) + Integer.rotateLeft(b2, 7) + Integer.rotateLeft(c2, 12) + Integer.rotateLeft(d2, 18);
+		for(; i<end; i++) {
+			h1 = round1(h1, pixels[i]);
+			h2 = round2(h2, pixels[i]);
+		}
+		hashes[2*index] = finish(h1 ^ length);
+		hashes[2*index+1] = finish(h2 ^ length);
+	}
+	
+	/**
+	 * combine the hashes of the chunks.
+	 * @param hashes hashes of the chunks
+	 * @param count number of chunks
+	 * @param width image width
+	 * @param height image height
+	 * @return hash
+	 */
+	static long combine(int [] hashes, int count, int width, int height) {
+		int h1 = SEED1;
+		int h2 = SEED2;
+		for(int i=0; i<count; i++) {
+			h1 = round1(h1, hashes[2*i]);
+			h2 = round2(h2, hashes[2*i+1]);
+		}
+		h1 = round1(round1(h1, width), height);
+		h2 = round2(round2(h2, width), height);
+		h1 = finish(h1);
+		h2 = finish(h2);
+		// each lane depends on the other
+		h1 += h2;
+		h2 += h1;
+		return ((long)h1 << 32) | (h2 & 0xFFFFFFFFL);
+	}
+	
+	// MurmurHash3 x86_32 block
+	private static int round1(int h, int k) {
+		k = multiply(k, 0xCC9E2D51);
+		k = Integer.rotateLeft(k, 15);
+		k = multiply(k, 0x1B873593);
+		h ^= k;
+		h = Integer.rotateLeft(h, 13);
+		return h*5 + 0xE6546B64;
+	}
+	
+	// xxHash32 round
+	private static int round2(int h, int k) {
+		h += multiply(k, 0x85EBCA77);
+		h = Integer.rotateLeft(h, 13);
+		return multiply(h, 0x9E3779B1);
+	}
+	
+	// MurmurHash3 finalizer
+	private static int finish(int h) {
+		h ^= h >>> 16;
+		h = multiply(h, 0x85EBCA6B);
+		h ^= h >>> 13;
+		h = multiply(h, 0xC2B2AE35);
+		h ^= h >>> 16;
+		return h;
+	}
+	
+	// low 32 bits of the product, which are exact in GWT as well (a double keeps only 53 bits of the product)
+	private static int multiply(int a, int b) {
+		return a * (b & 0xFFFF) + ((a * (b >>> 16)) << 16);
+	}
+	
+	private ContentHash() {}
+	
+	/** number of pixels of a chunk */
+	static final int CHUNK_SIZE = 64*1024;
+	
+	private static final int SEED1 = 0x2545F491;
+	private static final int SEED2 = 0x165667B1;
+	
+}
@@ -0,0 +1,56 @@
+/**
+ * PackedFormat.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.image;
+
+/**
+ * Packed pixel format of PackedPixelStorage.
+ */
+public enum PackedFormat {
+	
+	/** 16-bit R5 G6 B5 from the high bits in a short (GL_RGB / GL_UNSIGNED_SHORT_5_6_5). Alpha is 255. */
+	RGB565(2),
+	/** 16-bit R4 G4 B4 A4 from the high bits in a short (GL_RGBA / GL_UNSIGNED_SHORT_4_4_4_4). */
+	RGBA4444(2),
+	/** 16-bit R5 G5 B5 A1 from the high bits in a short (GL_RGBA / GL_UNSIGNED_SHORT_5_5_5_1). */
+	RGBA5551(2),
+	/** 8-bit luminance in a byte (GL_LUMINANCE). Alpha is 255. */
+	L8(1),
+	/** 8-bit luminance and 8-bit alpha in 2 bytes (GL_LUMINANCE_ALPHA). */
+	LA88(2);
+	
+	/**
+	 * get the number of bytes per pixel.
+	 * @return bytes per pixel
+	 */
+	public int getBytesPerPixel() {
+		return bytesPerPixel;
+	}
+	
+	/**
+	 * check whether the pixels are stored in a short array.
+	 * @return true for a short array, false for a byte array
+	 */
+	public boolean isShort() {
+		return this == RGB565 || this == RGBA4444 || this == RGBA5551;
+	}
+	
+	private PackedFormat(int bytesPerPixel) {
+		this.bytesPerPixel = bytesPerPixel;
+	}
+	
+	private final int bytesPerPixel;
+	
+}
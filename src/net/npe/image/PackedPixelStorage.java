@@ -0,0 +1,262 @@
+/**
+ * PackedPixelStorage.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.image;
+
+/**
+ * PixelStorage of 8 or 16 bits per pixel.
+ * <p>
+ * The pixels are stored in a short array or a byte array of a PackedFormat,
+ * and get() and set() convert them from and to the int pixels of a PixelFormat.
+ * The channels are rounded to the nearest packed value, so the pixels decoded from
+ * the same packed format (e.g. DDS R5G6B5 to RGB565) are stored without loss.
+ * L8 and LA88 store the luminance of the red, green and blue channels.
+ * </p>
+ */
+public class PackedPixelStorage extends PixelStorage {
+	
+	/**
+	 * allocate a storage.
+	 * @param length number of pixels
+	 * @param packedFormat packed format
+	 * @param format pixel format of get() and set()
+	 * @return storage
+	 */
+	public static PackedPixelStorage allocate(int length, PackedFormat packedFormat, PixelFormat format) {
+		if(packedFormat.isShort()) {
+			return new PackedPixelStorage(new short[length], null, packedFormat, format);
+		}
+		return new PackedPixelStorage(null, new byte[length*packedFormat.getBytesPerPixel()], packedFormat, format);
+	}
+	
+	/**
+	 * wrap a short array of RGB565, RGBA4444 or RGBA5551.
+	 * @param shorts packed pixels
+	 * @param packedFormat packed format
+	 * @param format pixel format of get() and set()
+	 * @return storage
+	 */
+	public static PackedPixelStorage wrap(short [] shorts, PackedFormat packedFormat, PixelFormat format) {
+		if(!packedFormat.isShort()) {
+			throw new IllegalArgumentException("Not a short format: "+packedFormat);
+		}
+		return new PackedPixelStorage(shorts, null, packedFormat, format);
+	}
+	
+	/**
+	 * wrap a byte array of L8 or LA88.
+	 * @param bytes packed pixels
+	 * @param packedFormat packed format
+	 * @param format pixel format of get() and set()
+	 * @return storage
+	 */
+	public static PackedPixelStorage wrap(byte [] bytes, PackedFormat packedFormat, PixelFormat format) {
+		if(packedFormat.isShort()) {
+			throw new IllegalArgumentException("Not a byte format: "+packedFormat);
+		}
+		return new PackedPixelStorage(null, bytes, packedFormat, format);
+	}
+	
+	/**
+	 * get an allocator of the packed format.
+	 * The decoders (e.g. DdsReader, TgaReader and PsdImage) store the decoded pixels in the packed format.
+	 * @param packedFormat packed format
+	 * @return allocator
+	 */
+	public static Allocator allocator(final PackedFormat packedFormat) {
+		return new Allocator() {
+			@Override
+			public PixelStorage allocate(int length, PixelFormat format) {
+				return PackedPixelStorage.allocate(length, packedFormat, format);
+			}
+		};
+	}
+	
+	/**
+	 * get the packed format.
+	 * @return packed format
+	 */
+	public PackedFormat getPackedFormat() {
+		return packedFormat;
+	}
+	
+	/**
+	 * get the pixel format of get() and set().
+	 * @return pixel format
+	 */
+	public PixelFormat getFormat() {
+		return format;
+	}
+	
+	/**
+	 * get the short array of RGB565, RGBA4444 or RGBA5551.
+	 * @return short array, or null for L8 and LA88
+	 */
+	public short [] getShorts() {
+		return shorts;
+	}
+	
+	/**
+	 * get the byte array of L8 or LA88.
+	 * @return byte array, or null for RGB565, RGBA4444 and RGBA5551
+	 */
+	public byte [] getBytes() {
+		return bytes;
+	}
+	
+	@Override
+	public int getLength() {
+		return (shorts != null) ? shorts.length : bytes.length / packedFormat.getBytesPerPixel();
+	}
+	
+	@Override
+	public int get(int index) {
+		int [] pixel = new int[1];
+		get(index, pixel, 0, 1);
+		return pixel[0];
+	}
+	
+	@Override
+	public void set(int index, int pixel) {
+		set(index, new int [] {pixel}, 0, 1);
+	}
+	
+	@Override
+	public void get(int index, int [] destination, int offset, int length) {
+		PixelFormat format = this.format;
+		switch(packedFormat) {
+		case RGB565:
+			for(int i=0; i<length; i++) {
+				int p = shorts[index+i];
+				destination[offset+i] = format.getPixel(BIT5[(p >> 11) & 0x1F], BIT6[(p >> 5) & 0x3F], BIT5[p & 0x1F], 0xFF);
+			}
+			break;
+		case RGBA4444:
+			for(int i=0; i<length; i++) {
+				int p = shorts[index+i];
+				destination[offset+i] = format.getPixel(17*((p >> 12) & 0xF), 17*((p >> 8) & 0xF), 17*((p >> 4) & 0xF), 17*(p & 0xF));
+			}
+			break;
+		case RGBA5551:
+			for(int i=0; i<length; i++) {
+				int p = shorts[index+i];
+				destination[offset+i] = format.getPixel(BIT5[(p >> 11) & 0x1F], BIT5[(p >> 6) & 0x1F], BIT5[(p >> 1) & 0x1F], 255*(p & 1));
+			}
+			break;
+		case L8:
+			for(int i=0; i<length; i++) {
+				int l = bytes[index+i] & 0xFF;
+				destination[offset+i] = format.getPixel(l, l, l, 0xFF);
+			}
+			break;
+		case LA88:
+			for(int i=0; i<length; i++) {
+				int l = bytes[2*(index+i)] & 0xFF;
+				int a = bytes[2*(index+i)+1] & 0xFF;
+				destination[offset+i] = format.getPixel(l, l, l, a);
+			}
+			break;
+		}
+	}
+	
+	@Override
+	public void set(int index, int [] source, int offset, int length) {
+		PixelFormat format = this.format;
+		// formats without alpha (e.g. PixelFormat.RGB888) are opaque
+		boolean opaque = format.getAlphaMask() == 0;
+		switch(packedFormat) {
+		case RGB565:
+			for(int i=0; i<length; i++) {
+				int p = source[offset+i];
+				shorts[index+i] = (short)(TO5[format.getRed(p)] << 11 | TO6[format.getGreen(p)] << 5 | TO5[format.getBlue(p)]);
+			}
+			break;
+		case RGBA4444:
+			for(int i=0; i<length; i++) {
+				int p = source[offset+i];
+				int a = opaque ? 0xF : TO4[format.getAlpha(p)];
+				shorts[index+i] = (short)(TO4[format.getRed(p)] << 12 | TO4[format.getGreen(p)] << 8 | TO4[format.getBlue(p)] << 4 | a);
+			}
+			break;
+		case RGBA5551:
+			for(int i=0; i<length; i++) {
+				int p = source[offset+i];
+				int a = (opaque || format.getAlpha(p) >= 0x80) ? 1 : 0;
+				shorts[index+i] = (short)(TO5[format.getRed(p)] << 11 | TO5[format.getGreen(p)] << 6 | TO5[format.getBlue(p)] << 1 | a);
+			}
+			break;
+		case L8:
+			for(int i=0; i<length; i++) {
+				bytes[index+i] = (byte)luminance(source[offset+i], format);
+			}
+			break;
+		case LA88:
+			for(int i=0; i<length; i++) {
+				int p = source[offset+i];
+				bytes[2*(index+i)] = (byte)luminance(p, format);
+				bytes[2*(index+i)+1] = (byte)(opaque ? 0xFF : format.getAlpha(p));
+			}
+			break;
+		}
+	}
+	
+	/**
+	 * change the pixel format of get() and set(). The packed pixels are not changed.
+	 * @param format pixel format
+	 * @return true, or false if only one of the formats is premultiplied
+	 */
+	@Override
+	public boolean setFormat(PixelFormat format) {
+		if(format.isPremultiplied() != this.format.isPremultiplied()) return false;
+		this.format = format;
+		return true;
+	}
+	
+	protected PackedPixelStorage(short [] shorts, byte [] bytes, PackedFormat packedFormat, PixelFormat format) {
+		this.shorts = shorts;
+		this.bytes = bytes;
+		this.packedFormat = packedFormat;
+		this.format = format;
+	}
+	
+	// BT.601 luma in 8-bit fixed point, which keeps gray pixels as they are
+	private static int luminance(int pixel, PixelFormat format) {
+		return (77*format.getRed(pixel) + 150*format.getGreen(pixel) + 29*format.getBlue(pixel) + 128) >> 8;
+	}
+	
+	private static int [] createTable(int bits) {
+		int max = (1 << bits) - 1;
+		int [] table = new int[256];
+		for(int i=0; i<256; i++) {
+			table[i] = (i*max + 127) / 255;
+		}
+		return table;
+	}
+	
+	private short [] shorts;
+	private byte [] bytes;
+	private PackedFormat packedFormat;
+	private PixelFormat format;
+	
+	// BIT4 = 17 * index;
+	private static final int [] BIT5 = {0,8,16,25,33,41,49,58,66,74,82,90,99,107,115,123,132,140,148,156,165,173,181,189,197,206,214,222,230,239,247,255};
+	private static final int [] BIT6 = {0,4,8,12,16,20,24,28,32,36,40,45,49,53,57,61,65,69,73,77,81,85,89,93,97,101,105,109,113,117,121,125,130,134,138,142,146,150,154,158,162,166,170,174,178,182,186,190,194,198,202,206,210,215,219,223,227,231,235,239,243,247,251,255};
+	
+	// 8-bit to the nearest n-bit value
+	private static final int [] TO4 = createTable(4);
+	private static final int [] TO5 = createTable(5);
+	private static final int [] TO6 = createTable(6);
+	
+}
@@ -0,0 +1,57 @@
+/**
+ * PixelExecutor.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.image;
+
+import java.io.IOException;
+
+/**
+ * Executor for the independent parts of a decode or a pixel operation.
+ * <p>
+ * Each part writes only its own region of the output, so the parts may run concurrently.
+ * SEQUENTIAL runs them in order on the calling thread.
+ * </p>
+ */
+public interface PixelExecutor {
+	
+	/**
+	 * A part of the work.
+	 */
+	interface Task {
+		/**
+		 * run a part.
+		 * @param index index of the part
+		 * @throws IOException I/O exception
+		 */
+		void run(int index) throws IOException;
+	}
+	
+	/**
+	 * run the task for every index in [0, count) and wait for all of them.
+	 * @param count number of parts
+	 * @param task task
+	 * @throws IOException I/O exception thrown by the task
+	 */
+	void execute(int count, Task task) throws IOException;
+	
+	/** runs the parts in order on the calling thread */
+	PixelExecutor SEQUENTIAL = new PixelExecutor() {
+		@Override
+		public void execute(int count, Task task) throws IOException {
+			for(int i=0; i<count; i++) task.run(i);
+		}
+	};
+	
+}
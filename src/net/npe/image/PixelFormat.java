@@ -32,6 +32,115 @@ public final class PixelFormat {
 	 *  </p>
 	 */
 	public static final PixelFormat ABGR = new PixelFormat(0, 8, 16, 24, 0x000000FF, 0x0000FF00, 0x00FF0000, 0xFF000000);
+	
+	/**
+	 *  RGBA8888 byte format
+	 *  <p>
+	 *  4 bytes per pixel in the order of R, G, B, A (GL_RGBA / GL_UNSIGNED_BYTE).
+	 *  </p>
+	 */
+	public static final PixelFormat RGBA8888 = createBytes(4, 0, 1, 2, 3);
+	
+	/**
+	 *  BGRA8888 byte format
+	 *  <p>
+	 *  4 bytes per pixel in the order of B, G, R, A (GL_BGRA / GL_UNSIGNED_BYTE).
+	 *  </p>
+	 */
+	public static final PixelFormat BGRA8888 = createBytes(4, 2, 1, 0, 3);
+	
+	/**
+	 *  RGB888 byte format
+	 *  <p>
+	 *  3 bytes per pixel in the order of R, G, B (GL_RGB / GL_UNSIGNED_BYTE). Alpha is dropped.
+	 *  </p>
+	 */
+	public static final PixelFormat RGB888 = createBytes(3, 0, 1, 2, -1);
+	
+	/**
+	 * create an int pixel format of 8-bit channels.
+	 * @param redShift red shift value
+	 * @param greenShift green shift value
+	 * @param blueShift blue shift value
+	 * @param alphaShift alpha shift value
+	 * @return pixel format
+	 */
+	public static PixelFormat create(int redShift, int greenShift, int blueShift, int alphaShift) {
+		int [] shifts = {redShift, greenShift, blueShift, alphaShift};
+		int used = 0;
+		for(int i=0; i<4; i++) {
+			if(shifts[i] < 0 || shifts[i] > 24 || (used & (0xFF << shifts[i])) != 0) {
+				throw new IllegalArgumentException("Invalid shifts: "+redShift+", "+greenShift+", "+blueShift+", "+alphaShift);
+			}
+			used |= 0xFF << shifts[i];
+		}
+		return new PixelFormat(redShift, greenShift, blueShift, alphaShift, 0xFF << redShift, 0xFF << greenShift, 0xFF << blueShift, 0xFF << alphaShift);
+	}
+	
+	/**
+	 * create a byte pixel format.
+	 * <p>
+	 * The channel of byte index i is at shift 8*i of the int pixel,
+	 * so writeBytes() stores the int pixel in little-endian order.
+	 * </p>
+	 * @param bytesPerPixel bytes per pixel (3 or 4)
+	 * @param redIndex byte index of red
+	 * @param greenIndex byte index of green
+	 * @param blueIndex byte index of blue
+	 * @param alphaIndex byte index of alpha, or -1 if there is no alpha
+	 * @return pixel format
+	 */
+	public static PixelFormat createBytes(int bytesPerPixel, int redIndex, int greenIndex, int blueIndex, int alphaIndex) {
+		if(bytesPerPixel < 3 || bytesPerPixel > 4) {
+			throw new IllegalArgumentException("Invalid bytes per pixel: "+bytesPerPixel);
+		}
+		int [] indices = {redIndex, greenIndex, blueIndex};
+		int used = 0;
+		for(int i=0; i<3; i++) {
+			if(indices[i] < 0 || indices[i] >= bytesPerPixel || (used & (1 << indices[i])) != 0) {
+				throw new IllegalArgumentException("Invalid byte indices: "+redIndex+", "+greenIndex+", "+blueIndex+", "+alphaIndex);
+			}
+			used |= 1 << indices[i];
+		}
+		int alphaMask = 0xFF;
+		if(alphaIndex < 0) {
+			// the unused byte, which is not written when bytesPerPixel is 3
+			alphaIndex = Integer.numberOfTrailingZeros(~used);
+			alphaMask = 0;
+		}
+		else if(alphaIndex >= bytesPerPixel || (used & (1 << alphaIndex)) != 0) {
+			throw new IllegalArgumentException("Invalid byte indices: "+redIndex+", "+greenIndex+", "+blueIndex+", "+alphaIndex);
+		}
+		return new PixelFormat(8*redIndex, 8*greenIndex, 8*blueIndex, 8*alphaIndex, 0xFF << 8*redIndex, 0xFF << 8*greenIndex, 0xFF << 8*blueIndex, alphaMask << 8*alphaIndex, bytesPerPixel);
+	}
+	
+	/**
+	 * check whether red, green and blue are premultiplied by alpha.
+	 * @return true if premultiplied
+	 */
+	public final boolean isPremultiplied() {
+		return premultiplied;
+	}
+	
+	/**
+	 * get the premultiplied format of the same channel layout.
+	 * <p>
+	 * The readers emit premultiplied pixels for a premultiplied format,
+	 * and PixelFormatConverter premultiplies or unpremultiplies between the formats.
+	 * </p>
+	 * @return premultiplied format (e.g. PixelFormat.ARGB.premultiplied())
+	 */
+	public final PixelFormat premultiplied() {
+		return premultiplied ? this : twin;
+	}
+	
+	/**
+	 * get the non-premultiplied format of the same channel layout.
+	 * @return non-premultiplied format
+	 */
+	public final PixelFormat unpremultiplied() {
+		return premultiplied ? twin : this;
+	}
 
 	/**
 	 * get red shift value.
@@ -103,7 +212,7 @@ public final class PixelFormat {
 	 * @return red value
 	 */
 	public final int getRed(int pixel) {
-		return (pixel & redMask) >> redShift;
+		return (pixel & redMask) >>> redShift;
 	}
 	
 	/**
@@ -112,7 +221,7 @@ public final class PixelFormat {
 	 * @return green value
 	 */
 	public final int getGreen(int pixel) {
-		return (pixel & greenMask) >> greenShift;
+		return (pixel & greenMask) >>> greenShift;
 	}
 	
 	/**
@@ -121,7 +230,7 @@ public final class PixelFormat {
 	 * @return blue value
 	 */
 	public final int getBlue(int pixel) {
-		return (pixel & blueMask) >> blueShift;
+		return (pixel & blueMask) >>> blueShift;
 	}
 	
 	/**
@@ -130,7 +239,7 @@ public final class PixelFormat {
 	 * @return alpha value
 	 */
 	public final int getAlpha(int pixel) {
-		return (pixel & alphaMask) >> alphaShift;
+		return (pixel & alphaMask) >>> alphaShift;
 	}
 	
 	/**
@@ -145,7 +254,74 @@ public final class PixelFormat {
 		return (red<<redShift)|(green<<greenShift)|(blue<<blueShift)|(alpha<<alphaShift);
 	}
 
+	/**
+	 * get the number of bytes per pixel written by writeBytes().
+	 * @return bytes per pixel
+	 */
+	public final int getBytesPerPixel() {
+		return bytesPerPixel;
+	}
+	
+	/**
+	 * write int pixels of this format to a byte array.
+	 * Each pixel is stored in getBytesPerPixel() bytes in little-endian order.
+	 * @param pixels pixels
+	 * @param offset offset in pixels
+	 * @param bytes byte array
+	 * @param byteOffset offset in bytes
+	 * @param length number of pixels
+	 */
+	public final void writeBytes(int [] pixels, int offset, byte [] bytes, int byteOffset, int length) {
+		int index = byteOffset;
+		if(bytesPerPixel == 4) {
+			for(int i=offset; i<offset+length; i++) {
+				int p = pixels[i];
+				bytes[index++] = (byte)p;
+				bytes[index++] = (byte)(p >> 8);
+				bytes[index++] = (byte)(p >> 16);
+				bytes[index++] = (byte)(p >> 24);
+			}
+		}
+		else {
+			for(int i=offset; i<offset+length; i++) {
+				int p = pixels[i];
+				bytes[index++] = (byte)p;
+				bytes[index++] = (byte)(p >> 8);
+				bytes[index++] = (byte)(p >> 16);
+			}
+		}
+	}
+	
+	/**
+	 * read int pixels of this format from a byte array written by writeBytes().
+	 * When getBytesPerPixel() is 3, the fourth byte of the pixels is 0.
+	 * @param bytes byte array
+	 * @param byteOffset offset in bytes
+	 * @param pixels pixels
+	 * @param offset offset in pixels
+	 * @param length number of pixels
+	 */
+	public final void readBytes(byte [] bytes, int byteOffset, int [] pixels, int offset, int length) {
+		int index = byteOffset;
+		if(bytesPerPixel == 4) {
+			for(int i=offset; i<offset+length; i++) {
+				pixels[i] = (bytes[index] & 0xFF) | (bytes[index+1] & 0xFF) << 8 | (bytes[index+2] & 0xFF) << 16 | (bytes[index+3] & 0xFF) << 24;
+				index += 4;
+			}
+		}
+		else {
+			for(int i=offset; i<offset+length; i++) {
+				pixels[i] = (bytes[index] & 0xFF) | (bytes[index+1] & 0xFF) << 8 | (bytes[index+2] & 0xFF) << 16;
+				index += 3;
+			}
+		}
+	}
+	
 	private PixelFormat(int redShift, int greenShift, int blueShift, int alphaShift, int redMask, int greenMask, int blueMask, int alphaMask) {
+		this(redShift, greenShift, blueShift, alphaShift, redMask, greenMask, blueMask, alphaMask, 4);
+	}
+	
+	private PixelFormat(int redShift, int greenShift, int blueShift, int alphaShift, int redMask, int greenMask, int blueMask, int alphaMask, int bytesPerPixel) {
 		this.redShift = redShift;
 		this.greenShift = greenShift;
 		this.blueShift = blueShift;
@@ -154,6 +330,24 @@ public final class PixelFormat {
 		this.greenMask = greenMask;
 		this.blueMask = blueMask;
 		this.alphaMask = alphaMask;
+		this.bytesPerPixel = bytesPerPixel;
+		this.premultiplied = false;
+		this.twin = new PixelFormat(this);
+	}
+	
+	// the premultiplied format of the straight format
+	private PixelFormat(PixelFormat straight) {
+		this.redShift = straight.redShift;
+		this.greenShift = straight.greenShift;
+		this.blueShift = straight.blueShift;
+		this.alphaShift = straight.alphaShift;
+		this.redMask = straight.redMask;
+		this.greenMask = straight.greenMask;
+		this.blueMask = straight.blueMask;
+		this.alphaMask = straight.alphaMask;
+		this.bytesPerPixel = straight.bytesPerPixel;
+		this.premultiplied = true;
+		this.twin = straight;
 	}
 	
 	private int redShift;
@@ -164,5 +358,8 @@ public final class PixelFormat {
 	private int greenMask;
 	private int blueMask;
 	private int alphaMask;
-
+	private int bytesPerPixel;
+	private boolean premultiplied;
+	private PixelFormat twin;
+	
 }
@@ -0,0 +1,241 @@
+/**
+ * PixelFormatConverter.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.image;
+
+/**
+ * Pixel conversion kernel from one PixelFormat to another.
+ * <p>
+ * The kernel is selected once for a pair of formats.
+ * When every channel is 8-bit and byte-aligned, the conversion is a single byte permutation
+ * (copy, R/B swap, rotate or byte reversal); other formats use masks and shifts.
+ * Between a premultiplied and a non-premultiplied format, the pixels are also premultiplied or unpremultiplied.
+ * </p>
+ */
+public abstract class PixelFormatConverter {
+	
+	/**
+	 * get a converter from source format to target format.
+	 * @param source source pixel format
+	 * @param target target pixel format
+	 * @return converter
+	 */
+	public static PixelFormatConverter get(PixelFormat source, PixelFormat target) {
+		
+		if(source == target) return COPY;
+		
+		if(source.isPremultiplied() != target.isPremultiplied()) {
+			PixelFormatConverter order = get(source.unpremultiplied(), target.unpremultiplied());
+			return new Alpha(order, source, target);
+		}
+		
+		int [] sourceShifts = getByteShifts(source);
+		int [] targetShifts = getByteShifts(target);
+		if(sourceShifts == null || targetShifts == null) return new MaskShift(source, target);
+		
+		boolean copy = true;
+		boolean swap = true;
+		boolean reverse = true;
+		int rotation = (targetShifts[0] - sourceShifts[0]) & 31;
+		for(int i=0; i<4; i++) {
+			int s = sourceShifts[i];
+			int t = targetShifts[i];
+			copy &= (s == t);
+			swap &= (t == ((s == 0 || s == 16) ? s ^ 16 : s));
+			reverse &= (t == 24 - s);
+			if(((t - s) & 31) != rotation) rotation = -1;
+		}
+		
+		if(copy) return COPY;
+		if(swap) return SWAP;
+		if(reverse) return REVERSE;
+		if(rotation > 0) return new Rotate(rotation);
+		return new MaskShift(source, target);
+		
+	}
+	
+	/**
+	 * convert pixels from source array to destination array.
+	 * The arrays may be the same array with the same offset.
+	 * @param source source pixels
+	 * @param sourceOffset offset in source
+	 * @param destination destination pixels
+	 * @param destinationOffset offset in destination
+	 * @param length number of pixels
+	 */
+	public abstract void convert(int [] source, int sourceOffset, int [] destination, int destinationOffset, int length);
+	
+	/**
+	 * convert pixels in place.
+	 * @param pixels pixels
+	 * @param offset offset in pixels
+	 * @param length number of pixels
+	 */
+	public void convert(int [] pixels, int offset, int length) {
+		convert(pixels, offset, pixels, offset, length);
+	}
+	
+	/**
+	 * convert a pixel.
+	 * @param pixel source pixel
+	 * @return converted pixel
+	 */
+	public abstract int convert(int pixel);
+	
+	// shifts of red, green, blue and alpha when they are 8-bit at byte boundaries, otherwise null.
+	private static int [] getByteShifts(PixelFormat format) {
+		int [] shifts = {
+			format.getRedShift(),
+			format.getGreenShift(),
+			format.getBlueShift(),
+			format.getAlphaShift()
+		};
+		int [] masks = {
+			format.getRedMask(),
+			format.getGreenMask(),
+			format.getBlueMask(),
+			format.getAlphaMask()
+		};
+		int used = 0;
+		for(int i=0; i<4; i++) {
+			if((shifts[i] & 7) != 0 || masks[i] != 0xFF << shifts[i]) return null;
+			used |= masks[i];
+		}
+		return (used == 0xFFFFFFFF) ? shifts : null;
+	}
+	
+	private static final PixelFormatConverter COPY = new PixelFormatConverter() {
+		@Override
+		public void convert(int [] source, int sourceOffset, int [] destination, int destinationOffset, int length) {
+			if(source != destination || sourceOffset != destinationOffset) {
+				System.arraycopy(source, sourceOffset, destination, destinationOffset, length);
+			}
+		}
+		@Override
+		public int convert(int pixel) {
+			return pixel;
+		}
+	};
+	
+	// ARGB <-> ABGR
+	private static final PixelFormatConverter SWAP = new PixelFormatConverter() {
+		@Override
+		public void convert(int [] source, int sourceOffset, int [] destination, int destinationOffset, int length) {
+			PixelKernels.getDefault().swapRedBlue(source, sourceOffset, destination, destinationOffset, length);
+		}
+		@Override
+		public int convert(int p) {
+			return (p & 0xFF00FF00) | ((p >> 16) & 0xFF) | ((p & 0xFF) << 16);
+		}
+	};
+	
+	private static final PixelFormatConverter REVERSE = new PixelFormatConverter() {
+		@Override
+		public void convert(int [] source, int sourceOffset, int [] destination, int destinationOffset, int length) {
+			PixelKernels.getDefault().reverseBytes(source, sourceOffset, destination, destinationOffset, length);
+		}
+		@Override
+		public int convert(int pixel) {
+			return Integer.reverseBytes(pixel);
+		}
+	};
+	
+	private static final class Rotate extends PixelFormatConverter {
+		
+		Rotate(int distance) {
+			this.distance = distance;
+		}
+		
+		@Override
+		public void convert(int [] source, int sourceOffset, int [] destination, int destinationOffset, int length) {
+			PixelKernels.getDefault().rotate(source, sourceOffset, destination, destinationOffset, length, distance);
+		}
+		
+		@Override
+		public int convert(int pixel) {
+			return Integer.rotateLeft(pixel, distance);
+		}
+		
+		private int distance;
+		
+	}
+	
+	private static final class Alpha extends PixelFormatConverter {
+		
+		Alpha(PixelFormatConverter order, PixelFormat source, PixelFormat target) {
+			this.order = order;
+			this.source = source;
+			this.target = target;
+		}
+		
+		@Override
+		public void convert(int [] source, int sourceOffset, int [] destination, int destinationOffset, int length) {
+			PixelKernels kernels = PixelKernels.getDefault();
+			if(target.isPremultiplied()) {
+				order.convert(source, sourceOffset, destination, destinationOffset, length);
+				kernels.premultiply(destination, destinationOffset, length, target);
+			}
+			else {
+				// unpremultiplied before the alpha may be dropped by the target format
+				if(source != destination || sourceOffset != destinationOffset) {
+					System.arraycopy(source, sourceOffset, destination, destinationOffset, length);
+				}
+				kernels.unpremultiply(destination, destinationOffset, length, this.source);
+				order.convert(destination, destinationOffset, length);
+			}
+		}
+		
+		@Override
+		public int convert(int pixel) {
+			int [] pixels = {pixel};
+			convert(pixels, 0, pixels, 0, 1);
+			return pixels[0];
+		}
+		
+		private PixelFormatConverter order;
+		private PixelFormat source;
+		private PixelFormat target;
+		
+	}
+	
+	private static final class MaskShift extends PixelFormatConverter {
+		
+		MaskShift(PixelFormat source, PixelFormat target) {
+			this.source = source;
+			this.target = target;
+		}
+		
+		@Override
+		public void convert(int [] source, int sourceOffset, int [] destination, int destinationOffset, int length) {
+			for(int i=0; i<length; i++) {
+				destination[destinationOffset+i] = convert(source[sourceOffset+i]);
+			}
+		}
+		
+		@Override
+		public int convert(int pixel) {
+			int red = source.getRed(pixel);
+			int green = source.getGreen(pixel);
+			int blue = source.getBlue(pixel);
+			int alpha = (source.getAlphaMask() != 0) ? source.getAlpha(pixel) : 0xFF;
+			return target.getPixel(red, green, blue, alpha);
+		}
+		
+		private PixelFormat source;
+		private PixelFormat target;
+		
+	}
+	
+}
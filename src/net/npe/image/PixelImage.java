@@ -15,6 +15,8 @@
 
 package net.npe.image;
 
+import java.io.IOException;
+
 public class PixelImage {
 	
 	/**
@@ -31,11 +33,116 @@ public class PixelImage {
 		this.format = format;
 	}
 	
+	/**
+	 * constructor of an image in a part of a pixel array.
+	 * The pixel (x, y) is pixels[offset + y*stride + x].
+	 * @param pixels pixel array
+	 * @param offset index of the top-left pixel
+	 * @param stride number of array elements from a row to the next row
+	 * @param width image width
+	 * @param height image height
+	 * @param format pixel format
+	 */
+	public PixelImage(int [] pixels, int offset, int stride, int width, int height, PixelFormat format) {
+		this(pixels, width, height, format);
+		if(offset < 0 || stride < width) {
+			throw new IllegalArgumentException("Invalid offset or stride: "+offset+", "+stride);
+		}
+		this.offset = offset;
+		this.stride = stride;
+	}
+	
+	/**
+	 * constructor with a pixel storage.
+	 * @param storage storage of width*height pixels
+	 * @param width image width
+	 * @param height image height
+	 * @param format pixel format
+	 */
+	public PixelImage(PixelStorage storage, int width, int height, PixelFormat format) {
+		this(storage.getArray(), width, height, format);
+		this.storage = storage;
+	}
+	
 	/**
 	 * get pixel array.
-	 * @return pixel array
+	 * The array may be changed by the caller, so the alpha info of the pixels is invalidated (see getAlphaInfo()).
+	 * @return pixel array, or null if the pixels are not in an int array (see getStorage())
+	 */
+	public int [] getPixels() {
+		if(pixels != null) modified();
+		return pixels;
+	}
+	
+	/**
+	 * get the index of the top-left pixel in getPixels() and getStorage().
+	 * @return offset, which is 0 except for the sub images
 	 */
-	public int [] getPixels() { return pixels; }
+	public int getOffset() { return offset; }
+	
+	/**
+	 * get the number of pixels from a row to the next row in getPixels() and getStorage().
+	 * @return stride, which is the width except for the sub images
+	 */
+	public int getStride() { return (stride != 0) ? stride : width; }
+	
+	/**
+	 * get the storage of the pixels.
+	 * The storage may be changed by the caller, so the alpha info of the pixels is invalidated (see getAlphaInfo()).
+	 * @return storage, which wraps getPixels() for the images on the heap
+	 */
+	public PixelStorage getStorage() {
+		modified();
+		return storage();
+	}
+	
+	// storage of the pixels, which does not invalidate the alpha info
+	private PixelStorage storage() {
+		if(pixels != null && (storage == null || storage.getArray() != pixels)) {
+			storage = PixelStorage.wrap(pixels);
+		}
+		return storage;
+	}
+	
+	/**
+	 * release the storage of the pixels.
+	 * The storage is closed, and the image must not be used after it.
+	 */
+	public void close() {
+		// the storage of a sub image belongs to the parent
+		if(storage != null && !view) storage.close();
+		storage = null;
+		pixels = null;
+		alphaInfo = null;
+	}
+	
+	/**
+	 * get a sub image, which is a view of the pixels of this image.
+	 * <p>
+	 * No pixels are copied: the operations on the sub image change the pixels of this image.
+	 * The sub images and this image share the format of the pixels, so the format of a sub image can not be changed,
+	 * and changing the format of this image (changeFormat(), premultiply() and unpremultiply()) invalidates its sub images.
+	 * </p>
+	 * @param x left of the sub image
+	 * @param y top of the sub image
+	 * @param width width of the sub image
+	 * @param height height of the sub image
+	 * @return sub image
+	 */
+	public PixelImage subImage(int x, int y, int width, int height) {
+		if(x < 0 || y < 0 || width < 0 || height < 0 || x+width > this.width || y+height > this.height) {
+			throw new IllegalArgumentException("Invalid bounds: "+x+", "+y+", "+width+", "+height);
+		}
+		PixelImage image = new PixelImage(pixels, width, height, format);
+		image.offset = offset + y*getStride() + x;
+		image.stride = getStride();
+		image.storage = (pixels != null) ? null : storage;
+		image.view = true;
+		image.modCount = modCount;
+		image.executor = executor;
+		image.parallelThreshold = parallelThreshold;
+		return image;
+	}
 	
 	/**
 	 * get image width.
@@ -55,41 +162,195 @@ public class PixelImage {
 	 */
 	public PixelFormat getFormat() { return format; }
 	
+	/**
+	 * check whether the pixels are premultiplied by alpha.
+	 * @return true if getFormat() is premultiplied
+	 */
+	public boolean isPremultiplied() {
+		return format != null && format.isPremultiplied();
+	}
+	
+	/**
+	 * premultiply red, green and blue by alpha.
+	 * The format is changed to getFormat().premultiplied().
+	 */
+	public void premultiply() {
+		changeFormat(format.premultiplied());
+	}
+	
+	/**
+	 * divide red, green and blue by alpha.
+	 * The format is changed to getFormat().unpremultiplied().
+	 */
+	public void unpremultiply() {
+		changeFormat(format.unpremultiplied());
+	}
+	
+	/**
+	 * get the executor of the bulk pixel operations.
+	 * @return executor
+	 */
+	public PixelExecutor getExecutor() { return executor; }
+	
+	/**
+	 * set the executor of the bulk pixel operations.
+	 * <p>
+	 * changeFormat(), multiplyAlpha(), setAlpha() and removeTransparency() split an image of
+	 * getParallelThreshold() pixels or more into bands of rows, which are run by the executor.
+	 * Smaller images are processed on the calling thread.
+	 * </p>
+	 * @param executor executor (e.g. ForkJoinPixelExecutor), or PixelExecutor.SEQUENTIAL
+	 */
+	public void setExecutor(PixelExecutor executor) {
+		this.executor = (executor != null) ? executor : PixelExecutor.SEQUENTIAL;
+	}
+	
+	/**
+	 * get the minimum number of pixels processed by the executor.
+	 * @return threshold in pixels
+	 */
+	public int getParallelThreshold() { return parallelThreshold; }
+	
+	/**
+	 * set the minimum number of pixels processed by the executor.
+	 * @param threshold threshold in pixels
+	 */
+	public void setParallelThreshold(int threshold) {
+		this.parallelThreshold = threshold;
+	}
+	
 	/**
 	 * change format
 	 * @param format pixel format
+	 * @throws IllegalStateException if this image is a sub image, whose pixels are shared with the parent image
 	 */
 	public void changeFormat(PixelFormat format) {
 		if(this.format != format) {
-			for(int i=0; i<width*height; i++) {
-				int red = this.format.getRed(pixels[i]);
-				int green = this.format.getGreen(pixels[i]);
-				int blue = this.format.getBlue(pixels[i]);
-				int alpha = this.format.getAlpha(pixels[i]);
-				pixels[i] = format.getPixel(red, green, blue, alpha);
+			if(view) {
+				throw new IllegalStateException("Cannot change the format of a sub image");
+			}
+			// the alpha values are kept unless the alpha is added or removed
+			AlphaInfo info = (this.format.getAlphaMask() != 0 && format.getAlphaMask() != 0) ? getCachedAlphaInfo() : null;
+			if(pixels == null && storage != null && storage.setFormat(format)) {
+				// the storage converts the pixels on access (e.g. PackedPixelStorage)
+				this.format = format;
+				modified();
+				setAlphaInfo(info);
+				return;
 			}
+			final PixelFormatConverter converter = PixelFormatConverter.get(this.format, format);
+			forEachBand(new Operation() {
+				@Override
+				public void apply(int [] pixels, int offset, int length) {
+					converter.convert(pixels, offset, length);
+				}
+			});
 			this.format = format;
+			modified();
+			setAlphaInfo(info);
 		}
 	}
-
+	
+	/**
+	 * copy the image to a new storage.
+	 * <p>
+	 * The storage converts the pixels, e.g. PackedPixelStorage.allocator(PackedFormat.RGB565)
+	 * packs the image and PixelStorage.HEAP expands a packed image to an int array.
+	 * </p>
+	 * @param allocator allocator of the new storage
+	 * @return new image of the same format, whose pixels are not shared with this image
+	 */
+	public PixelImage copy(PixelStorage.Allocator allocator) {
+		final PixelStorage source = storage();
+		final PixelStorage destination = allocator.allocate(width*height, format);
+		forEachRange(new Range() {
+			@Override
+			public void run(int begin, int end) {
+				int [] array = source.getArray();
+				int [] work = null;
+				int segment = getSegmentLength(begin, end);
+				for(int i=begin; i<end; i+=segment) {
+					int index = toIndex(i);
+					if(array != null) {
+						destination.set(i, array, index, segment);
+						continue;
+					}
+					if(work == null) work = BufferPool.getDefault().getInts(Math.min(BAND_SIZE, segment));
+					for(int j=0; j<segment; j+=work.length) {
+						int length = Math.min(work.length, segment-j);
+						source.get(index+j, work, 0, length);
+						destination.set(i+j, work, 0, length);
+					}
+				}
+				BufferPool.getDefault().release(work);
+			}
+		});
+		PixelImage image = new PixelImage(destination, width, height, format);
+		image.setAlphaInfo(getCachedAlphaInfo());
+		image.setExecutor(executor);
+		image.setParallelThreshold(parallelThreshold);
+		return image;
+	}
+	
+	/**
+	 * copy pixels converted to the format.
+	 * @param format pixel format
+	 * @param destination destination array of width*height pixels
+	 * @param offset offset in destination
+	 */
+	public void getPixels(PixelFormat format, final int [] destination, final int offset) {
+		final PixelFormatConverter converter = PixelFormatConverter.get(this.format, format);
+		final PixelStorage storage = (pixels != null) ? null : this.storage;
+		forEachRange(new Range() {
+			@Override
+			public void run(int begin, int end) {
+				int segment = getSegmentLength(begin, end);
+				for(int i=begin; i<end; i+=segment) {
+					if(storage != null) {
+						storage.get(toIndex(i), destination, offset+i, segment);
+						converter.convert(destination, offset+i, segment);
+					}
+					else {
+						converter.convert(pixels, toIndex(i), destination, offset+i, segment);
+					}
+				}
+			}
+		});
+	}
+	
 	/**
 	 * multiply alpha
+	 * The alpha is rounded to 0 to 255 and multiplied by the integer lookup table.
+	 * The red, green and blue of a premultiplied image are multiplied as well.
 	 * @param alpha alpha is 0.0 to 1.0
 	 */
 	public void multiplyAlpha(float alpha) {
-		int rgbMask = ~format.getAlphaMask();
-		for(int i=0; i<width*height; i++) {
-			int a = (int)(255 * alpha * (format.getAlpha(pixels[i]) / 255.f));
-			pixels[i] = (pixels[i] & rgbMask) | (a << format.getAlphaShift());
-		}
+		multiplyAlpha(Math.round(255 * Math.max(0, Math.min(1, alpha))));
 	}
 	
 	/**
-	 * multiply alpha
+	 * multiply alpha by an integer lookup table.
+	 * The red, green and blue of a premultiplied image are multiplied as well.
 	 * @param alpha alpha is 0 to 255
 	 */
 	public void multiplyAlpha(int alpha) {
-		multiplyAlpha(alpha / 255.f);
+		final int factor = Math.max(0, Math.min(255, alpha));
+		final int alphaMask = format.getAlphaMask();
+		final int alphaShift = format.getAlphaShift();
+		final boolean premultiplied = isPremultiplied();
+		final PixelKernels kernels = PixelKernels.getDefault();
+		forEachBand(new Operation() {
+			@Override
+			public void apply(int [] pixels, int offset, int length) {
+				if(premultiplied) {
+					kernels.multiplyChannels(pixels, offset, length, factor);
+				}
+				else {
+					kernels.multiplyAlpha(pixels, offset, length, alphaMask, alphaShift, factor);
+				}
+			}
+		});
+		modified();
 	}
 	
 	/**
@@ -97,30 +358,543 @@ public class PixelImage {
 	 * @param alpha alpha is 0 to 255
 	 */
 	public void setAlpha(int alpha) {
-		int rgbMask = ~format.getAlphaMask();
-		for(int i=0; i<width*height; i++) {
-			pixels[i] = (pixels[i] & rgbMask) | (alpha << format.getAlphaShift());
-		}
+		final int rgbMask = ~format.getAlphaMask();
+		final int bits = alpha << format.getAlphaShift();
+		final PixelFormat premultiplied = isPremultiplied() ? format : null;
+		final PixelKernels kernels = PixelKernels.getDefault();
+		forEachBand(new Operation() {
+			@Override
+			public void apply(int [] pixels, int offset, int length) {
+				if(premultiplied != null) kernels.unpremultiply(pixels, offset, length, premultiplied);
+				kernels.fillAlpha(pixels, offset, length, rgbMask, bits);
+				if(premultiplied != null) kernels.premultiply(pixels, offset, length, premultiplied);
+			}
+		});
+		modified();
+		if(alpha == 0xFF) setAlphaInfo(AlphaInfo.opaque(width, height));
 	}
 	
 	/**
 	 * remove transparency.
 	 */
 	public void removeTransparency() {
-		int alphaMask = format.getAlphaMask();
-		int rgbMask = ~alphaMask;
-		for(int i=0; i<width*height; i++) {
-			pixels[i] = (pixels[i] & rgbMask) | alphaMask;
+		final int alphaMask = format.getAlphaMask();
+		final int rgbMask = ~alphaMask;
+		final PixelFormat premultiplied = isPremultiplied() ? format : null;
+		final PixelKernels kernels = PixelKernels.getDefault();
+		forEachBand(new Operation() {
+			@Override
+			public void apply(int [] pixels, int offset, int length) {
+				if(premultiplied != null) kernels.unpremultiply(pixels, offset, length, premultiplied);
+				kernels.fillAlpha(pixels, offset, length, rgbMask, alphaMask);
+			}
+		});
+		modified();
+		setAlphaInfo(AlphaInfo.opaque(width, height));
+	}
+	
+	/**
+	 * flip the image upside down in place.
+	 */
+	public void flipVertical() {
+		reverse(true, false);
+	}
+	
+	/**
+	 * flip the image left to right in place.
+	 */
+	public void flipHorizontal() {
+		reverse(false, true);
+	}
+	
+	/**
+	 * rotate the image by 180 degrees in place.
+	 */
+	public void rotate180() {
+		reverse(true, true);
+	}
+	
+	/**
+	 * rotate the image by 90 degrees clockwise. The width and the height are swapped.
+	 * @see #transpose()
+	 */
+	public void rotate90() {
+		transpose();
+		flipHorizontal();
+	}
+	
+	/**
+	 * rotate the image by 270 degrees clockwise (90 degrees counterclockwise). The width and the height are swapped.
+	 * @see #transpose()
+	 */
+	public void rotate270() {
+		transpose();
+		flipVertical();
+	}
+	
+	/**
+	 * transpose the image, the pixel (x, y) to (y, x). The width and the height are swapped.
+	 * <p>
+	 * A square image is transposed in place by swapping the tiles across the diagonal.
+	 * A non-square image is transposed through a work array into the same pixels,
+	 * so it must not be a sub image or a part of a larger array.
+	 * The tiles are run by the executor.
+	 * </p>
+	 */
+	public void transpose() {
+		AlphaInfo info = getCachedAlphaInfo();
+		if(width == height) {
+			transposeSquare();
+			modified();
+			if(info != null) setAlphaInfo(info.transpose());
+			return;
+		}
+		if(view || getStride() != width) {
+			throw new IllegalStateException("Cannot transpose a non-square image in a part of the pixels");
+		}
+		final int width = this.width;
+		final int height = this.height;
+		final int length = width*height;
+		final BufferPool pool = BufferPool.getDefault();
+		final int [] source;
+		final int sourceOffset;
+		if(pixels != null) {
+			source = pixels;
+			sourceOffset = offset;
+		}
+		else {
+			source = pool.getInts(length);
+			sourceOffset = 0;
+			storage.get(offset, source, 0, length);
+		}
+		final int [] destination = pool.getInts(length);
+		execute((height + TILE_SIZE - 1) / TILE_SIZE, new PixelExecutor.Task() {
+			@Override
+			public void run(int index) {
+				int top = index * TILE_SIZE;
+				int bottom = Math.min(top + TILE_SIZE, height);
+				for(int left=0; left<width; left+=TILE_SIZE) {
+					int right = Math.min(left + TILE_SIZE, width);
+					for(int y=top; y<bottom; y++) {
+						int i = sourceOffset + y*width;
+						for(int x=left; x<right; x++) {
+							destination[x*height+y] = source[i+x];
+						}
+					}
+				}
+			}
+		});
+		if(pixels != null) {
+			System.arraycopy(destination, 0, pixels, offset, length);
+		}
+		else {
+			storage.set(offset, destination, 0, length);
+			pool.release(source);
+		}
+		pool.release(destination);
+		this.width = height;
+		this.height = width;
+		this.stride = 0;
+		modified();
+		if(info != null) setAlphaInfo(info.transpose());
+	}
+	
+	/**
+	 * get the alpha info of the pixels.
+	 * <p>
+	 * The info recorded by the decoder is returned, or the pixels are scanned once.
+	 * The info is kept until the pixels are changed by the methods of this image or of the images sharing the pixels (see subImage()).
+	 * getPixels() and getStorage() invalidate the info, so call setAlphaInfo(null) after changing the pixels
+	 * through an array or a storage kept from before the last call of getAlphaInfo().
+	 * </p>
+	 * @return alpha info
+	 */
+	public AlphaInfo getAlphaInfo() {
+		AlphaInfo info = getCachedAlphaInfo();
+		if(info == null) {
+			info = (format.getAlphaMask() != 0) ? scanAlpha() : AlphaInfo.opaque(width, height);
+			setAlphaInfo(info);
+		}
+		return info;
+	}
+	
+	/**
+	 * set the alpha info of the pixels, e.g. recorded by a decoder.
+	 * The null info invalidates the info of the images sharing the pixels as well.
+	 * @param info alpha info, or null to scan the pixels again
+	 */
+	public void setAlphaInfo(AlphaInfo info) {
+		if(info == null) {
+			modified();
+			return;
+		}
+		this.alphaInfo = info;
+		this.alphaInfoCount = modCount[0];
+	}
+	
+	/**
+	 * get a 64-bit hash of the pixels, which is the same for the same pixels in any format and layout.
+	 * <p>
+	 * The pixels are converted to the straight ARGB (opaque if the format has no alpha),
+	 * so e.g. a raw TGA image and its RLE copy, or an ARGB image and its ABGR copy have the same hash.
+	 * The chunks of the pixels are hashed by the executor. The hash is not cryptographic.
+	 * </p>
+	 * @return hash
+	 */
+	public long contentHash() {
+		final int count = width*height;
+		final int chunks = (count + ContentHash.CHUNK_SIZE - 1) / ContentHash.CHUNK_SIZE;
+		final int [] hashes = new int[2*chunks];
+		final PixelFormatConverter converter = PixelFormatConverter.get(format, PixelFormat.ARGB);
+		final int opaque = (format.getAlphaMask() == 0) ? 0xFF000000 : 0;
+		final PixelStorage storage = (pixels != null) ? null : this.storage;
+		execute(chunks, new PixelExecutor.Task() {
+			@Override
+			public void run(int index) {
+				BufferPool pool = BufferPool.getDefault();
+				int begin = index * ContentHash.CHUNK_SIZE;
+				int length = Math.min(ContentHash.CHUNK_SIZE, count-begin);
+				// the pixels of the straight ARGB are hashed in place
+				if(storage == null && opaque == 0 && format == PixelFormat.ARGB && getStride() == width) {
+					ContentHash.hashChunk(pixels, toIndex(begin), length, hashes, index);
+					return;
+				}
+				int [] work = pool.getInts(length);
+				// the rows of the chunk are copied in the order of the pixels
+				for(int i=0; i<length; ) {
+					int segment = (getStride() == width) ? length-i : Math.min(length-i, width - (begin+i) % width);
+					int position = toIndex(begin+i);
+					if(storage != null) {
+						storage.get(position, work, i, segment);
+						converter.convert(work, i, segment);
+					}
+					else {
+						converter.convert(pixels, position, work, i, segment);
+					}
+					i += segment;
+				}
+				if(opaque != 0) {
+					for(int i=0; i<length; i++) work[i] |= opaque;
+				}
+				ContentHash.hashChunk(work, 0, length, hashes, index);
+				pool.release(work);
+			}
+		});
+		return ContentHash.combine(hashes, chunks, width, height);
+	}
+	
+	/**
+	 * set the storage of the pixels.
+	 * @param storage storage, or null
+	 */
+	protected void setStorage(PixelStorage storage) {
+		this.storage = storage;
+		this.pixels = (storage != null) ? storage.getArray() : null;
+		this.offset = 0;
+		this.stride = 0;
+		this.view = false;
+		this.modCount = new int[1];
+		this.alphaInfo = null;
+	}
+	
+	/**
+	 * A bulk operation on a band of pixels.
+	 */
+	protected interface Operation {
+		/**
+		 * apply the operation to the pixels.
+		 * @param pixels pixel array, which is the image array or a work buffer
+		 * @param offset offset of the band in pixels
+		 * @param length number of pixels
+		 */
+		void apply(int [] pixels, int offset, int length);
+	}
+	
+	/**
+	 * A part of the image given by pixel indices.
+	 * The index of the pixel (x, y) is y*width + x, and toIndex() gives its index in the pixel array.
+	 */
+	protected interface Range {
+		/**
+		 * run for the pixels in [begin, end), which are whole rows.
+		 * @param begin first pixel index
+		 * @param end last pixel index (exclusive)
+		 */
+		void run(int begin, int end);
+	}
+	
+	/**
+	 * apply the operation to all the pixels.
+	 * The operation is applied to each row of a sub image, and to a band of rows otherwise.
+	 * When the pixels are not in an int array, each band is copied through a work buffer.
+	 * @param operation operation
+	 */
+	protected void forEachBand(final Operation operation) {
+		final PixelStorage storage = (pixels != null) ? null : this.storage;
+		forEachRange(new Range() {
+			@Override
+			public void run(int begin, int end) {
+				int [] work = null;
+				int segment = getSegmentLength(begin, end);
+				for(int i=begin; i<end; i+=segment) {
+					int index = toIndex(i);
+					if(storage == null) {
+						operation.apply(pixels, index, segment);
+						continue;
+					}
+					if(work == null) work = BufferPool.getDefault().getInts(Math.min(BAND_SIZE, segment));
+					for(int j=0; j<segment; j+=work.length) {
+						int length = Math.min(work.length, segment-j);
+						storage.get(index+j, work, 0, length);
+						operation.apply(work, 0, length);
+						storage.set(index+j, work, 0, length);
+					}
+				}
+				BufferPool.getDefault().release(work);
+			}
+		});
+	}
+	
+	/**
+	 * get the index in the pixel array of a pixel index of a Range.
+	 * @param index pixel index
+	 * @return index in getPixels() and getStorage()
+	 */
+	protected final int toIndex(int index) {
+		int stride = getStride();
+		return (stride == width) ? offset + index : offset + (index / width) * stride + index % width;
+	}
+	
+	// swap the rows across the middle and/or reverse each row
+	private void reverse(final boolean rows, final boolean columns) {
+		AlphaInfo info = getCachedAlphaInfo();
+		final int width = this.width;
+		final int height = this.height;
+		final int bandRows = Math.max(1, BAND_SIZE / Math.max(1, width));
+		final int count = rows ? (height + 1) / 2 : height;
+		execute((count + bandRows - 1) / bandRows, new PixelExecutor.Task() {
+			@Override
+			public void run(int index) {
+				BufferPool pool = BufferPool.getDefault();
+				int [] upper = pool.getInts(width);
+				int [] lower = rows ? pool.getInts(width) : null;
+				int end = Math.min((index + 1) * bandRows, count);
+				for(int y=index*bandRows; y<end; y++) {
+					int pair = rows ? height-1-y : y;
+					getTile(0, y, width, 1, upper);
+					if(columns) reverse(upper, width);
+					if(pair == y) {
+						setTile(0, y, width, 1, upper);
+						continue;
+					}
+					getTile(0, pair, width, 1, lower);
+					if(columns) reverse(lower, width);
+					setTile(0, y, width, 1, lower);
+					setTile(0, pair, width, 1, upper);
+				}
+				pool.release(upper);
+				pool.release(lower);
+			}
+		});
+		modified();
+		if(info != null) setAlphaInfo(info.flip(rows, columns, width, height));
+	}
+	
+	private static void reverse(int [] row, int length) {
+		for(int i=0, j=length-1; i<j; i++, j--) {
+			int pixel = row[i];
+			row[i] = row[j];
+			row[j] = pixel;
+		}
+	}
+	
+	// swap the tiles (i, j) and (j, i) transposed
+	private void transposeSquare() {
+		final int tiles = (width + TILE_SIZE - 1) / TILE_SIZE;
+		final int [] rows = new int[tiles*(tiles+1)/2];
+		final int [] columns = new int[rows.length];
+		int k = 0;
+		for(int i=0; i<tiles; i++) {
+			for(int j=i; j<tiles; j++) {
+				rows[k] = i;
+				columns[k] = j;
+				k++;
+			}
+		}
+		final BufferPool pool = BufferPool.getDefault();
+		execute(rows.length, new PixelExecutor.Task() {
+			@Override
+			public void run(int index) {
+				int x = columns[index] * TILE_SIZE;
+				int y = rows[index] * TILE_SIZE;
+				int w = Math.min(TILE_SIZE, width - x);
+				int h = Math.min(TILE_SIZE, height - y);
+				int [] tile = pool.getInts(w*h);
+				int [] transposed = pool.getInts(w*h);
+				getTile(x, y, w, h, tile);
+				transpose(tile, w, h, transposed);
+				if(x == y) {
+					setTile(x, y, w, h, transposed);
+				}
+				else {
+					// the tile (y, x) is h*w
+					getTile(y, x, h, w, tile);
+					setTile(y, x, h, w, transposed);
+					transpose(tile, h, w, transposed);
+					setTile(x, y, w, h, transposed);
+				}
+				pool.release(tile);
+				pool.release(transposed);
+			}
+		});
+	}
+	
+	private static void transpose(int [] source, int width, int height, int [] destination) {
+		for(int y=0; y<height; y++) {
+			for(int x=0; x<width; x++) {
+				destination[x*height+y] = source[y*width+x];
+			}
+		}
+	}
+	
+	// copy the pixels of a rectangle to a compact array
+	private void getTile(int x, int y, int width, int height, int [] tile) {
+		for(int j=0; j<height; j++) {
+			int index = offset + (y+j)*getStride() + x;
+			if(pixels != null) {
+				System.arraycopy(pixels, index, tile, j*width, width);
+			}
+			else {
+				storage.get(index, tile, j*width, width);
+			}
+		}
+	}
+	
+	// copy a compact array to the pixels of a rectangle
+	private void setTile(int x, int y, int width, int height, int [] tile) {
+		for(int j=0; j<height; j++) {
+			int index = offset + (y+j)*getStride() + x;
+			if(pixels != null) {
+				System.arraycopy(tile, j*width, pixels, index, width);
+			}
+			else {
+				storage.set(index, tile, j*width, width);
+			}
+		}
+	}
+	
+	// alpha info which is not invalidated by a change of the pixels
+	private AlphaInfo getCachedAlphaInfo() {
+		return (alphaInfoCount == modCount[0]) ? alphaInfo : null;
+	}
+	
+	// invalidate the alpha info of the images sharing the pixels
+	private void modified() {
+		modCount[0]++;
+		alphaInfo = null;
+	}
+	
+	// scan the alpha of the bands of rows
+	private AlphaInfo scanAlpha() {
+		final AlphaInfo.Builder builder = new AlphaInfo.Builder(format);
+		final PixelStorage storage = (pixels != null) ? null : this.storage;
+		forEachRange(new Range() {
+			@Override
+			public void run(int begin, int end) {
+				AlphaInfo.Builder band = new AlphaInfo.Builder(format);
+				int [] row = (storage != null) ? BufferPool.getDefault().getInts(width) : null;
+				for(int i=begin; i<end; i+=width) {
+					if(storage != null) {
+						storage.get(toIndex(i), row, 0, width);
+						band.add(row, 0, width, i/width);
+					}
+					else {
+						band.add(pixels, toIndex(i), width, i/width);
+					}
+				}
+				BufferPool.getDefault().release(row);
+				builder.merge(band);
+			}
+		});
+		return builder.build(width, height);
+	}
+	
+	// run the tasks by the executor when the image is large enough
+	private void execute(int count, PixelExecutor.Task task) {
+		PixelExecutor executor = (width*height < parallelThreshold) ? PixelExecutor.SEQUENTIAL : this.executor;
+		try {
+			executor.execute(count, task);
+		}
+		catch(IOException e) {
+			// operations do not throw IOException
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	// length of the contiguous parts of the pixels in the rows [begin, end)
+	private int getSegmentLength(int begin, int end) {
+		return (getStride() == width) ? end-begin : width;
+	}
+	
+	/**
+	 * run for all the pixels.
+	 * The pixels are split into bands of whole rows when the image is large enough for the executor.
+	 * @param range range
+	 */
+	protected void forEachRange(final Range range) {
+		final int count = width*height;
+		if(executor == PixelExecutor.SEQUENTIAL || count < parallelThreshold || width <= 0) {
+			range.run(0, count);
+			return;
+		}
+		final int bandSize = width * Math.max(1, BAND_SIZE / width);
+		try {
+			executor.execute((count + bandSize - 1) / bandSize, new PixelExecutor.Task() {
+				@Override
+				public void run(int index) {
+					int begin = index * bandSize;
+					range.run(begin, Math.min(begin + bandSize, count));
+				}
+			});
+		}
+		catch(IOException e) {
+			// operations do not throw IOException
+			throw new IllegalStateException(e);
 		}
 	}
 	
 	protected PixelImage() {
-		this(null, 0, 0, null);
+		this((int [])null, 0, 0, null);
 	}
 	
 	protected int [] pixels;
 	protected int width;
 	protected int height;
 	protected PixelFormat format;
-
+	
+	private int offset;
+	private int stride;
+	private boolean view;
+	private PixelStorage storage;
+	private PixelExecutor executor = PixelExecutor.SEQUENTIAL;
+	private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+	private AlphaInfo alphaInfo;
+	private int alphaInfoCount;
+	// number of the changes of the pixels, shared with the sub images
+	private int [] modCount = new int[1];
+	
+	// number of pixels in a band of rows run by the executor
+	private static final int BAND_SIZE = 64*1024;
+	
+	/**
+	 * default minimum number of pixels processed by the executor.
+	 * An image of two bands (about 362x362) is the smallest one that can be split,
+	 * and bench/net/npe/bench/ParallelThresholdBench measures its sequential time about 230us
+	 * against about 30-60us of the overhead of the split, so it already runs faster on 2 processors.
+	 */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 2*BAND_SIZE;
+	
+	// width and height of the tiles of transpose()
+	private static final int TILE_SIZE = 64;
+	
 }
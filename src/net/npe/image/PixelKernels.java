@@ -0,0 +1,288 @@
+/**
+ * PixelKernels.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.image;
+
+/**
+ * Inner loops of the pixel conversions, decoders and bulk operations.
+ * <p>
+ * This class is the scalar implementation. A platform may install a subclass
+ * with vectorized loops by setDefault() (e.g. net.npe.image.simd.SimdKernels.install()),
+ * which must give the same results.
+ * </p>
+ */
+public class PixelKernels {
+	
+	/**
+	 * get the kernels used by the library.
+	 * @return kernels
+	 */
+	public static PixelKernels getDefault() {
+		return defaultKernels;
+	}
+	
+	/**
+	 * set the kernels used by the library.
+	 * @param kernels kernels, or null for the scalar implementation
+	 */
+	public static void setDefault(PixelKernels kernels) {
+		defaultKernels = (kernels != null) ? kernels : SCALAR;
+	}
+	
+	/**
+	 * swap the red and blue bytes of ARGB/ABGR pixels.
+	 * @param source source pixels
+	 * @param sourceOffset offset in source
+	 * @param destination destination pixels
+	 * @param destinationOffset offset in destination
+	 * @param length number of pixels
+	 */
+	public void swapRedBlue(int [] source, int sourceOffset, int [] destination, int destinationOffset, int length) {
+		for(int i=0; i<length; i++) {
+			int p = source[sourceOffset+i];
+			destination[destinationOffset+i] = (p & 0xFF00FF00) | ((p >> 16) & 0xFF) | ((p & 0xFF) << 16);
+		}
+	}
+	
+	/**
+	 * rotate the bits of pixels to the left.
+	 * @param source source pixels
+	 * @param sourceOffset offset in source
+	 * @param destination destination pixels
+	 * @param destinationOffset offset in destination
+	 * @param length number of pixels
+	 * @param distance rotation distance in bits
+	 */
+	public void rotate(int [] source, int sourceOffset, int [] destination, int destinationOffset, int length, int distance) {
+		for(int i=0; i<length; i++) {
+			destination[destinationOffset+i] = Integer.rotateLeft(source[sourceOffset+i], distance);
+		}
+	}
+	
+	/**
+	 * reverse the bytes of pixels.
+	 * @param source source pixels
+	 * @param sourceOffset offset in source
+	 * @param destination destination pixels
+	 * @param destinationOffset offset in destination
+	 * @param length number of pixels
+	 */
+	public void reverseBytes(int [] source, int sourceOffset, int [] destination, int destinationOffset, int length) {
+		for(int i=0; i<length; i++) {
+			destination[destinationOffset+i] = Integer.reverseBytes(source[sourceOffset+i]);
+		}
+	}
+	
+	/**
+	 * replace the alpha bits of pixels: pixel = (pixel &amp; rgbMask) | alphaBits
+	 * @param pixels pixels
+	 * @param offset offset in pixels
+	 * @param length number of pixels
+	 * @param rgbMask mask of the bits to keep
+	 * @param alphaBits alpha bits
+	 */
+	public void fillAlpha(int [] pixels, int offset, int length, int rgbMask, int alphaBits) {
+		for(int i=offset; i<offset+length; i++) {
+			pixels[i] = (pixels[i] & rgbMask) | alphaBits;
+		}
+	}
+	
+	/**
+	 * multiply the alpha channel of pixels: a = round(a * alpha / 255)
+	 * @param pixels pixels
+	 * @param offset offset in pixels
+	 * @param length number of pixels
+	 * @param alphaMask alpha mask of the format
+	 * @param alphaShift alpha shift of the format
+	 * @param alpha alpha is 0 to 255
+	 */
+	public void multiplyAlpha(int [] pixels, int offset, int length, int alphaMask, int alphaShift, int alpha) {
+		byte [] table = AlphaTables.MULTIPLY;
+		int row = alpha << 8;
+		int rgbMask = ~alphaMask;
+		for(int i=offset; i<offset+length; i++) {
+			int a = table[row | ((pixels[i] & alphaMask) >>> alphaShift)] & 0xFF;
+			pixels[i] = (pixels[i] & rgbMask) | (a << alphaShift);
+		}
+	}
+	
+	/**
+	 * multiply all the channels of pixels: c = round(c * alpha / 255)
+	 * <p>
+	 * This is multiplyAlpha() of premultiplied pixels.
+	 * </p>
+	 * @param pixels pixels
+	 * @param offset offset in pixels
+	 * @param length number of pixels
+	 * @param alpha alpha is 0 to 255
+	 */
+	public void multiplyChannels(int [] pixels, int offset, int length, int alpha) {
+		byte [] table = AlphaTables.MULTIPLY;
+		int row = alpha << 8;
+		for(int i=offset; i<offset+length; i++) {
+			int p = pixels[i];
+			pixels[i] =
+					(table[row | (p & 0xFF)] & 0xFF) |
+					(table[row | ((p >>> 8) & 0xFF)] & 0xFF) << 8 |
+					(table[row | ((p >>> 16) & 0xFF)] & 0xFF) << 16 |
+					(table[row | (p >>> 24)] & 0xFF) << 24;
+		}
+	}
+	
+	/**
+	 * multiply red, green and blue by alpha: c = round(c * a / 255)
+	 * @param pixels pixels
+	 * @param offset offset in pixels
+	 * @param length number of pixels
+	 * @param format pixel format
+	 */
+	public void premultiply(int [] pixels, int offset, int length, PixelFormat format) {
+		int alphaMask = format.getAlphaMask();
+		if(alphaMask == 0) return;
+		int rs = format.getRedShift();
+		int gs = format.getGreenShift();
+		int bs = format.getBlueShift();
+		int as = format.getAlphaShift();
+		byte [] table = AlphaTables.MULTIPLY;
+		for(int i=offset; i<offset+length; i++) {
+			int p = pixels[i];
+			int a = (p & alphaMask) >>> as;
+			if(a == 0xFF) continue;
+			int row = a << 8;
+			pixels[i] = (p & alphaMask) |
+					(table[row | ((p >>> rs) & 0xFF)] & 0xFF) << rs |
+					(table[row | ((p >>> gs) & 0xFF)] & 0xFF) << gs |
+					(table[row | ((p >>> bs) & 0xFF)] & 0xFF) << bs;
+		}
+	}
+	
+	/**
+	 * divide red, green and blue by alpha: c = min(255, round(c * 255 / a)), or 0 if a is 0
+	 * @param pixels pixels
+	 * @param offset offset in pixels
+	 * @param length number of pixels
+	 * @param format pixel format
+	 */
+	public void unpremultiply(int [] pixels, int offset, int length, PixelFormat format) {
+		int alphaMask = format.getAlphaMask();
+		if(alphaMask == 0) return;
+		int rs = format.getRedShift();
+		int gs = format.getGreenShift();
+		int bs = format.getBlueShift();
+		int as = format.getAlphaShift();
+		byte [] table = AlphaTables.DIVIDE;
+		for(int i=offset; i<offset+length; i++) {
+			int p = pixels[i];
+			int a = (p & alphaMask) >>> as;
+			if(a == 0xFF) continue;
+			int row = a << 8;
+			pixels[i] = (p & alphaMask) |
+					(table[row | ((p >>> rs) & 0xFF)] & 0xFF) << rs |
+					(table[row | ((p >>> gs) & 0xFF)] & 0xFF) << gs |
+					(table[row | ((p >>> bs) & 0xFF)] & 0xFF) << bs;
+		}
+	}
+	
+	/**
+	 * merge a channel plane into pixels: pixel |= (byte &amp; 0xFF) &lt;&lt; shift
+	 * @param source channel bytes
+	 * @param sourceOffset offset in source
+	 * @param pixels pixels
+	 * @param offset offset in pixels
+	 * @param length number of pixels
+	 * @param shift channel shift
+	 */
+	public void orChannel(byte [] source, int sourceOffset, int [] pixels, int offset, int length, int shift) {
+		for(int i=0; i<length; i++) {
+			pixels[offset+i] |= (source[sourceOffset+i] & 0xFF) << shift;
+		}
+	}
+	
+	/**
+	 * interleave channel planes into pixels.
+	 * A null plane is 0x00 for red, green and blue, and 0xFF for alpha.
+	 * @param red red bytes or null
+	 * @param green green bytes or null
+	 * @param blue blue bytes or null
+	 * @param alpha alpha bytes or null
+	 * @param sourceOffset offset in the planes
+	 * @param pixels pixels
+	 * @param offset offset in pixels
+	 * @param length number of pixels
+	 * @param format pixel format
+	 */
+	public void packChannels(byte [] red, byte [] green, byte [] blue, byte [] alpha, int sourceOffset, int [] pixels, int offset, int length, PixelFormat format) {
+		int rs = format.getRedShift();
+		int gs = format.getGreenShift();
+		int bs = format.getBlueShift();
+		int as = format.getAlphaShift();
+		for(int i=0; i<length; i++) {
+			int j = sourceOffset+i;
+			int r = (red != null) ? (red[j]&0xFF) : 0x00;
+			int g = (green != null) ? (green[j]&0xFF) : 0x00;
+			int b = (blue != null) ? (blue[j]&0xFF) : 0x00;
+			int a = (alpha != null) ? (alpha[j]&0xFF) : 0xFF;
+			pixels[offset+i] = (r<<rs) | (g<<gs) | (b<<bs) | (a<<as);
+		}
+	}
+	
+	/**
+	 * expand 24-bit BGR bytes to opaque pixels.
+	 * @param source BGR bytes
+	 * @param sourceOffset offset in source
+	 * @param pixels pixels
+	 * @param offset offset in pixels
+	 * @param length number of pixels
+	 * @param format pixel format
+	 */
+	public void expandBGR(byte [] source, int sourceOffset, int [] pixels, int offset, int length, PixelFormat format) {
+		int rs = format.getRedShift();
+		int gs = format.getGreenShift();
+		int bs = format.getBlueShift();
+		int alpha = 0xFF << format.getAlphaShift();
+		for(int i=0; i<length; i++) {
+			int j = sourceOffset+3*i;
+			int b = source[j+0] & 0xFF;
+			int g = source[j+1] & 0xFF;
+			int r = source[j+2] & 0xFF;
+			pixels[offset+i] = (r<<rs) | (g<<gs) | (b<<bs) | alpha;
+		}
+	}
+	
+	protected PixelKernels() {}
+	
+	/** scalar implementation */
+	public static final PixelKernels SCALAR = new PixelKernels();
+	
+	private static volatile PixelKernels defaultKernels = SCALAR;
+	
+	// 8-bit products and quotients indexed by (alpha << 8 | channel), created on first use
+	private static final class AlphaTables {
+		
+		static final byte [] MULTIPLY = new byte[256*256];
+		static final byte [] DIVIDE = new byte[256*256];
+		
+		static {
+			for(int a=0; a<256; a++) {
+				for(int c=0; c<256; c++) {
+					MULTIPLY[a << 8 | c] = (byte)((c*a + 127) / 255);
+					DIVIDE[a << 8 | c] = (byte)((a == 0) ? 0 : Math.min(255, (c*255 + a/2) / a));
+				}
+			}
+		}
+		
+	}
+	
+}
@@ -0,0 +1,229 @@
+/**
+ * PixelStorage.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.image;
+
+/**
+ * Storage of the int pixels of an image.
+ * <p>
+ * The pixels are accessed by index, so the storage may be outside the Java heap
+ * (e.g. net.npe.image.util.nio.DirectPixelStorage).
+ * Decoders and PixelImage copy bands of pixels through small int buffers when getArray() is null.
+ * Different indices may be accessed concurrently.
+ * </p>
+ */
+public abstract class PixelStorage {
+	
+	/**
+	 * Factory of the storage for a decoded image.
+	 */
+	public interface Allocator {
+		/**
+		 * allocate a storage.
+		 * @param length number of pixels
+		 * @param format pixel format of get() and set()
+		 * @return storage
+		 */
+		PixelStorage allocate(int length, PixelFormat format);
+	}
+	
+	/**
+	 * wrap an int array.
+	 * @param pixels pixels
+	 * @return storage
+	 */
+	public static PixelStorage wrap(int [] pixels) {
+		return new IntArrayStorage(pixels);
+	}
+	
+	/**
+	 * wrap a byte array of a byte pixel format.
+	 * @param bytes bytes of length*format.getBytesPerPixel()
+	 * @param format byte pixel format (e.g. PixelFormat.RGBA8888)
+	 * @return storage
+	 */
+	public static PixelStorage wrap(byte [] bytes, PixelFormat format) {
+		return new ByteArrayStorage(bytes, format);
+	}
+	
+	/**
+	 * get an allocator which returns a storage of the caller, so an image is decoded into the caller's buffer.
+	 * The storage must take the pixels of the format of the decoder (e.g. PixelStorage.wrap(int []) takes any format).
+	 * @param storage storage of the caller, which may be longer than the image
+	 * @return allocator, which throws IllegalArgumentException if the storage is too small for the image
+	 */
+	public static Allocator allocator(final PixelStorage storage) {
+		return new Allocator() {
+			@Override
+			public PixelStorage allocate(int length, PixelFormat format) {
+				if(storage.getLength() < length) {
+					throw new IllegalArgumentException("Too small storage: "+storage.getLength()+" < "+length);
+				}
+				return storage;
+			}
+		};
+	}
+	
+	/**
+	 * get the number of pixels.
+	 * @return number of pixels
+	 */
+	public abstract int getLength();
+	
+	/**
+	 * get a pixel.
+	 * @param index pixel index
+	 * @return pixel
+	 */
+	public abstract int get(int index);
+	
+	/**
+	 * set a pixel.
+	 * @param index pixel index
+	 * @param pixel pixel
+	 */
+	public abstract void set(int index, int pixel);
+	
+	/**
+	 * copy pixels to an int array.
+	 * @param index first pixel index
+	 * @param destination destination pixels
+	 * @param offset offset in destination
+	 * @param length number of pixels
+	 */
+	public abstract void get(int index, int [] destination, int offset, int length);
+	
+	/**
+	 * copy pixels from an int array.
+	 * @param index first pixel index
+	 * @param source source pixels
+	 * @param offset offset in source
+	 * @param length number of pixels
+	 */
+	public abstract void set(int index, int [] source, int offset, int length);
+	
+	/**
+	 * get the int array of the storage.
+	 * @return int array, or null if the pixels are not in an int array
+	 */
+	public int [] getArray() {
+		return null;
+	}
+	
+	/**
+	 * change the pixel format of get() and set() without converting the stored pixels.
+	 * It is supported by the storages which do not store the int pixels as they are (e.g. PackedPixelStorage).
+	 * @param format pixel format
+	 * @return true if changed, false if the caller has to convert the pixels
+	 */
+	public boolean setFormat(PixelFormat format) {
+		return false;
+	}
+	
+	/**
+	 * release the storage. The storage must not be used after it is closed.
+	 */
+	public void close() {}
+	
+	/** allocates int arrays */
+	public static final Allocator HEAP = new Allocator() {
+		@Override
+		public PixelStorage allocate(int length, PixelFormat format) {
+			return wrap(new int[length]);
+		}
+	};
+	
+	private static final class IntArrayStorage extends PixelStorage {
+		
+		IntArrayStorage(int [] pixels) {
+			this.pixels = pixels;
+		}
+		
+		@Override
+		public int getLength() {
+			return pixels.length;
+		}
+		
+		@Override
+		public int get(int index) {
+			return pixels[index];
+		}
+		
+		@Override
+		public void set(int index, int pixel) {
+			pixels[index] = pixel;
+		}
+		
+		@Override
+		public void get(int index, int [] destination, int offset, int length) {
+			System.arraycopy(pixels, index, destination, offset, length);
+		}
+		
+		@Override
+		public void set(int index, int [] source, int offset, int length) {
+			System.arraycopy(source, offset, pixels, index, length);
+		}
+		
+		@Override
+		public int [] getArray() {
+			return pixels;
+		}
+		
+		private int [] pixels;
+		
+	}
+	
+	private static final class ByteArrayStorage extends PixelStorage {
+		
+		ByteArrayStorage(byte [] bytes, PixelFormat format) {
+			this.bytes = bytes;
+			this.format = format;
+			this.bytesPerPixel = format.getBytesPerPixel();
+		}
+		
+		@Override
+		public int getLength() {
+			return bytes.length / bytesPerPixel;
+		}
+		
+		@Override
+		public int get(int index) {
+			int [] pixel = new int[1];
+			get(index, pixel, 0, 1);
+			return pixel[0];
+		}
+		
+		@Override
+		public void set(int index, int pixel) {
+			set(index, new int [] {pixel}, 0, 1);
+		}
+		
+		@Override
+		public void get(int index, int [] destination, int offset, int length) {
+			format.readBytes(bytes, index*bytesPerPixel, destination, offset, length);
+		}
+		
+		@Override
+		public void set(int index, int [] source, int offset, int length) {
+			format.writeBytes(source, offset, bytes, index*bytesPerPixel, length);
+		}
+		
+		private byte [] bytes;
+		private PixelFormat format;
+		private int bytesPerPixel;
+		
+	}
+	
+}
@@ -0,0 +1,116 @@
+/**
+ * BlendMode.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.image.composite;
+
+/**
+ * Separable blend mode of Compositor.
+ * <p>
+ * The blended color replaces the source color where the pixels overlap,
+ * then the source is composited by the operator (see the W3C Compositing and Blending).
+ * The channels are premultiplied 8-bit values, so blend() returns Sa * Da * B(Dc, Sc) of the straight colors.
+ * </p>
+ */
+public enum BlendMode {
+	
+	/** the source color */
+	NORMAL {
+		@Override
+		public int blend(int source, int sourceAlpha, int destination, int destinationAlpha) {
+			return Compositor.multiply(source, destinationAlpha);
+		}
+	},
+	
+	/** the product of the colors */
+	MULTIPLY {
+		@Override
+		public int blend(int source, int sourceAlpha, int destination, int destinationAlpha) {
+			return Compositor.multiply(source, destination);
+		}
+	},
+	
+	/** the inverse of the product of the inverse colors */
+	SCREEN {
+		@Override
+		public int blend(int source, int sourceAlpha, int destination, int destinationAlpha) {
+			return Compositor.multiply(source, destinationAlpha) + Compositor.multiply(destination, sourceAlpha) - Compositor.multiply(source, destination);
+		}
+	},
+	
+	/** multiply or screen by the destination color */
+	OVERLAY {
+		@Override
+		public int blend(int source, int sourceAlpha, int destination, int destinationAlpha) {
+			return hardLight(destination, destinationAlpha, source, sourceAlpha);
+		}
+	},
+	
+	/** the darker color */
+	DARKEN {
+		@Override
+		public int blend(int source, int sourceAlpha, int destination, int destinationAlpha) {
+			return Math.min(Compositor.multiply(source, destinationAlpha), Compositor.multiply(destination, sourceAlpha));
+		}
+	},
+	
+	/** the lighter color */
+	LIGHTEN {
+		@Override
+		public int blend(int source, int sourceAlpha, int destination, int destinationAlpha) {
+			return Math.max(Compositor.multiply(source, destinationAlpha), Compositor.multiply(destination, sourceAlpha));
+		}
+	},
+	
+	/** multiply or screen by the source color */
+	HARD_LIGHT {
+		@Override
+		public int blend(int source, int sourceAlpha, int destination, int destinationAlpha) {
+			return hardLight(source, sourceAlpha, destination, destinationAlpha);
+		}
+	},
+	
+	/** the absolute difference of the colors */
+	DIFFERENCE {
+		@Override
+		public int blend(int source, int sourceAlpha, int destination, int destinationAlpha) {
+			return Math.abs(Compositor.multiply(source, destinationAlpha) - Compositor.multiply(destination, sourceAlpha));
+		}
+	},
+	
+	/** the difference of lower contrast */
+	EXCLUSION {
+		@Override
+		public int blend(int source, int sourceAlpha, int destination, int destinationAlpha) {
+			return Compositor.multiply(source, destinationAlpha) + Compositor.multiply(destination, sourceAlpha) - 2 * Compositor.multiply(source, destination);
+		}
+	};
+	
+	/**
+	 * blend a channel of premultiplied colors.
+	 * @param source source channel (0 to sourceAlpha)
+	 * @param sourceAlpha source alpha (0 to 255)
+	 * @param destination destination channel (0 to destinationAlpha)
+	 * @param destinationAlpha destination alpha (0 to 255)
+	 * @return blended channel of the product of the alphas (about 0 to sourceAlpha * destinationAlpha / 255)
+	 */
+	public abstract int blend(int source, int sourceAlpha, int destination, int destinationAlpha);
+	
+	// multiply the destination by 2 * color, or screen it by 2 * color - 1
+	private static int hardLight(int color, int alpha, int destination, int destinationAlpha) {
+		if(2 * color <= alpha) return 2 * Compositor.multiply(color, destination);
+		return Compositor.multiply(alpha, destinationAlpha) - 2 * Compositor.multiply(destinationAlpha - destination, alpha - color);
+	}
+	
+}
@@ -0,0 +1,106 @@
+/**
+ * CompositeOperator.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.image.composite;
+
+/**
+ * Porter-Duff operator of Compositor.
+ * <p>
+ * The premultiplied result is source * Fa + destination * Fb,
+ * where the factors are 0, 1, the alpha of the other pixel or 1 minus it.
+ * </p>
+ */
+public enum CompositeOperator {
+	
+	/** the result is transparent */
+	CLEAR(Factor.ZERO, Factor.ZERO),
+	
+	/** the source replaces the destination */
+	SRC(Factor.ONE, Factor.ZERO),
+	
+	/** the destination is kept */
+	DST(Factor.ZERO, Factor.ONE),
+	
+	/** the source is drawn over the destination */
+	SRC_OVER(Factor.ONE, Factor.INVERSE_ALPHA),
+	
+	/** the destination is drawn over the source */
+	DST_OVER(Factor.INVERSE_ALPHA, Factor.ONE),
+	
+	/** the source inside the destination */
+	SRC_IN(Factor.ALPHA, Factor.ZERO),
+	
+	/** the destination inside the source (masking by the source alpha) */
+	DST_IN(Factor.ZERO, Factor.ALPHA),
+	
+	/** the source outside the destination */
+	SRC_OUT(Factor.INVERSE_ALPHA, Factor.ZERO),
+	
+	/** the destination outside the source (erasing by the source alpha) */
+	DST_OUT(Factor.ZERO, Factor.INVERSE_ALPHA),
+	
+	/** the source inside the destination, over the destination */
+	SRC_ATOP(Factor.ALPHA, Factor.INVERSE_ALPHA),
+	
+	/** the destination inside the source, over the source */
+	DST_ATOP(Factor.INVERSE_ALPHA, Factor.ALPHA),
+	
+	/** the source outside the destination and the destination outside the source */
+	XOR(Factor.INVERSE_ALPHA, Factor.INVERSE_ALPHA),
+	
+	/** the sum of the source and the destination, clamped to 1 */
+	PLUS(Factor.ONE, Factor.ONE);
+	
+	// Fa of the alpha of the destination
+	int getSourceFactor(int destinationAlpha) {
+		return getFactor(sourceFactor, destinationAlpha);
+	}
+	
+	// Fb of the alpha of the source
+	int getDestinationFactor(int sourceAlpha) {
+		return getFactor(destinationFactor, sourceAlpha);
+	}
+	
+	// true if a transparent source pixel keeps the destination pixel
+	boolean keepsDestination() {
+		return destinationFactor == Factor.ONE || destinationFactor == Factor.INVERSE_ALPHA;
+	}
+	
+	private CompositeOperator(Factor sourceFactor, Factor destinationFactor) {
+		this.sourceFactor = sourceFactor;
+		this.destinationFactor = destinationFactor;
+	}
+	
+	private static int getFactor(Factor factor, int alpha) {
+		switch(factor) {
+		case ONE: return 0xFF;
+		case ALPHA: return alpha;
+		case INVERSE_ALPHA: return 0xFF - alpha;
+		default: return 0;
+		}
+	}
+	
+	// factors of 8-bit alpha, where ALPHA is the alpha of the other pixel
+	private enum Factor {
+		ZERO,
+		ONE,
+		ALPHA,
+		INVERSE_ALPHA,
+	}
+	
+	private final Factor sourceFactor;
+	private final Factor destinationFactor;
+	
+}
@@ -0,0 +1,399 @@
+/**
+ * Compositor.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.image.composite;
+
+import java.io.IOException;
+
+import net.npe.image.AlphaInfo;
+import net.npe.image.BufferPool;
+import net.npe.image.PixelExecutor;
+import net.npe.image.PixelFormat;
+import net.npe.image.PixelFormatConverter;
+import net.npe.image.PixelImage;
+import net.npe.image.PixelKernels;
+import net.npe.image.PixelStorage;
+
+/**
+ * Porter-Duff compositor of images.
+ * <p>
+ * The source image is composited onto the destination image at a position by the operator and the blend mode,
+ * in premultiplied 8-bit integer arithmetic. The images may be of any formats, sub images or in storages.
+ * Only the pixels of the destination inside the source rectangle and the clip rectangle are changed
+ * (e.g. CompositeOperator.SRC_IN does not clear the destination outside the source).
+ * A destination without alpha is opaque, and the composited colors are written as they are premultiplied.
+ * </p>
+ * <p>
+ * The rows are split into bands, which are run by the executor of the destination image
+ * when the composited area has getParallelThreshold() pixels or more.
+ * The rows of the premultiplied formats of alpha in the high byte (e.g. ARGB and ABGR) are composited in place,
+ * and an opaque source is copied by SRC_OVER (see PixelImage.getAlphaInfo()).
+ * The source must not share the pixels of the destination.
+ * </p>
+ */
+public class Compositor {
+	
+	/**
+	 * draw an image over another image (CompositeOperator.SRC_OVER).
+	 * @param source source image
+	 * @param destination destination image
+	 * @param x destination x of the left of the source
+	 * @param y destination y of the top of the source
+	 */
+	public static void draw(PixelImage source, PixelImage destination, int x, int y) {
+		new Compositor(CompositeOperator.SRC_OVER).composite(source, destination, x, y);
+	}
+	
+	/**
+	 * constructor of BlendMode.NORMAL.
+	 * @param operator operator
+	 */
+	public Compositor(CompositeOperator operator) {
+		this(operator, BlendMode.NORMAL);
+	}
+	
+	/**
+	 * constructor.
+	 * @param operator operator
+	 * @param mode blend mode
+	 */
+	public Compositor(CompositeOperator operator, BlendMode mode) {
+		this.operator = operator;
+		this.mode = mode;
+	}
+	
+	/**
+	 * get the operator.
+	 * @return operator
+	 */
+	public CompositeOperator getOperator() {
+		return operator;
+	}
+	
+	/**
+	 * get the blend mode.
+	 * @return blend mode
+	 */
+	public BlendMode getBlendMode() {
+		return mode;
+	}
+	
+	/**
+	 * get the opacity of the source.
+	 * @return opacity is 0 to 255
+	 */
+	public int getOpacity() {
+		return opacity;
+	}
+	
+	/**
+	 * set the opacity of the source, which multiplies the source pixels.
+	 * @param opacity opacity is 0 to 255 (default 255)
+	 */
+	public void setOpacity(int opacity) {
+		if(opacity < 0 || opacity > 0xFF) {
+			throw new IllegalArgumentException("Invalid opacity: "+opacity);
+		}
+		this.opacity = opacity;
+	}
+	
+	/**
+	 * set the clip rectangle in the destination.
+	 * @param x left
+	 * @param y top
+	 * @param width width
+	 * @param height height
+	 */
+	public void setClip(int x, int y, int width, int height) {
+		if(width < 0 || height < 0) {
+			throw new IllegalArgumentException("Invalid clip: "+x+", "+y+", "+width+", "+height);
+		}
+		this.clip = true;
+		this.clipLeft = x;
+		this.clipTop = y;
+		this.clipRight = x + width;
+		this.clipBottom = y + height;
+	}
+	
+	/**
+	 * remove the clip rectangle, so the whole destination may be changed.
+	 */
+	public void resetClip() {
+		this.clip = false;
+	}
+	
+	/**
+	 * composite an image onto another image.
+	 * @param source source image
+	 * @param destination destination image, which does not share the pixels of the source
+	 * @param x destination x of the left of the source
+	 * @param y destination y of the top of the source
+	 */
+	public void composite(PixelImage source, PixelImage destination, final int x, final int y) {
+		
+		if(operator == CompositeOperator.DST) return;
+		
+		int left = Math.max(x, 0);
+		int top = Math.max(y, 0);
+		int right = Math.min(x + source.getWidth(), destination.getWidth());
+		int bottom = Math.min(y + source.getHeight(), destination.getHeight());
+		if(clip) {
+			left = Math.max(left, clipLeft);
+			top = Math.max(top, clipTop);
+			right = Math.min(right, clipRight);
+			bottom = Math.min(bottom, clipBottom);
+		}
+		
+		final boolean keep = operator.keepsDestination();
+		final int opacity = this.opacity;
+		boolean opaque = false;
+		AlphaInfo info = null;
+		if(keep) {
+			// the transparent pixels of the source keep the destination
+			if(opacity == 0) return;
+			info = source.getAlphaInfo();
+			left = Math.max(left, x + info.getLeft());
+			top = Math.max(top, y + info.getTop());
+			right = Math.min(right, x + info.getRight());
+			bottom = Math.min(bottom, y + info.getBottom());
+			opaque = info.isOpaque();
+		}
+		if(left >= right || top >= bottom) return;
+		
+		final int width = right - left;
+		final int height = bottom - top;
+		final int startX = left;
+		final int startY = top;
+		
+		final PixelFormat sourceFormat = source.getFormat();
+		final PixelFormat destinationFormat = destination.getFormat();
+		final boolean sourceAlpha = sourceFormat.getAlphaMask() != 0;
+		final boolean destinationAlpha = destinationFormat.getAlphaMask() != 0;
+		// the colors of a format without alpha are read and written as they are
+		final PixelFormat sourceRead = sourceAlpha ? sourceFormat : sourceFormat.premultiplied();
+		final PixelFormat destinationWrite = destinationAlpha ? destinationFormat : destinationFormat.premultiplied();
+		
+		// a destination without alpha takes the premultiplied colors of a translucent source
+		final boolean copy = mode == BlendMode.NORMAL && opacity == 0xFF && (destinationAlpha || !sourceAlpha || opaque) &&
+				(operator == CompositeOperator.SRC || (operator == CompositeOperator.SRC_OVER && opaque));
+		final PixelFormat work = (destinationAlpha && isWorkFormat(destinationFormat)) ? destinationFormat.premultiplied() : PixelFormat.ARGB.premultiplied();
+		
+		final PixelFormatConverter copyConverter = PixelFormatConverter.get(sourceRead, destinationWrite);
+		final PixelFormatConverter sourceConverter = PixelFormatConverter.get(sourceRead, work);
+		final PixelFormatConverter readConverter = PixelFormatConverter.get(destinationWrite, work);
+		final PixelFormatConverter writeConverter = PixelFormatConverter.get(work, destinationWrite);
+		final boolean sourceInPlace = sourceFormat == work && opacity == 0xFF;
+		final boolean destinationInPlace = destinationFormat == work;
+		final int destinationAlphaMask = destinationFormat.getAlphaMask();
+		final PixelKernels kernels = PixelKernels.getDefault();
+		
+		final int [] sourcePixels = source.getPixels();
+		final PixelStorage sourceStorage = source.getStorage();
+		final int sourceOffset = source.getOffset();
+		final int sourceStride = source.getStride();
+		// the source is only read, so its alpha info is kept until the destination is changed
+		if(info != null) source.setAlphaInfo(info);
+		
+		final int [] destinationPixels = destination.getPixels();
+		final PixelStorage destinationStorage = destination.getStorage();
+		final int destinationOffset = destination.getOffset();
+		final int destinationStride = destination.getStride();
+		
+		PixelExecutor executor = destination.getExecutor();
+		if(width*height < destination.getParallelThreshold()) {
+			executor = PixelExecutor.SEQUENTIAL;
+		}
+		
+		final int band = Math.max(1, BAND_SIZE / width);
+		execute(executor, (height + band - 1) / band, new PixelExecutor.Task() {
+			@Override
+			public void run(int index) {
+				BufferPool pool = BufferPool.getDefault();
+				int first = startY + index * band;
+				int last = Math.min(first + band, startY + height);
+				int [] sourceRow = pool.getInts(width);
+				int [] destinationRow = pool.getInts(width);
+				for(int row=first; row<last; row++) {
+					
+					int sourceIndex = sourceOffset + (row - y)*sourceStride + (startX - x);
+					int destinationIndex = destinationOffset + row*destinationStride + startX;
+					
+					if(copy) {
+						// the source replaces the destination
+						int [] line = destinationRow;
+						int lineOffset = 0;
+						if(destinationPixels != null) {
+							line = destinationPixels;
+							lineOffset = destinationIndex;
+						}
+						if(sourcePixels != null) {
+							copyConverter.convert(sourcePixels, sourceIndex, line, lineOffset, width);
+						}
+						else {
+							sourceStorage.get(sourceIndex, line, lineOffset, width);
+							copyConverter.convert(line, lineOffset, width);
+						}
+						if(!sourceAlpha && destinationAlpha) {
+							kernels.fillAlpha(line, lineOffset, width, ~destinationAlphaMask, destinationAlphaMask);
+						}
+						if(destinationPixels == null) {
+							destinationStorage.set(destinationIndex, line, lineOffset, width);
+						}
+						continue;
+					}
+					
+					// premultiplied source row of the work format
+					int [] sourceLine = sourcePixels;
+					int sourceLineOffset = sourceIndex;
+					if(sourcePixels == null || !sourceInPlace) {
+						if(sourcePixels != null) {
+							sourceConverter.convert(sourcePixels, sourceIndex, sourceRow, 0, width);
+						}
+						else {
+							sourceStorage.get(sourceIndex, sourceRow, 0, width);
+							sourceConverter.convert(sourceRow, 0, width);
+						}
+						if(!sourceAlpha) kernels.fillAlpha(sourceRow, 0, width, 0x00FFFFFF, 0xFF000000);
+						if(opacity != 0xFF) kernels.multiplyChannels(sourceRow, 0, width, opacity);
+						sourceLine = sourceRow;
+						sourceLineOffset = 0;
+					}
+					
+					// premultiplied destination row of the work format
+					int [] line = destinationPixels;
+					int lineOffset = destinationIndex;
+					boolean inPlace = destinationPixels != null && destinationInPlace;
+					if(!inPlace) {
+						if(destinationPixels != null) {
+							readConverter.convert(destinationPixels, destinationIndex, destinationRow, 0, width);
+						}
+						else {
+							destinationStorage.get(destinationIndex, destinationRow, 0, width);
+							readConverter.convert(destinationRow, 0, width);
+						}
+						if(!destinationAlpha) kernels.fillAlpha(destinationRow, 0, width, 0x00FFFFFF, 0xFF000000);
+						line = destinationRow;
+						lineOffset = 0;
+					}
+					
+					if(operator == CompositeOperator.SRC_OVER && mode == BlendMode.NORMAL) {
+						drawRow(sourceLine, sourceLineOffset, line, lineOffset, width);
+					}
+					else {
+						compositeRow(sourceLine, sourceLineOffset, line, lineOffset, width);
+					}
+					
+					if(!inPlace) {
+						if(destinationPixels != null) {
+							writeConverter.convert(destinationRow, 0, destinationPixels, destinationIndex, width);
+						}
+						else {
+							writeConverter.convert(destinationRow, 0, width);
+							destinationStorage.set(destinationIndex, destinationRow, 0, width);
+						}
+					}
+					
+				}
+				pool.release(sourceRow);
+				pool.release(destinationRow);
+			}
+		});
+		
+		// the pixels are written directly
+		destination.setAlphaInfo(null);
+		
+	}
+	
+	// round(a * b / 255) of 0 to 255
+	static int multiply(int a, int b) {
+		int t = a * b + 0x80;
+		return (t + (t >> 8)) >> 8;
+	}
+	
+	// SRC_OVER of BlendMode.NORMAL: d = s + d * (1 - sa), 2 channels at a time
+	private static void drawRow(int [] source, int sourceOffset, int [] destination, int destinationOffset, int length) {
+		for(int i=0; i<length; i++) {
+			int s = source[sourceOffset+i];
+			int sa = s >>> 24;
+			if(sa == 0xFF) {
+				destination[destinationOffset+i] = s;
+			}
+			else if(sa != 0) {
+				int d = destination[destinationOffset+i];
+				int f = 0xFF - sa;
+				int rb = (d & 0x00FF00FF) * f + 0x00800080;
+				int ag = ((d >>> 8) & 0x00FF00FF) * f + 0x00800080;
+				rb = ((rb + ((rb >>> 8) & 0x00FF00FF)) >>> 8) & 0x00FF00FF;
+				ag = (ag + ((ag >>> 8) & 0x00FF00FF)) & 0xFF00FF00;
+				destination[destinationOffset+i] = s + (rb | ag);
+			}
+		}
+	}
+	
+	// any operator and blend mode: d = s' * Fa + d * Fb, where s' is the source blended where the pixels overlap
+	private void compositeRow(int [] source, int sourceOffset, int [] destination, int destinationOffset, int length) {
+		CompositeOperator operator = this.operator;
+		BlendMode mode = (this.mode != BlendMode.NORMAL) ? this.mode : null;
+		for(int i=0; i<length; i++) {
+			int s = source[sourceOffset+i];
+			int d = destination[destinationOffset+i];
+			int sa = s >>> 24;
+			int da = d >>> 24;
+			int fa = operator.getSourceFactor(da);
+			int fb = operator.getDestinationFactor(sa);
+			int a = Math.min(0xFF, multiply(sa, fa) + multiply(da, fb));
+			int pixel = a << 24;
+			for(int shift=0; shift<24; shift+=8) {
+				int cs = (s >>> shift) & 0xFF;
+				int cd = (d >>> shift) & 0xFF;
+				if(mode != null) {
+					cs = Math.max(0, Math.min(sa, multiply(cs, 0xFF - da) + mode.blend(cs, sa, cd, da)));
+				}
+				int c = multiply(cs, fa) + multiply(cd, fb);
+				pixel |= Math.min(c, a) << shift;
+			}
+			destination[destinationOffset+i] = pixel;
+		}
+	}
+	
+	// 8-bit channels of alpha at 24 and the colors at the other bytes, which the rows are composited in
+	private static boolean isWorkFormat(PixelFormat format) {
+		return format.getAlphaMask() == 0xFF000000 &&
+				(format.getRedShift() & 7) == 0 && (format.getGreenShift() & 7) == 0 && (format.getBlueShift() & 7) == 0;
+	}
+	
+	private static void execute(PixelExecutor executor, int count, PixelExecutor.Task task) {
+		try {
+			executor.execute(count, task);
+		}
+		catch(IOException e) {
+			// rows do not throw IOException
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	private CompositeOperator operator;
+	private BlendMode mode;
+	private int opacity = 0xFF;
+	private boolean clip;
+	private int clipLeft;
+	private int clipTop;
+	private int clipRight;
+	private int clipBottom;
+	
+	// number of pixels in a band of rows run by the executor
+	private static final int BAND_SIZE = 64*1024;
+	
+}
@@ -15,8 +15,13 @@
 
 package net.npe.image.dds;
 
+import java.io.IOException;
+
+import net.npe.image.AlphaInfo;
 import net.npe.image.PixelFormat;
 import net.npe.image.PixelImage;
+import net.npe.image.PixelStorage;
+import net.npe.io.InputReader;
 
 public class DdsImage extends PixelImage {
 	
@@ -26,8 +31,40 @@ public class DdsImage extends PixelImage {
 		 // offset is not yet supported
 		this.width = DdsReader.getWidth(buffer);
 		this.height = DdsReader.getHeight(buffer);
-		this.pixels = DdsReader.read(buffer, format, 0);
+		AlphaInfo.Builder alpha = new AlphaInfo.Builder(format);
+		this.pixels = DdsReader.read(buffer, format, 0, alpha);
 		this.format = format;
+		setAlphaInfo((pixels != null) ? alpha.build(width, height) : null);
 	}
-
+	
+	public void read(InputReader reader, PixelFormat format) throws IOException {
+		byte [] header = new byte[DdsReader.HEADER_SIZE];
+		reader.read(header, 0, header.length);
+		this.width = DdsReader.getWidth(header);
+		this.height = DdsReader.getHeight(header);
+		AlphaInfo.Builder alpha = new AlphaInfo.Builder(format);
+		PixelStorage storage = DdsReader.read(header, reader, format, 0, PixelStorage.HEAP, alpha);
+		this.pixels = (storage != null) ? storage.getArray() : null;
+		this.format = format;
+		setAlphaInfo((pixels != null) ? alpha.build(width, height) : null);
+	}
+	
+	/**
+	 * read a DDS image into a storage allocated by the allocator.
+	 * @param reader input reader
+	 * @param format pixel format
+	 * @param allocator allocator of the storage (e.g. DirectPixelStorage.ALLOCATOR)
+	 * @throws IOException I/O exception
+	 */
+	public void read(InputReader reader, PixelFormat format, PixelStorage.Allocator allocator) throws IOException {
+		byte [] header = new byte[DdsReader.HEADER_SIZE];
+		reader.read(header, 0, header.length);
+		this.width = DdsReader.getWidth(header);
+		this.height = DdsReader.getHeight(header);
+		AlphaInfo.Builder alpha = new AlphaInfo.Builder(format);
+		setStorage(DdsReader.read(header, reader, format, 0, allocator, alpha));
+		this.format = format;
+		setAlphaInfo((getStorage() != null) ? alpha.build(width, height) : null);
+	}
+	
 }
@@ -15,7 +15,15 @@
 
 package net.npe.image.dds;
 
+import java.io.IOException;
+
+import net.npe.image.AlphaInfo;
+import net.npe.image.BufferPool;
+import net.npe.image.PixelExecutor;
 import net.npe.image.PixelFormat;
+import net.npe.image.PixelKernels;
+import net.npe.image.PixelStorage;
+import net.npe.io.InputReader;
 
 public final class DdsReader {
 	
@@ -60,64 +68,387 @@ public final class DdsReader {
 	}
 	
 	public static int [] read(byte [] buffer, PixelFormat format, int mipmapLevel) {
+		return read(buffer, format, mipmapLevel, (AlphaInfo.Builder)null);
+	}
+	
+	/**
+	 * read pixels into an int array of the caller.
+	 * @param buffer DDS file
+	 * @param format pixel format
+	 * @param mipmapLevel mipmap level
+	 * @param pixels destination of width*height or more pixels
+	 * @return pixels, or null if the image type is not supported
+	 * @throws IllegalArgumentException if pixels is too small for the image
+	 */
+	public static int [] read(byte [] buffer, PixelFormat format, int mipmapLevel, int [] pixels) {
+		return read(buffer, format, mipmapLevel, pixels, (AlphaInfo.Builder)null);
+	}
+	
+	// read pixels and record their alpha to the builder (or null)
+	static int [] read(byte [] buffer, PixelFormat format, int mipmapLevel, AlphaInfo.Builder alpha) {
+		return read(buffer, format, mipmapLevel, null, alpha);
+	}
+	
+	// read pixels into the array (or null to allocate) and record their alpha to the builder (or null)
+	private static int [] read(byte [] buffer, PixelFormat format, int mipmapLevel, int [] pixels, AlphaInfo.Builder alpha) {
 		
 		// header
 		int width = getWidth(buffer);
 		int height = getHeight(buffer);
 		int mipmap = getMipmap(buffer);
-
+		
 		// type
 		int type = getType(buffer);
-		if(type == 0) return null;
+		if(getBlockRows(type) == 0) return null;
+		
+		// offset
+		int offset = HEADER_SIZE;
+		if(mipmapLevel > 0 && mipmapLevel < mipmap) {
+			offset += getLevelOffset(type, width, height, mipmapLevel);
+			width = Math.max(1, width >> mipmapLevel);
+			height = Math.max(1, height >> mipmapLevel);
+		}
+		
+		if(pixels == null) {
+			pixels = new int[width*height];
+		}
+		else if(pixels.length < width*height) {
+			throw new IllegalArgumentException("Too small storage: "+pixels.length+" < "+width*height);
+		}
+		decode(type, width, height, offset, buffer, 0, height, pixels, 0, format, alpha);
+		
+		return pixels;
+	}
+	
+	/**
+	 * read pixels with the image split into strips of block rows, which are decoded by the executor.
+	 * @param buffer DDS file
+	 * @param format pixel format
+	 * @param mipmapLevel mipmap level
+	 * @param executor executor for the strips
+	 * @return pixels, or null if the image type is not supported
+	 * @throws IOException I/O exception thrown by the executor
+	 */
+	public static int [] read(byte [] buffer, PixelFormat format, int mipmapLevel, PixelExecutor executor) throws IOException {
+		PixelStorage storage = read(buffer, format, mipmapLevel, PixelStorage.HEAP, executor);
+		return (storage != null) ? storage.getArray() : null;
+	}
+	
+	/**
+	 * read pixels into an int array of the caller. The strips are decoded by the executor.
+	 * @param buffer DDS file
+	 * @param format pixel format
+	 * @param mipmapLevel mipmap level
+	 * @param pixels destination of width*height or more pixels
+	 * @param executor executor for the strips
+	 * @return pixels, or null if the image type is not supported
+	 * @throws IOException I/O exception thrown by the executor
+	 */
+	public static int [] read(byte [] buffer, PixelFormat format, int mipmapLevel, int [] pixels, PixelExecutor executor) throws IOException {
+		PixelStorage storage = read(buffer, format, mipmapLevel, PixelStorage.allocator(PixelStorage.wrap(pixels)), executor);
+		return (storage != null) ? pixels : null;
+	}
+	
+	/**
+	 * read pixels into a storage. The strips are decoded by the executor.
+	 * When the storage is not an int array, each strip is decoded into a small int buffer and copied to the storage.
+	 * @param buffer DDS file
+	 * @param format pixel format
+	 * @param mipmapLevel mipmap level
+	 * @param allocator allocator of the storage
+	 * @param executor executor for the strips
+	 * @return storage of width*height pixels, or null if the image type is not supported
+	 * @throws IOException I/O exception thrown by the executor
+	 */
+	public static PixelStorage read(final byte [] buffer, final PixelFormat format, int mipmapLevel, PixelStorage.Allocator allocator, PixelExecutor executor) throws IOException {
+		
+		// header
+		int width = getWidth(buffer);
+		int height = getHeight(buffer);
+		int mipmap = getMipmap(buffer);
+		
+		// type
+		final int type = getType(buffer);
+		int blockRows = getBlockRows(type);
+		if(blockRows == 0) return null;
 		
 		// offset
-		int offset = 128; // header size
+		int offset = HEADER_SIZE;
 		if(mipmapLevel > 0 && mipmapLevel < mipmap) {
-			for(int i=0; i<mipmapLevel; i++) {
-				switch(type) {
-				case DXT1: offset += 8*((width+3)/4)*((height+3)/4); break;
-				case DXT2:
-				case DXT3:
-				case DXT4:
-				case DXT5: offset += 16*((width+3)/4)*((height+3)/4); break;
-				case A1R5G5B5:
-				case X1R5G5B5:
-				case A4R4G4B4:
-				case X4R4G4B4:
-				case R5G6B5:
-				case R8G8B8:
-				case A8B8G8R8:
-				case X8B8G8R8:
-				case A8R8G8B8:
-				case X8R8G8B8: offset += (type&0xFF)*width*height; break;
+			offset += getLevelOffset(type, width, height, mipmapLevel);
+			width = Math.max(1, width >> mipmapLevel);
+			height = Math.max(1, height >> mipmapLevel);
+		}
+		
+		final PixelStorage storage = allocator.allocate(width*height, format);
+		final int [] pixels = storage.getArray();
+		final int w = width;
+		final int h = height;
+		final int levelOffset = offset;
+		final int stripRows = blockRows * Math.max(1, STRIP_SIZE / getDataSize(type, width, blockRows));
+		
+		executor.execute((height + stripRows - 1) / stripRows, new PixelExecutor.Task() {
+			@Override
+			public void run(int index) {
+				int top = index * stripRows;
+				int bottom = Math.min(top + stripRows, h);
+				int dataOffset = levelOffset + getDataSize(type, w, top);
+				if(pixels != null) {
+					decode(type, w, h, dataOffset, buffer, top, bottom, pixels, 0, format, null);
+				}
+				else {
+					BufferPool pool = BufferPool.getDefault();
+					int [] strip = pool.getInts(w*(bottom-top));
+					decode(type, w, h, dataOffset, buffer, top, bottom, strip, -w*top, format, null);
+					storage.set(w*top, strip, 0, w*(bottom-top));
+					pool.release(strip);
 				}
-				width /= 2;
-				height /= 2;
 			}
-			if(width <= 0) width = 1;
-			if(height <= 0) height = 1;
+		});
+		
+		return storage;
+	}
+	
+	/**
+	 * read all mipmap levels. Each level is decoded by the executor.
+	 * @param buffer DDS file
+	 * @param format pixel format
+	 * @param executor executor for the levels
+	 * @return pixels of the levels, or null if the image type is not supported
+	 * @throws IOException I/O exception thrown by the executor
+	 */
+	public static int [][] readMipmaps(final byte [] buffer, final PixelFormat format, PixelExecutor executor) throws IOException {
+		if(getBlockRows(getType(buffer)) == 0) return null;
+		final int [][] levels = new int[Math.max(1, getMipmap(buffer))][];
+		executor.execute(levels.length, new PixelExecutor.Task() {
+			@Override
+			public void run(int index) {
+				levels[index] = read(buffer, format, index);
+			}
+		});
+		return levels;
+	}
+	
+	/**
+	 * read pixels into a byte array of the byte format.
+	 * Each strip is decoded into a small int buffer and packed by PixelFormat.writeBytes().
+	 * @param buffer DDS file
+	 * @param format byte pixel format (e.g. PixelFormat.RGBA8888)
+	 * @param mipmapLevel mipmap level
+	 * @return bytes of width*height*format.getBytesPerPixel(), or null if the image type is not supported
+	 * @throws IOException I/O exception
+	 */
+	public static byte [] readBytes(byte [] buffer, PixelFormat format, int mipmapLevel) throws IOException {
+		return readBytes(buffer, format, mipmapLevel, PixelExecutor.SEQUENTIAL);
+	}
+	
+	/**
+	 * read pixels into a byte array of the byte format. The strips are decoded by the executor.
+	 * @param buffer DDS file
+	 * @param format byte pixel format (e.g. PixelFormat.RGBA8888)
+	 * @param mipmapLevel mipmap level
+	 * @param executor executor for the strips
+	 * @return bytes of width*height*format.getBytesPerPixel(), or null if the image type is not supported
+	 * @throws IOException I/O exception thrown by the executor
+	 */
+	public static byte [] readBytes(byte [] buffer, final PixelFormat format, int mipmapLevel, PixelExecutor executor) throws IOException {
+		final byte [][] bytes = new byte[1][];
+		read(buffer, format, mipmapLevel, new PixelStorage.Allocator() {
+			@Override
+			public PixelStorage allocate(int length, PixelFormat format) {
+				bytes[0] = new byte[length*format.getBytesPerPixel()];
+				return PixelStorage.wrap(bytes[0], format);
+			}
+		}, executor);
+		return bytes[0];
+	}
+	
+	/**
+	 * read pixels from the reader without copying the whole file into a byte array.
+	 * The image data is read in strips of block rows into a small work buffer.
+	 * @param header DDS header (HEADER_SIZE bytes) already read from the reader
+	 * @param reader input reader positioned at the end of the header
+	 * @param format pixel format
+	 * @param mipmapLevel mipmap level
+	 * @return pixels, or null if the image type is not supported
+	 * @throws IOException I/O exception
+	 */
+	public static int [] read(byte [] header, InputReader reader, PixelFormat format, int mipmapLevel) throws IOException {
+		PixelStorage storage = read(header, reader, format, mipmapLevel, PixelStorage.HEAP);
+		return (storage != null) ? storage.getArray() : null;
+	}
+	
+	/**
+	 * read pixels from the reader into an int array of the caller.
+	 * @param header DDS header (HEADER_SIZE bytes) already read from the reader
+	 * @param reader input reader positioned at the end of the header
+	 * @param format pixel format
+	 * @param mipmapLevel mipmap level
+	 * @param pixels destination of width*height or more pixels
+	 * @return pixels, or null if the image type is not supported
+	 * @throws IOException I/O exception
+	 */
+	public static int [] read(byte [] header, InputReader reader, PixelFormat format, int mipmapLevel, int [] pixels) throws IOException {
+		PixelStorage storage = read(header, reader, format, mipmapLevel, PixelStorage.allocator(PixelStorage.wrap(pixels)));
+		return (storage != null) ? pixels : null;
+	}
+	
+	/**
+	 * read pixels from the reader into a storage.
+	 * @param header DDS header (HEADER_SIZE bytes) already read from the reader
+	 * @param reader input reader positioned at the end of the header
+	 * @param format pixel format
+	 * @param mipmapLevel mipmap level
+	 * @param allocator allocator of the storage
+	 * @return storage of width*height pixels, or null if the image type is not supported
+	 * @throws IOException I/O exception
+	 */
+	public static PixelStorage read(byte [] header, InputReader reader, PixelFormat format, int mipmapLevel, PixelStorage.Allocator allocator) throws IOException {
+		return read(header, reader, format, mipmapLevel, allocator, null);
+	}
+	
+	// read pixels into a storage and record their alpha to the builder (or null)
+	static PixelStorage read(byte [] header, InputReader reader, PixelFormat format, int mipmapLevel, PixelStorage.Allocator allocator, AlphaInfo.Builder alpha) throws IOException {
+		
+		// header
+		int width = getWidth(header);
+		int height = getHeight(header);
+		int mipmap = getMipmap(header);
+		
+		// type
+		int type = getType(header);
+		int blockRows = getBlockRows(type);
+		if(blockRows == 0) return null;
+		
+		// offset
+		if(mipmapLevel > 0 && mipmapLevel < mipmap) {
+			reader.skip(getLevelOffset(type, width, height, mipmapLevel));
+			width = Math.max(1, width >> mipmapLevel);
+			height = Math.max(1, height >> mipmapLevel);
 		}
 		
-		int [] pixels = null;
-		switch(type) {
-		case DXT1: pixels = decodeDXT1(width, height, offset, buffer, format); break;
-		case DXT2: pixels = decodeDXT2(width, height, offset, buffer, format); break;
-		case DXT3: pixels = decodeDXT3(width, height, offset, buffer, format); break;
-		case DXT4: pixels = decodeDXT4(width, height, offset, buffer, format); break;
-		case DXT5: pixels = decodeDXT5(width, height, offset, buffer, format); break;
-		case A1R5G5B5: pixels = readA1R5G5B5(width, height, offset, buffer, format); break;
-		case X1R5G5B5: pixels = readX1R5G5B5(width, height, offset, buffer, format); break;
-		case A4R4G4B4: pixels = readA4R4G4B4(width, height, offset, buffer, format); break;
-		case X4R4G4B4: pixels = readX4R4G4B4(width, height, offset, buffer, format); break;
-		case R5G6B5: pixels = readR5G6B5(width, height, offset, buffer, format); break;
-		case R8G8B8: pixels = readR8G8B8(width, height, offset, buffer, format); break;
-		case A8B8G8R8: pixels = readA8B8G8R8(width, height, offset, buffer, format); break;
-		case X8B8G8R8: pixels = readX8B8G8R8(width, height, offset, buffer, format); break;
-		case A8R8G8B8: pixels = readA8R8G8B8(width, height, offset, buffer, format); break;
-		case X8R8G8B8: pixels = readX8R8G8B8(width, height, offset, buffer, format); break;
+		PixelStorage storage = allocator.allocate(width*height, format);
+		int [] pixels = storage.getArray();
+		
+		int stripRows = blockRows * Math.max(1, STRIP_SIZE / getDataSize(type, width, blockRows));
+		BufferPool pool = BufferPool.getDefault();
+		byte [] strip = pool.getBytes(getDataSize(type, width, stripRows));
+		int [] stripPixels = (pixels == null) ? pool.getInts(width*stripRows) : null;
+		
+		for(int top=0; top<height; top+=stripRows) {
+			int bottom = Math.min(top+stripRows, height);
+			reader.read(strip, 0, getDataSize(type, width, bottom-top));
+			if(pixels != null) {
+				decode(type, width, height, 0, strip, top, bottom, pixels, 0, format, alpha);
+			}
+			else {
+				decode(type, width, height, 0, strip, top, bottom, stripPixels, -width*top, format, alpha);
+				storage.set(width*top, stripPixels, 0, width*(bottom-top));
+			}
 		}
 		
-		return pixels;
+		pool.release(strip);
+		pool.release(stripPixels);
+		
+		return storage;
+	}
+	
+	/** DDS header size including the magic number */
+	public static final int HEADER_SIZE = 128;
+	
+	// size of the work buffer used by read(byte [], InputReader, PixelFormat, int), and of the strips decoded by an executor
+	private static final int STRIP_SIZE = 32*1024;
+	
+	private static void decode(int type, int width, int height, int offset, byte [] buffer, int top, int bottom, int [] pixels, int pixelOffset, PixelFormat format, AlphaInfo.Builder alpha) {
+		switch(type) {
+		case DXT1: decodeDXT1(width, height, offset, buffer, top, bottom, pixels, pixelOffset, format); break;
+		case DXT2: decodeDXT2(width, height, offset, buffer, top, bottom, pixels, pixelOffset, format); break;
+		case DXT3: decodeDXT3(width, height, offset, buffer, top, bottom, pixels, pixelOffset, format); break;
+		case DXT4: decodeDXT4(width, height, offset, buffer, top, bottom, pixels, pixelOffset, format); break;
+		case DXT5: decodeDXT5(width, height, offset, buffer, top, bottom, pixels, pixelOffset, format); break;
+		case A1R5G5B5: readA1R5G5B5(width, height, offset, buffer, top, bottom, pixels, pixelOffset, format); break;
+		case X1R5G5B5: readX1R5G5B5(width, height, offset, buffer, top, bottom, pixels, pixelOffset, format); break;
+		case A4R4G4B4: readA4R4G4B4(width, height, offset, buffer, top, bottom, pixels, pixelOffset, format); break;
+		case X4R4G4B4: readX4R4G4B4(width, height, offset, buffer, top, bottom, pixels, pixelOffset, format); break;
+		case R5G6B5: readR5G6B5(width, height, offset, buffer, top, bottom, pixels, pixelOffset, format); break;
+		case R8G8B8: readR8G8B8(width, height, offset, buffer, top, bottom, pixels, pixelOffset, format); break;
+		case A8B8G8R8: readA8B8G8R8(width, height, offset, buffer, top, bottom, pixels, pixelOffset, format); break;
+		case X8B8G8R8: readX8B8G8R8(width, height, offset, buffer, top, bottom, pixels, pixelOffset, format); break;
+		case A8R8G8B8: readA8R8G8B8(width, height, offset, buffer, top, bottom, pixels, pixelOffset, format); break;
+		case X8R8G8B8: readX8R8G8B8(width, height, offset, buffer, top, bottom, pixels, pixelOffset, format); break;
+		}
+		// DXT2 and DXT4 are premultiplied by themselves
+		if(format.isPremultiplied() && type != DXT2 && type != DXT4) {
+			PixelKernels.getDefault().premultiply(pixels, pixelOffset+top*width, (bottom-top)*width, format);
+		}
+		// the alpha of the decoded rows is scanned while they are in the cache
+		if(alpha != null) {
+			if(hasAlpha(type)) {
+				for(int y=top; y<bottom; y++) {
+					alpha.add(pixels, pixelOffset+y*width, width, y);
+				}
+			}
+			else {
+				alpha.addOpaque(width, top, bottom-top);
+			}
+		}
+	}
+	
+	private static boolean hasAlpha(int type) {
+		switch(type) {
+		case X1R5G5B5:
+		case X4R4G4B4:
+		case R5G6B5:
+		case R8G8B8:
+		case X8B8G8R8:
+		case X8R8G8B8:
+			return false;
+		default:
+			return true;
+		}
+	}
+	
+	// number of pixel rows decoded together (4 for DXT blocks), 0 if the type is not supported.
+	private static int getBlockRows(int type) {
+		switch(type) {
+		case DXT1:
+		case DXT2:
+		case DXT3:
+		case DXT4:
+		case DXT5: return 4;
+		case A1R5G5B5:
+		case X1R5G5B5:
+		case A4R4G4B4:
+		case X4R4G4B4:
+		case R5G6B5:
+		case R8G8B8:
+		case A8B8G8R8:
+		case X8B8G8R8:
+		case A8R8G8B8:
+		case X8R8G8B8: return 1;
+		}
+		return 0;
+	}
+	
+	private static int getDataSize(int type, int width, int height) {
+		switch(type) {
+		case DXT1: return 8*((width+3)/4)*((height+3)/4);
+		case DXT2:
+		case DXT3:
+		case DXT4:
+		case DXT5: return 16*((width+3)/4)*((height+3)/4);
+		}
+		return (type&0xFF)*width*height;
+	}
+	
+	private static int getLevelOffset(int type, int width, int height, int mipmapLevel) {
+		int offset = 0;
+		for(int i=0; i<mipmapLevel; i++) {
+			offset += getDataSize(type, width, height);
+			width = Math.max(1, width/2);
+			height = Math.max(1, height/2);
+		}
+		return offset;
 	}
 	
 	private static int getType(byte [] buffer) {
@@ -201,304 +532,265 @@ public final class DdsReader {
 		
 	}
 	
-	private static int [] decodeDXT1(int width, int height, int offset, byte [] buffer, PixelFormat format) {
-		int [] pixels = new int[width*height];
+	private static void decodeDXT1(int width, int height, int offset, byte [] buffer, int top, int bottom, int [] pixels, int pixelOffset, PixelFormat format) {
 		int index = offset;
 		int w = (width+3)/4;
-		int h = (height+3)/4;
-		for(int i=0; i<h; i++) {
+		for(int i=top/4; i<(bottom+3)/4; i++) {
 			for(int j=0; j<w; j++) {
 				int c0 = (buffer[index] & 0xFF) | (buffer[index+1] & 0xFF) << 8; index += 2;
 				int c1 = (buffer[index] & 0xFF) | (buffer[index+1] & 0xFF) << 8; index += 2;
 				for(int k=0; k<4; k++) {
 					if(4*i+k >= height) break;
-					int t0 = (buffer[index] & 0x03);
-					int t1 = (buffer[index] & 0x0C) >> 2;
-					int t2 = (buffer[index] & 0x30) >> 4;
-					int t3 = (buffer[index++] & 0xC0) >> 6;
-					pixels[4*width*i+4*j+width*k+0] = getDXTColor(c0, c1, 0xFF, t0, format);
+					int t0 = (buffer[index+k] & 0x03);
+					int t1 = (buffer[index+k] & 0x0C) >> 2;
+					int t2 = (buffer[index+k] & 0x30) >> 4;
+					int t3 = (buffer[index+k] & 0xC0) >> 6;
+					pixels[pixelOffset+4*width*i+4*j+width*k+0] = getDXTColor(c0, c1, 0xFF, t0, format);
 					if(4*j+1 >= width) continue;
-					pixels[4*width*i+4*j+width*k+1] = getDXTColor(c0, c1, 0xFF, t1, format);
+					pixels[pixelOffset+4*width*i+4*j+width*k+1] = getDXTColor(c0, c1, 0xFF, t1, format);
 					if(4*j+2 >= width) continue;
-					pixels[4*width*i+4*j+width*k+2] = getDXTColor(c0, c1, 0xFF, t2, format);
+					pixels[pixelOffset+4*width*i+4*j+width*k+2] = getDXTColor(c0, c1, 0xFF, t2, format);
 					if(4*j+3 >= width) continue;
-					pixels[4*width*i+4*j+width*k+3] = getDXTColor(c0, c1, 0xFF, t3, format);
+					pixels[pixelOffset+4*width*i+4*j+width*k+3] = getDXTColor(c0, c1, 0xFF, t3, format);
 				}
+				index += 4;
 			}
 		}
-		return pixels;
 	}
 	
-	private static int [] decodeDXT2(int width, int height, int offset, byte [] buffer, PixelFormat format) {
-		return decodeDXT3(width, height, offset, buffer, format);
+	// DXT3 of premultiplied colors
+	private static void decodeDXT2(int width, int height, int offset, byte [] buffer, int top, int bottom, int [] pixels, int pixelOffset, PixelFormat format) {
+		decodeDXT3(width, height, offset, buffer, top, bottom, pixels, pixelOffset, format);
+		if(!format.isPremultiplied()) {
+			PixelKernels.getDefault().unpremultiply(pixels, pixelOffset+top*width, (bottom-top)*width, format);
+		}
 	}
 	
-	private static int [] decodeDXT3(int width, int height, int offset, byte [] buffer, PixelFormat format) {
+	private static void decodeDXT3(int width, int height, int offset, byte [] buffer, int top, int bottom, int [] pixels, int pixelOffset, PixelFormat format) {
 		int index = offset;
 		int w = (width+3)/4;
-		int h = (height+3)/4;
-		int [] pixels = new int[width*height];
-		int [] alphaTable = new int[16];
-		for(int i=0; i<h; i++) {
+		for(int i=top/4; i<(bottom+3)/4; i++) {
 			for(int j=0; j<w; j++) {
-				// create alpha table(4bit to 8bit)
-				for(int k=0; k<4; k++) {
-					int a0 = (buffer[index++] & 0xFF);
-					int a1 = (buffer[index++] & 0xFF);
-					// 4bit alpha to 8bit alpha
-					alphaTable[4*k+0] = 17 * ((a0 & 0xF0)>>4);
-					alphaTable[4*k+1] = 17 * (a0 & 0x0F);
-					alphaTable[4*k+2] = 17 * ((a1 & 0xF0)>>4);
-					alphaTable[4*k+3] = 17 * (a1 & 0x0F);
-				}
+				// 4bit alpha of the rows
+				int alphaIndex = index;
+				index += 8;
 				int c0 = (buffer[index] & 0xFF) | (buffer[index+1] & 0xFF) << 8; index += 2;
 				int c1 = (buffer[index] & 0xFF) | (buffer[index+1] & 0xFF) << 8; index += 2;
 				for(int k=0; k<4; k++) {
 					if(4*i+k >= height) break;
-					int t0 = (buffer[index] & 0x03);
-					int t1 = (buffer[index] & 0x0C) >> 2;
-					int t2 = (buffer[index] & 0x30) >> 4;
-					int t3 = (buffer[index++] & 0xC0) >> 6;
-					pixels[4*width*i+4*j+width*k+0] = getDXTColor(c0, c1, alphaTable[4*k+0], t0, format);
+					int t0 = (buffer[index+k] & 0x03);
+					int t1 = (buffer[index+k] & 0x0C) >> 2;
+					int t2 = (buffer[index+k] & 0x30) >> 4;
+					int t3 = (buffer[index+k] & 0xC0) >> 6;
+					int a0 = (buffer[alphaIndex+2*k] & 0xFF);
+					int a1 = (buffer[alphaIndex+2*k+1] & 0xFF);
+					// 4bit alpha to 8bit alpha
+					pixels[pixelOffset+4*width*i+4*j+width*k+0] = getDXTColor(c0, c1, 17 * ((a0 & 0xF0)>>4), t0, format);
 					if(4*j+1 >= width) continue;
-					pixels[4*width*i+4*j+width*k+1] = getDXTColor(c0, c1, alphaTable[4*k+1], t1, format);
+					pixels[pixelOffset+4*width*i+4*j+width*k+1] = getDXTColor(c0, c1, 17 * (a0 & 0x0F), t1, format);
 					if(4*j+2 >= width) continue;
-					pixels[4*width*i+4*j+width*k+2] = getDXTColor(c0, c1, alphaTable[4*k+2], t2, format);
+					pixels[pixelOffset+4*width*i+4*j+width*k+2] = getDXTColor(c0, c1, 17 * ((a1 & 0xF0)>>4), t2, format);
 					if(4*j+3 >= width) continue;
-					pixels[4*width*i+4*j+width*k+3] = getDXTColor(c0, c1, alphaTable[4*k+3], t3, format);
+					pixels[pixelOffset+4*width*i+4*j+width*k+3] = getDXTColor(c0, c1, 17 * (a1 & 0x0F), t3, format);
 				}
+				index += 4;
 			}
 		}
-		return pixels;
 	}
 	
-	private static int [] decodeDXT4(int width, int height, int offset, byte [] buffer, PixelFormat format) {
-		return decodeDXT5(width, height, offset, buffer, format);
+	// DXT5 of premultiplied colors
+	private static void decodeDXT4(int width, int height, int offset, byte [] buffer, int top, int bottom, int [] pixels, int pixelOffset, PixelFormat format) {
+		decodeDXT5(width, height, offset, buffer, top, bottom, pixels, pixelOffset, format);
+		if(!format.isPremultiplied()) {
+			PixelKernels.getDefault().unpremultiply(pixels, pixelOffset+top*width, (bottom-top)*width, format);
+		}
 	}
 	
-	private static int [] decodeDXT5(int width, int height, int offset, byte [] buffer, PixelFormat format) {
+	private static void decodeDXT5(int width, int height, int offset, byte [] buffer, int top, int bottom, int [] pixels, int pixelOffset, PixelFormat format) {
 		int index = offset;
 		int w = (width+3)/4;
-		int h = (height+3)/4;
-		int [] pixels = new int[width*height];
-		int [] alphaTable = new int[16];
-		for(int i=0; i<h; i++) {
+		for(int i=top/4; i<(bottom+3)/4; i++) {
 			for(int j=0; j<w; j++) {
-				// create alpha table
 				int a0 = (buffer[index++] & 0xFF);
 				int a1 = (buffer[index++] & 0xFF);
 				int b0 = (buffer[index] & 0xFF) | (buffer[index+1] & 0xFF) << 8 | (buffer[index+2] & 0xFF) << 16; index += 3;
 				int b1 = (buffer[index] & 0xFF) | (buffer[index+1] & 0xFF) << 8 | (buffer[index+2] & 0xFF) << 16; index += 3;
-				alphaTable[0] = b0 & 0x07;
-				alphaTable[1] = (b0 >> 3) & 0x07;
-				alphaTable[2] = (b0 >> 6) & 0x07;
-				alphaTable[3] = (b0 >> 9) & 0x07;
-				alphaTable[4] = (b0 >> 12) & 0x07;
-				alphaTable[5] = (b0 >> 15) & 0x07;
-				alphaTable[6] = (b0 >> 18) & 0x07;
-				alphaTable[7] = (b0 >> 21) & 0x07;
-				alphaTable[8] = b1 & 0x07;
-				alphaTable[9] = (b1 >> 3) & 0x07;
-				alphaTable[10] = (b1 >> 6) & 0x07;
-				alphaTable[11] = (b1 >> 9) & 0x07;
-				alphaTable[12] = (b1 >> 12) & 0x07;
-				alphaTable[13] = (b1 >> 15) & 0x07;
-				alphaTable[14] = (b1 >> 18) & 0x07;
-				alphaTable[15] = (b1 >> 21) & 0x07;
 				int c0 = (buffer[index] & 0xFF) | (buffer[index+1] & 0xFF) << 8; index += 2;
 				int c1 = (buffer[index] & 0xFF) | (buffer[index+1] & 0xFF) << 8; index += 2;
 				for(int k=0; k<4; k++) {
 					if(4*i+k >= height) break;
-					int t0 = (buffer[index] & 0x03);
-					int t1 = (buffer[index] & 0x0C) >> 2;
-					int t2 = (buffer[index] & 0x30) >> 4;
-					int t3 = (buffer[index++] & 0xC0) >> 6;
-					pixels[4*width*i+4*j+width*k+0] = getDXTColor(c0, c1, getDXT5Alpha(a0, a1, alphaTable[4*k+0]), t0, format);
+					int t0 = (buffer[index+k] & 0x03);
+					int t1 = (buffer[index+k] & 0x0C) >> 2;
+					int t2 = (buffer[index+k] & 0x30) >> 4;
+					int t3 = (buffer[index+k] & 0xC0) >> 6;
+					// 3bit alpha indices of the row
+					int alphaRow = ((k < 2) ? b0 : b1) >> (12*(k&1));
+					pixels[pixelOffset+4*width*i+4*j+width*k+0] = getDXTColor(c0, c1, getDXT5Alpha(a0, a1, alphaRow & 0x07), t0, format);
 					if(4*j+1 >= width) continue;
-					pixels[4*width*i+4*j+width*k+1] = getDXTColor(c0, c1, getDXT5Alpha(a0, a1, alphaTable[4*k+1]), t1, format);
+					pixels[pixelOffset+4*width*i+4*j+width*k+1] = getDXTColor(c0, c1, getDXT5Alpha(a0, a1, (alphaRow >> 3) & 0x07), t1, format);
 					if(4*j+2 >= width) continue;
-					pixels[4*width*i+4*j+width*k+2] = getDXTColor(c0, c1, getDXT5Alpha(a0, a1, alphaTable[4*k+2]), t2, format);
+					pixels[pixelOffset+4*width*i+4*j+width*k+2] = getDXTColor(c0, c1, getDXT5Alpha(a0, a1, (alphaRow >> 6) & 0x07), t2, format);
 					if(4*j+3 >= width) continue;
-					pixels[4*width*i+4*j+width*k+3] = getDXTColor(c0, c1, getDXT5Alpha(a0, a1, alphaTable[4*k+3]), t3, format);
+					pixels[pixelOffset+4*width*i+4*j+width*k+3] = getDXTColor(c0, c1, getDXT5Alpha(a0, a1, (alphaRow >> 9) & 0x07), t3, format);
 				}
+				index += 4;
 			}
 		}
-		return pixels;
 	}
 	
-	private static int [] readA1R5G5B5(int width, int height, int offset, byte [] buffer, PixelFormat format) {
+	private static void readA1R5G5B5(int width, int height, int offset, byte [] buffer, int top, int bottom, int [] pixels, int pixelOffset, PixelFormat format) {
 		int index = offset;
-		int [] pixels = new int[width*height];
 		int alphaShift = format.getAlphaShift();
 		int redShift = format.getRedShift();
 		int greenShift = format.getGreenShift();
 		int blueShift = format.getBlueShift();
-		for(int i=0; i<height*width; i++) {
+		for(int i=top*width; i<bottom*width; i++) {
 			int rgba = (buffer[index] & 0xFF) | (buffer[index+1] & 0xFF) << 8; index += 2;
 			int r = BIT5[(rgba & A1R5G5B5_MASKS[0]) >> 10];
 			int g = BIT5[(rgba & A1R5G5B5_MASKS[1]) >> 5];
 			int b = BIT5[(rgba & A1R5G5B5_MASKS[2])];
 			int a = 255 * ((rgba & A1R5G5B5_MASKS[3]) >> 15);
-			pixels[i] = (a<<alphaShift)|(r<<redShift)|(g<<greenShift)|(b<<blueShift);
+			pixels[pixelOffset+i] = (a<<alphaShift)|(r<<redShift)|(g<<greenShift)|(b<<blueShift);
 		}
-		return pixels;
 	}
 	
-	private static int [] readX1R5G5B5(int width, int height, int offset, byte [] buffer, PixelFormat format) {
+	private static void readX1R5G5B5(int width, int height, int offset, byte [] buffer, int top, int bottom, int [] pixels, int pixelOffset, PixelFormat format) {
 		int index = offset;
-		int [] pixels = new int[width*height];
 		int alphaShift = format.getAlphaShift();
 		int redShift = format.getRedShift();
 		int greenShift = format.getGreenShift();
 		int blueShift = format.getBlueShift();
-		for(int i=0; i<height*width; i++) {
+		for(int i=top*width; i<bottom*width; i++) {
 			int rgba = (buffer[index] & 0xFF) | (buffer[index+1] & 0xFF) << 8; index += 2;
 			int r = BIT5[(rgba & X1R5G5B5_MASKS[0]) >> 10];
 			int g = BIT5[(rgba & X1R5G5B5_MASKS[1]) >> 5];
 			int b = BIT5[(rgba & X1R5G5B5_MASKS[2])];
 			int a = 255;
-			pixels[i] = (a<<alphaShift)|(r<<redShift)|(g<<greenShift)|(b<<blueShift);
+			pixels[pixelOffset+i] = (a<<alphaShift)|(r<<redShift)|(g<<greenShift)|(b<<blueShift);
 		}
-		return pixels;
 	}
 	
-	private static int [] readA4R4G4B4(int width, int height, int offset, byte [] buffer, PixelFormat format) {
+	private static void readA4R4G4B4(int width, int height, int offset, byte [] buffer, int top, int bottom, int [] pixels, int pixelOffset, PixelFormat format) {
 		int index = offset;
-		int [] pixels = new int[width*height];
 		int alphaShift = format.getAlphaShift();
 		int redShift = format.getRedShift();
 		int greenShift = format.getGreenShift();
 		int blueShift = format.getBlueShift();
-		for(int i=0; i<height*width; i++) {
+		for(int i=top*width; i<bottom*width; i++) {
 			int rgba = (buffer[index] & 0xFF) | (buffer[index+1] & 0xFF) << 8; index += 2;
 			int r = 17 * ((rgba & A4R4G4B4_MASKS[0]) >> 8);
 			int g = 17 * ((rgba & A4R4G4B4_MASKS[1]) >> 4);
 			int b = 17 * ((rgba & A4R4G4B4_MASKS[2]));
 			int a = 17 * ((rgba & A4R4G4B4_MASKS[3]) >> 12);
-			pixels[i] = (a<<alphaShift)|(r<<redShift)|(g<<greenShift)|(b<<blueShift);
+			pixels[pixelOffset+i] = (a<<alphaShift)|(r<<redShift)|(g<<greenShift)|(b<<blueShift);
 		}
-		return pixels;
 	}
 	
-	private static int [] readX4R4G4B4(int width, int height, int offset, byte [] buffer, PixelFormat format) {
+	private static void readX4R4G4B4(int width, int height, int offset, byte [] buffer, int top, int bottom, int [] pixels, int pixelOffset, PixelFormat format) {
 		int index = offset;
-		int [] pixels = new int[width*height];
 		int alphaShift = format.getAlphaShift();
 		int redShift = format.getRedShift();
 		int greenShift = format.getGreenShift();
 		int blueShift = format.getBlueShift();
-		for(int i=0; i<height*width; i++) {
+		for(int i=top*width; i<bottom*width; i++) {
 			int rgba = (buffer[index] & 0xFF) | (buffer[index+1] & 0xFF) << 8; index += 2;
 			int r = 17 * ((rgba & A4R4G4B4_MASKS[0]) >> 8);
 			int g = 17 * ((rgba & A4R4G4B4_MASKS[1]) >> 4);
 			int b = 17 * ((rgba & A4R4G4B4_MASKS[2]));
 			int a = 255;
-			pixels[i] = (a<<alphaShift)|(r<<redShift)|(g<<greenShift)|(b<<blueShift);
+			pixels[pixelOffset+i] = (a<<alphaShift)|(r<<redShift)|(g<<greenShift)|(b<<blueShift);
 		}
-		return pixels;
 	}
 	
-	private static int [] readR5G6B5(int width, int height, int offset, byte [] buffer, PixelFormat format) {
+	private static void readR5G6B5(int width, int height, int offset, byte [] buffer, int top, int bottom, int [] pixels, int pixelOffset, PixelFormat format) {
 		int index = offset;
-		int [] pixels = new int[width*height];
 		int alphaShift = format.getAlphaShift();
 		int redShift = format.getRedShift();
 		int greenShift = format.getGreenShift();
 		int blueShift = format.getBlueShift();
-		for(int i=0; i<height*width; i++) {
+		for(int i=top*width; i<bottom*width; i++) {
 			int rgba = (buffer[index] & 0xFF) | (buffer[index+1] & 0xFF) << 8; index += 2;
 			int r = BIT5[((rgba & R5G6B5_MASKS[0]) >> 11)];
 			int g = BIT6[((rgba & R5G6B5_MASKS[1]) >> 5)];
 			int b = BIT5[((rgba & R5G6B5_MASKS[2]))];
 			int a = 255;
-			pixels[i] = (a<<alphaShift)|(r<<redShift)|(g<<greenShift)|(b<<blueShift);
+			pixels[pixelOffset+i] = (a<<alphaShift)|(r<<redShift)|(g<<greenShift)|(b<<blueShift);
 		}
-		return pixels;
 	}
 	
-	private static int [] readR8G8B8(int width, int height, int offset, byte [] buffer, PixelFormat format) {
+	private static void readR8G8B8(int width, int height, int offset, byte [] buffer, int top, int bottom, int [] pixels, int pixelOffset, PixelFormat format) {
 		int index = offset;
-		int [] pixels = new int[width*height];
 		int alphaShift = format.getAlphaShift();
 		int redShift = format.getRedShift();
 		int greenShift = format.getGreenShift();
 		int blueShift = format.getBlueShift();
-		for(int i=0; i<height*width; i++) {
+		for(int i=top*width; i<bottom*width; i++) {
 			int b = buffer[index++] & 0xFF;
 			int g = buffer[index++] & 0xFF;
 			int r = buffer[index++] & 0xFF;
 			int a = 255;
-			pixels[i] = (a<<alphaShift)|(r<<redShift)|(g<<greenShift)|(b<<blueShift);
+			pixels[pixelOffset+i] = (a<<alphaShift)|(r<<redShift)|(g<<greenShift)|(b<<blueShift);
 		}
-		return pixels;
 	}
 	
-	private static int [] readA8B8G8R8(int width, int height, int offset, byte [] buffer, PixelFormat format) {
+	private static void readA8B8G8R8(int width, int height, int offset, byte [] buffer, int top, int bottom, int [] pixels, int pixelOffset, PixelFormat format) {
 		int index = offset;
-		int [] pixels = new int[width*height];
 		int alphaShift = format.getAlphaShift();
 		int redShift = format.getRedShift();
 		int greenShift = format.getGreenShift();
 		int blueShift = format.getBlueShift();
-		for(int i=0; i<height*width; i++) {
+		for(int i=top*width; i<bottom*width; i++) {
 			int r = buffer[index++] & 0xFF;
 			int g = buffer[index++] & 0xFF;
 			int b = buffer[index++] & 0xFF;
 			int a = buffer[index++] & 0xFF;
-			pixels[i] = (a<<alphaShift)|(r<<redShift)|(g<<greenShift)|(b<<blueShift);
+			pixels[pixelOffset+i] = (a<<alphaShift)|(r<<redShift)|(g<<greenShift)|(b<<blueShift);
 		}
-		return pixels;
 	}
 	
-	private static int [] readX8B8G8R8(int width, int height, int offset, byte [] buffer, PixelFormat format) {
+	private static void readX8B8G8R8(int width, int height, int offset, byte [] buffer, int top, int bottom, int [] pixels, int pixelOffset, PixelFormat format) {
 		int index = offset;
-		int [] pixels = new int[width*height];
 		int alphaShift = format.getAlphaShift();
 		int redShift = format.getRedShift();
 		int greenShift = format.getGreenShift();
 		int blueShift = format.getBlueShift();
-		for(int i=0; i<height*width; i++) {
+		for(int i=top*width; i<bottom*width; i++) {
 			int r = buffer[index++] & 0xFF;
 			int g = buffer[index++] & 0xFF;
 			int b = buffer[index++] & 0xFF;
 			int a = 255; index++;
-			pixels[i] = (a<<alphaShift)|(r<<redShift)|(g<<greenShift)|(b<<blueShift);
+			pixels[pixelOffset+i] = (a<<alphaShift)|(r<<redShift)|(g<<greenShift)|(b<<blueShift);
 		}
-		return pixels;
 	}
 	
-	private static int [] readA8R8G8B8(int width, int height, int offset, byte [] buffer, PixelFormat format) {
+	private static void readA8R8G8B8(int width, int height, int offset, byte [] buffer, int top, int bottom, int [] pixels, int pixelOffset, PixelFormat format) {
 		int index = offset;
-		int [] pixels = new int[width*height];
 		int alphaShift = format.getAlphaShift();
 		int redShift = format.getRedShift();
 		int greenShift = format.getGreenShift();
 		int blueShift = format.getBlueShift();
-		for(int i=0; i<height*width; i++) {
+		for(int i=top*width; i<bottom*width; i++) {
 			int b = buffer[index++] & 0xFF;
 			int g = buffer[index++] & 0xFF;
 			int r = buffer[index++] & 0xFF;
 			int a = buffer[index++] & 0xFF;
-			pixels[i] = (a<<alphaShift)|(r<<redShift)|(g<<greenShift)|(b<<blueShift);
+			pixels[pixelOffset+i] = (a<<alphaShift)|(r<<redShift)|(g<<greenShift)|(b<<blueShift);
 		}
-		return pixels;
 	}
 	
-	private static int [] readX8R8G8B8(int width, int height, int offset, byte [] buffer, PixelFormat format) {
+	private static void readX8R8G8B8(int width, int height, int offset, byte [] buffer, int top, int bottom, int [] pixels, int pixelOffset, PixelFormat format) {
 		int index = offset;
-		int [] pixels = new int[width*height];
 		int alphaShift = format.getAlphaShift();
 		int redShift = format.getRedShift();
 		int greenShift = format.getGreenShift();
 		int blueShift = format.getBlueShift();
-		for(int i=0; i<height*width; i++) {
+		for(int i=top*width; i<bottom*width; i++) {
 			int b = buffer[index++] & 0xFF;
 			int g = buffer[index++] & 0xFF;
 			int r = buffer[index++] & 0xFF;
 			int a = 255; index++;
-			pixels[i] = (a<<alphaShift)|(r<<redShift)|(g<<greenShift)|(b<<blueShift);
+			pixels[pixelOffset+i] = (a<<alphaShift)|(r<<redShift)|(g<<greenShift)|(b<<blueShift);
 		}
-		return pixels;
 	}
 	
 	private static int getDXTColor(int c0, int c1, int a, int t, PixelFormat format) {
@@ -598,11 +890,11 @@ public final class DdsReader {
 	private static final int [] X8B8G8R8_MASKS = {0x000000FF, 0x0000FF00, 0x00FF0000, 0x00000000};
 	private static final int [] A8R8G8B8_MASKS = {0x00FF0000, 0x0000FF00, 0x000000FF, 0xFF000000};
 	private static final int [] X8R8G8B8_MASKS = {0x00FF0000, 0x0000FF00, 0x000000FF, 0x00000000};
-
+	
 	// BIT4 = 17 * index;
 	private static final int [] BIT5 = {0,8,16,25,33,41,49,58,66,74,82,90,99,107,115,123,132,140,148,156,165,173,181,189,197,206,214,222,230,239,247,255};
 	private static final int [] BIT6 = {0,4,8,12,16,20,24,28,32,36,40,45,49,53,57,61,65,69,73,77,81,85,89,93,97,101,105,109,113,117,121,125,130,134,138,142,146,150,154,158,162,166,170,174,178,182,186,190,194,198,202,206,210,215,219,223,227,231,235,239,243,247,251,255};
-
+	
 	private DdsReader() {}
 	
 }
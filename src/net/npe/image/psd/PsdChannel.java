@@ -17,6 +17,7 @@ package net.npe.image.psd;
 
 import java.io.IOException;
 
+import net.npe.image.BufferPool;
 import net.npe.io.InputReader;
 
 public class PsdChannel {
@@ -37,16 +38,40 @@ public class PsdChannel {
 	}
 	
 	public void read(InputReader reader, int width, int height) throws IOException {
+		read(reader, width, height, null);
+	}
+	
+	/**
+	 * read the channel image data into a byte array of the caller.
+	 * @param reader input reader
+	 * @param width width of the layer
+	 * @param height height of the layer
+	 * @param data destination of width*height or more bytes, or null to allocate
+	 * @throws IOException I/O exception
+	 * @throws IllegalArgumentException if data is too small for the channel
+	 */
+	public void read(InputReader reader, int width, int height, byte [] data) throws IOException {
+		if(data == null) {
+			data = new byte[width*height];
+		}
+		else if(data.length < width*height) {
+			throw new IllegalArgumentException("Too small data: "+data.length+" < "+width*height);
+		}
 		int compression = reader.readShort();
 		switch(compression) {
 		case 0: // raw
-			data = new byte[width*height];
-			PsdDecorder.readRaw(reader, data);
+			this.data = data;
+			PsdDecorder.readRaw(reader, data, width*height);
 			break;
 		case 1: // RLE
-			data = new byte[width*height];
-			reader.skip(2*height);
-			PsdDecorder.decodeRunLengthEncoding(reader, data);
+			this.data = data;
+			BufferPool pool = BufferPool.getDefault();
+			short [] byteCounts = pool.getShorts(height);
+			reader.readShorts(byteCounts, 0, height);
+			byte [] work = pool.getBytes(PsdDecorder.getMaxByteCount(byteCounts, height));
+			PsdDecorder.decodeRunLengthEncoding(reader, byteCounts, 0, height, work, data, 0, width);
+			pool.release(work);
+			pool.release(byteCounts);
 			break;
 		default: break;
 		}
@@ -16,15 +16,14 @@
 package net.npe.image.psd;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import net.npe.io.InputReader;
 
 public class PsdDecorder {
 	
-	static void readRaw(InputReader reader, byte [] outBuffer) throws IOException {
-		for(int i=0; i<outBuffer.length; i++) {
-			outBuffer[i] = reader.readByte();
-		}
+	static void readRaw(InputReader reader, byte [] outBuffer, int length) throws IOException {
+		reader.read(outBuffer, 0, length);
 	}
 	
 	static void decodeRunLengthEncoding(InputReader reader, byte [] outBuffer) throws IOException {
@@ -39,11 +38,57 @@ public class PsdDecorder {
 			}
 			else {
 				int count = packet + 1;
-				for(int j=0; j<count; j++) {
-					outBuffer[i++] = reader.readByte();
-				}
+				reader.read(outBuffer, i, count);
+				i += count;
+			}
+		}
+	}
+	
+	/**
+	 * decode RLE scanlines with the byte counts table.
+	 * Each packed scanline is read into the work buffer at once and decoded from there.
+	 */
+	static void decodeRunLengthEncoding(InputReader reader, short [] byteCounts, int first, int count, byte [] work, byte [] outBuffer, int offset, int width) throws IOException {
+		for(int i=0; i<count; i++) {
+			int byteCount = byteCounts[first+i] & 0xFFFF;
+			reader.read(work, 0, byteCount);
+			decodeRunLengthEncoding(work, 0, outBuffer, offset, width);
+			offset += width;
+		}
+	}
+	
+	static void decodeRunLengthEncoding(byte [] buffer, int index, byte [] outBuffer, int offset, int length) {
+		int end = offset + length;
+		for(int i=offset; i<end; ) {
+			byte packet = buffer[index++];
+			if(packet == -128) {
+				// no operation
 			}
+			else if((packet & 0x80) != 0) {
+				int count = 1 - (int)packet;
+				Arrays.fill(outBuffer, i, i+count, buffer[index++]);
+				i += count;
+			}
+			else {
+				int count = packet + 1;
+				System.arraycopy(buffer, index, outBuffer, i, count);
+				index += count;
+				i += count;
+			}
+		}
+	}
+	
+	static int getMaxByteCount(short [] byteCounts) {
+		return getMaxByteCount(byteCounts, byteCounts.length);
+	}
+	
+	// the byte counts of a pooled array, which may be longer than the table
+	static int getMaxByteCount(short [] byteCounts, int length) {
+		int max = 0;
+		for(int i=0; i<length; i++) {
+			max = Math.max(max, byteCounts[i] & 0xFFFF);
 		}
+		return max;
 	}
 
 }
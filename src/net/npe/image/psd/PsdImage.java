@@ -17,12 +17,20 @@ package net.npe.image.psd;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 
 import net.npe.io.ByteArrayReader;
+import net.npe.io.CountingSeekableInputReader;
 import net.npe.io.InputReader;
+import net.npe.io.SeekableInputReader;
 import net.npe.io.StreamReader;
+import net.npe.image.AlphaInfo;
+import net.npe.image.BufferPool;
+import net.npe.image.PixelExecutor;
 import net.npe.image.PixelFormat;
 import net.npe.image.PixelImage;
+import net.npe.image.PixelKernels;
+import net.npe.image.PixelStorage;
 
 public class PsdImage extends PixelImage {
 	
@@ -49,6 +57,66 @@ public class PsdImage extends PixelImage {
 	}
 	
 	public void read(InputReader reader, PixelFormat format, boolean creatingLayers) throws IOException {
+		read(reader, format, creatingLayers, PixelExecutor.SEQUENTIAL);
+	}
+	
+	/**
+	 * read a PSD image.
+	 * When the reader is a ByteArrayReader, the layer channels and bands of scanlines
+	 * are decoded by the executor, each on its own slice or duplicate of the reader.
+	 * A ByteArrayReader wrapped by a CountingSeekableInputReader is decoded in the same way.
+	 * @param reader input reader (BigEndian)
+	 * @param format pixel format
+	 * @param creatingLayers true if the layers are read
+	 * @param executor executor for the layer channels and the image data
+	 * @throws IOException I/O exception
+	 */
+	public void read(InputReader reader, PixelFormat format, boolean creatingLayers, PixelExecutor executor) throws IOException {
+		read(reader, format, creatingLayers, executor, PixelStorage.HEAP, false);
+	}
+	
+	/**
+	 * read a PSD image into a storage allocated by the allocator.
+	 * When the storage is not an int array, the channels of each band of rows are merged in an int buffer and copied to the storage.
+	 * The image data of a SeekableInputReader is read band by band at the offsets of the scanlines.
+	 * The channels of a stream are stored one after another, so all but the last are decoded into a pooled buffer first.
+	 * @param reader input reader (BigEndian)
+	 * @param format pixel format
+	 * @param creatingLayers true if the layers are read
+	 * @param executor executor for the layer channels and the image data
+	 * @param allocator allocator of the storage
+	 * @throws IOException I/O exception
+	 */
+	public void read(InputReader reader, PixelFormat format, boolean creatingLayers, PixelExecutor executor, PixelStorage.Allocator allocator) throws IOException {
+		read(reader, format, creatingLayers, executor, allocator, false);
+	}
+	
+	public void readBytes(InputReader reader, PixelFormat format, boolean creatingLayers) throws IOException {
+		readBytes(reader, format, creatingLayers, PixelExecutor.SEQUENTIAL);
+	}
+	
+	/**
+	 * read a PSD image into a byte array of the byte format instead of the int pixels.
+	 * Each channel of the scanlines is written to its byte of the pixels directly.
+	 * @param reader input reader (BigEndian)
+	 * @param format byte pixel format (e.g. PixelFormat.RGBA8888)
+	 * @param creatingLayers true if the layers are read
+	 * @param executor executor for the layer channels and the image data
+	 * @throws IOException I/O exception
+	 * @see #getBytes()
+	 */
+	public void readBytes(InputReader reader, PixelFormat format, boolean creatingLayers, PixelExecutor executor) throws IOException {
+		read(reader, format, creatingLayers, executor, null, true);
+	}
+	
+	private void read(InputReader reader, PixelFormat format, boolean creatingLayers, PixelExecutor executor, PixelStorage.Allocator allocator, boolean bytesOutput) throws IOException {
+		
+		// independent parts need their own cursor over the same bytes
+		ByteArrayReader array = (executor != PixelExecutor.SEQUENTIAL) ? getByteArrayReader(reader) : null;
+		
+		// section offsets are relative to this position
+		SeekableInputReader seekable = (reader instanceof SeekableInputReader) ? (SeekableInputReader)reader : null;
+		long start = (seekable != null) ? seekable.getPosition() : 0;
 		
 		// sigunature '8BPS'
 		sigunature = reader.readInt();
@@ -84,27 +152,30 @@ public class PsdImage extends PixelImage {
 		// ColorModeDataSection
 		if(0 < colorModeDataSectionLength) {
 			colorModeData = new byte[colorModeDataSectionLength];
-			for(int i=0; i<colorModeDataSectionLength; i++) {
-				colorModeData[i] = (byte)reader.read();
-			}
+			reader.read(colorModeData, 0, colorModeDataSectionLength);
 		}
 		
 		// ImageResourcesSection
+		imageResourcesOffset = HEADER_SIZE + 4 + colorModeDataSectionLength;
 		int imageResourcesSectionLength = reader.readInt();
 		
 		// skip ImageResourcesSection
 		reader.skip(imageResourcesSectionLength);
 		
 		// LayerAndMaskInformationSection
+		layerAndMaskInformationOffset = imageResourcesOffset + 4 + imageResourcesSectionLength;
 		int layerAndMaskInformationSectionLength = reader.readInt();
 		
-		// LayerInfoSectionLength
-//		int layerInfoSectionLength = reader.readInt();
-		reader.skip(4);
+		// ImageDataSection
+		imageDataOffset = layerAndMaskInformationOffset + 4 + layerAndMaskInformationSectionLength;
 		
-		if(creatingLayers) {
+		if(creatingLayers && layerAndMaskInformationSectionLength > 0) {
+			
+			// LayerInfoSectionLength
+			int layerInfoSectionLength = reader.readInt();
 			
-			int layerCount = reader.readShort();
+			// layer count is omitted when there is no layer info
+			int layerCount = (layerInfoSectionLength > 0) ? reader.readShort() : 0;
 			
 			System.out.println("LayerCount:"+layerCount);
 			
@@ -118,34 +189,117 @@ public class PsdImage extends PixelImage {
 				layers[i].readRecords(reader);
 			}
 			
-			for(int i=0; i<layerCount; i++) {
-				layers[i].readChannelImageData(reader);
+			if(array != null) {
+				seekable.seek(readChannelImageData(array, executor));
+			}
+			else {
+				for(int i=0; i<layerCount; i++) {
+					layers[i].readChannelImageData(reader);
+				}
+			}
+			
+			// skip global layer mask info and the rest of the section
+			if(seekable != null) {
+				seekable.seek(start + imageDataOffset);
+			}
+			else {
+				int size = (layerInfoSectionLength > 0) ? 4 + 2 : 4;
+				for(int i=0; i<layerCount; i++) size += layers[i].getSize();
+				reader.skip(layerAndMaskInformationSectionLength - size);
 			}
 			
 		}
+		else if(seekable != null) {
+			seekable.seek(start + imageDataOffset);
+		}
 		else {
-			// skip ImageDataSection
-			// layerAndMaskInformationSectionLength - layerInfoSectionLength(int)
-			reader.skip(layerAndMaskInformationSectionLength - 4);
+			// skip LayerAndMaskInformationSection
+			reader.skip(layerAndMaskInformationSectionLength);
 		}
-
+		
 		// result data
 		this.format = format;
-
+		
 		// compression method
-		int compression = reader.readShort();
-
-		if(compression == 1) {
-			reader.skip(2*height*channels);
-			pixels = new int[width*height];
+		compression = reader.readShort();
+		
+		if(compression == 0 || compression == 1) {
 			
 			switch(colorMode) {
-			case GRAYSCALE: readGrayscale(reader); break;
-			case INDEXED: readIndexed(reader); break;
-			case RGB: readRgb(reader); break;
-			default: throw new IOException("Unsupport color mode:"+colorMode);
+			case GRAYSCALE:
+			case INDEXED:
+			case RGB:
+				break;
+			default:
+				throw new IOException("Unsupport color mode:"+colorMode);
+			}
+			
+			// byte counts for all the scan lines (RLE)
+			if(compression == 1) {
+				byteCounts = BufferPool.getDefault().getShorts(height*channels);
+				reader.readShorts(byteCounts, 0, height*channels);
 			}
 			
+			if(bytesOutput) {
+				setStorage(null);
+				bytesPerPixel = format.getBytesPerPixel();
+				bytes = new byte[width*height*bytesPerPixel];
+			}
+			else {
+				setStorage(allocator.allocate(width*height, format));
+				bytes = null;
+				// the channels are merged by or, so an array of the caller is cleared
+				if(pixels != null && allocator != PixelStorage.HEAP) {
+					Arrays.fill(pixels, 0, width*height, 0);
+				}
+			}
+			shifts = new int [] {
+				format.getRedShift(),
+				format.getGreenShift(),
+				format.getBlueShift(),
+				format.getAlphaShift()
+			};
+			
+			// the alpha is recorded from the alpha channel of RGB, and the other alpha is filled by 0xFF
+			alpha = (colorMode == PsdColorMode.RGB && getDecodedChannels() == 4 && format.getAlphaMask() != 0) ? new AlphaInfo.Builder(format) : null;
+			
+			if(array != null) {
+				seekable.seek(readImageData(array, executor));
+			}
+			else {
+				readImageData(reader);
+			}
+			
+			// fill alpha 0xFF
+			if(channels == ((colorMode == PsdColorMode.RGB) ? 3 : 1)) {
+				if(bytes != null) {
+					int index = format.getAlphaShift() >> 3;
+					if(index < bytesPerPixel) {
+						for(int i=index; i<bytes.length; i+=bytesPerPixel) {
+							bytes[i] = (byte)0xFF;
+						}
+					}
+				}
+				else {
+					final int alpha = 0xFF << format.getAlphaShift();
+					final PixelKernels kernels = PixelKernels.getDefault();
+					forEachBand(new Operation() {
+						@Override
+						public void apply(int [] pixels, int offset, int length) {
+							kernels.fillAlpha(pixels, offset, length, ~0, alpha);
+						}
+					});
+				}
+			}
+			else if(format.isPremultiplied()) {
+				premultiply(format);
+			}
+			
+			setAlphaInfo((alpha != null) ? alpha.build(width, height) : AlphaInfo.opaque(width, height));
+			alpha = null;
+			BufferPool.getDefault().release(byteCounts);
+			byteCounts = null;
+			
 		}
 		
 	}
@@ -170,121 +324,330 @@ public class PsdImage extends PixelImage {
 		return colorMode;
 	}
 	
+	public int getCompression() {
+		return compression;
+	}
+	
 	public PsdLayer [] getLayers() {
 		return layers;
 	}
 	
-	private void readRgb(InputReader reader) throws IOException {
+	/**
+	 * get the offset of ImageResourcesSection (its length field) from the beginning of the file.
+	 * @return offset
+	 */
+	public long getImageResourcesOffset() {
+		return imageResourcesOffset;
+	}
+	
+	/**
+	 * get the offset of LayerAndMaskInformationSection (its length field) from the beginning of the file.
+	 * @return offset
+	 */
+	public long getLayerAndMaskInformationOffset() {
+		return layerAndMaskInformationOffset;
+	}
+	
+	/**
+	 * get the offset of ImageDataSection (its compression field) from the beginning of the file.
+	 * A SeekableInputReader can seek here to read the composite image without the layers.
+	 * @return offset
+	 */
+	public long getImageDataOffset() {
+		return imageDataOffset;
+	}
+	
+	/**
+	 * get the image data read by readBytes().
+	 * @return bytes of width*height*format.getBytesPerPixel(), or null if the image was read into the int pixels
+	 */
+	public byte [] getBytes() {
+		return bytes;
+	}
+	
+	private void premultiply(final PixelFormat format) {
+		final PixelKernels kernels = PixelKernels.getDefault();
+		if(bytes != null) {
+			int bandSize = Math.min(BAND_SIZE, width*height);
+			int [] work = BufferPool.getDefault().getInts(bandSize);
+			for(int i=0; i<width*height; i+=bandSize) {
+				int length = Math.min(bandSize, width*height-i);
+				format.readBytes(bytes, i*bytesPerPixel, work, 0, length);
+				kernels.premultiply(work, 0, length, format);
+				format.writeBytes(work, 0, bytes, i*bytesPerPixel, length);
+			}
+			BufferPool.getDefault().release(work);
+		}
+		else {
+			forEachBand(new Operation() {
+				@Override
+				public void apply(int [] pixels, int offset, int length) {
+					kernels.premultiply(pixels, offset, length, format);
+				}
+			});
+		}
+	}
+	
+	// the end position of the channel image data is returned, and the reader is not moved
+	private long readChannelImageData(final ByteArrayReader reader, PixelExecutor executor) throws IOException {
+		
+		// channel image data of all the layers, in the order of the file
+		int count = 0;
+		for(int i=0; i<layers.length; i++) count += layers[i].getChannels().length;
+		final PsdLayer [] owners = new PsdLayer[count];
+		final PsdChannel [] targets = new PsdChannel[count];
+		BufferPool pool = BufferPool.getDefault();
+		final int [] offsets = pool.getInts(count);
+		
+		int index = 0;
+		int offset = (int)reader.getPosition();
+		for(int i=0; i<layers.length; i++) {
+			PsdChannel [] channels = layers[i].getChannels();
+			for(int j=0; j<channels.length; j++) {
+				owners[index] = layers[i];
+				targets[index] = channels[j];
+				offsets[index] = offset;
+				offset += channels[j].getLength();
+				index++;
+			}
+		}
 		
-		byte [] outBuffer = new byte[width];
+		executor.execute(count, new PixelExecutor.Task() {
+			@Override
+			public void run(int index) throws IOException {
+				ByteArrayReader slice = reader.slice(offsets[index], targets[index].getLength());
+				targets[index].read(slice, owners[index].getWidth(), owners[index].getHeight());
+			}
+		});
+		pool.release(offsets);
 		
-		int [] SHIFTS = {
-			format.getRedShift(),
-			format.getGreenShift(),
-			format.getBlueShift(),
-			format.getAlphaShift()
-		};
+		return offset;
 		
-		for(int i=0; i<channels; i++) {
+	}
+	
+	private void readImageData(InputReader reader) throws IOException {
+		int count = getDecodedChannels();
+		if(pixels == null && bytes == null) {
+			// the channels of a band are merged before the storage, which may not keep a partial pixel (e.g. PackedPixelStorage)
+			if(reader instanceof SeekableInputReader) {
+				// the scanlines of each band are read at their offsets, so the image data is not copied
+				SeekableInputReader seekable = (SeekableInputReader)reader;
+				seekable.seek(readImageData(seekable, PixelExecutor.SEQUENTIAL));
+			}
+			else {
+				readImageDataPlanes(reader, count);
+			}
+			return;
+		}
+		BufferPool pool = BufferPool.getDefault();
+		byte [] work = (compression == 1) ? pool.getBytes(PsdDecorder.getMaxByteCount(byteCounts, height*channels)) : null;
+		byte [] outBuffer = pool.getBytes(width);
+		for(int i=0; i<count; i++) {
 			for(int j=0; j<height; j++) {
-				PsdDecorder.decodeRunLengthEncoding(reader, outBuffer);
-				for(int k=0; k<width; k++) {
-					pixels[j*width+k] |= (outBuffer[k] & 0xFF) << SHIFTS[i];
+				readScanline(reader, i*height+j, work, outBuffer);
+				if(i == 3 && alpha != null) alpha.add(outBuffer, 0, width, j);
+				setScanline(i, j, outBuffer);
+			}
+		}
+		pool.release(work);
+		pool.release(outBuffer);
+	}
+	
+	// the end position of the image data is returned, and a ByteArrayReader is not moved
+	private long readImageData(final SeekableInputReader reader, PixelExecutor executor) throws IOException {
+		
+		final int count = getDecodedChannels();
+		
+		// offsets of the scanlines from the reader position
+		final long [] offsets = BufferPool.getDefault().getLongs(count*height+1);
+		offsets[0] = 0;
+		for(int i=0; i<count*height; i++) {
+			offsets[i+1] = offsets[i] + ((compression == 1) ? (byteCounts[i] & 0xFFFF) : width);
+		}
+		
+		final long start = reader.getPosition();
+		final PixelStorage storage = (pixels == null && bytes == null) ? getStorage() : null;
+		final int bandRows = Math.max(1, BAND_SIZE / Math.max(1, width));
+		
+		executor.execute((height + bandRows - 1) / bandRows, new PixelExecutor.Task() {
+			@Override
+			public void run(int index) throws IOException {
+				int top = index * bandRows;
+				int bottom = Math.min(top + bandRows, height);
+				// a reader which cannot be duplicated is only read by the sequential executor
+				SeekableInputReader duplicate = (reader instanceof ByteArrayReader) ? ((ByteArrayReader)reader).duplicate() : reader;
+				BufferPool pool = BufferPool.getDefault();
+				byte [] work = (compression == 1) ? pool.getBytes(PsdDecorder.getMaxByteCount(byteCounts, height*channels)) : null;
+				byte [] outBuffer = pool.getBytes(width);
+				// the band of the storage is merged in an int buffer
+				int [] band = null;
+				if(pixels == null && bytes == null) {
+					band = pool.getInts((bottom-top)*width);
+					Arrays.fill(band, 0, (bottom-top)*width, 0);
+				}
+				AlphaInfo.Builder bandAlpha = (alpha != null) ? new AlphaInfo.Builder(format) : null;
+				for(int i=0; i<count; i++) {
+					duplicate.seek(start + offsets[i*height+top]);
+					for(int j=top; j<bottom; j++) {
+						readScanline(duplicate, i*height+j, work, outBuffer);
+						if(i == 3 && bandAlpha != null) bandAlpha.add(outBuffer, 0, width, j);
+						if(band != null) {
+							setScanline(i, outBuffer, band, (j-top)*width);
+						}
+						else {
+							setScanline(i, j, outBuffer);
+						}
+					}
+				}
+				if(band != null) {
+					storage.set(top*width, band, 0, (bottom-top)*width);
 				}
+				if(bandAlpha != null) alpha.merge(bandAlpha);
+				pool.release(work);
+				pool.release(outBuffer);
+				pool.release(band);
+			}
+		});
+		
+		long end = start + offsets[count*height];
+		BufferPool.getDefault().release(offsets);
+		return end;
+		
+	}
+	
+	// the channels but the last are decoded into planes of a pooled buffer, and merged with each scanline of the last channel
+	private void readImageDataPlanes(InputReader reader, int count) throws IOException {
+		long planeSize = (long)(count-1) * width * height;
+		if(planeSize > Integer.MAX_VALUE) throw new IOException("Too large image data: "+width+"x"+height);
+		BufferPool pool = BufferPool.getDefault();
+		byte [] planes = pool.getBytes((int)planeSize);
+		byte [] work = (compression == 1) ? pool.getBytes(PsdDecorder.getMaxByteCount(byteCounts, height*channels)) : null;
+		byte [] outBuffer = pool.getBytes(width);
+		int [] row = pool.getInts(width);
+		PixelStorage storage = getStorage();
+		for(int i=0; i<count-1; i++) {
+			for(int j=0; j<height; j++) {
+				readScanline(reader, i*height+j, work, outBuffer);
+				System.arraycopy(outBuffer, 0, planes, (i*height+j)*width, width);
 			}
 		}
-
-		// fill alpha 0xFF
-		if(channels == 3) {
-			int alpha = 0xFF << format.getAlphaShift();
-			for(int i=0; i<pixels.length; i++) {
-				pixels[i] |= alpha;
+		for(int j=0; j<height; j++) {
+			Arrays.fill(row, 0, width, 0);
+			for(int i=0; i<count; i++) {
+				if(i < count-1) {
+					System.arraycopy(planes, (i*height+j)*width, outBuffer, 0, width);
+				}
+				else {
+					readScanline(reader, i*height+j, work, outBuffer);
+				}
+				if(i == 3 && alpha != null) alpha.add(outBuffer, 0, width, j);
+				setScanline(i, outBuffer, row, 0);
 			}
+			storage.set(j*width, row, 0, width);
 		}
-
+		pool.release(planes);
+		pool.release(work);
+		pool.release(outBuffer);
+		pool.release(row);
 	}
 	
-	private void readGrayscale(InputReader reader) throws IOException {
-		
-		byte [] outBuffer = new byte[width];
-		
-		int [] SHIFTS = {
-			format.getRedShift(),
-			format.getGreenShift(),
-			format.getBlueShift(),
-			format.getAlphaShift()
-		};
-		
-		// rgb
-		for(int i=0; i<height; i++) {
-			PsdDecorder.decodeRunLengthEncoding(reader, outBuffer);
-			for(int j=0; j<width; j++) {
-				pixels[i*width+j] =
-						((outBuffer[j] & 0xFF) << SHIFTS[0]) |
-						((outBuffer[j] & 0xFF) << SHIFTS[1]) |
-						((outBuffer[j] & 0xFF) << SHIFTS[2]);
+	// the ByteArrayReader of the reader or of a CountingSeekableInputReader, which then counts the parts decoded from it as skipped bytes
+	private static ByteArrayReader getByteArrayReader(InputReader reader) {
+		if(reader instanceof CountingSeekableInputReader) {
+			reader = ((CountingSeekableInputReader)reader).getReader();
+		}
+		return (reader instanceof ByteArrayReader) ? (ByteArrayReader)reader : null;
+	}
+	
+	// the number of channels used for the pixels
+	private int getDecodedChannels() {
+		return Math.min(channels, (colorMode == PsdColorMode.RGB) ? 4 : 2);
+	}
+	
+	private void readScanline(InputReader reader, int scanline, byte [] work, byte [] outBuffer) throws IOException {
+		if(compression == 1) {
+			PsdDecorder.decodeRunLengthEncoding(reader, byteCounts, scanline, 1, work, outBuffer, 0, width);
+		}
+		else {
+			PsdDecorder.readRaw(reader, outBuffer, width);
+		}
+	}
+	
+	private void setScanline(int channel, int y, byte [] outBuffer) {
+		if(bytes != null) {
+			setScanlineBytes(channel, y, outBuffer);
+		}
+		else {
+			setScanline(channel, outBuffer, pixels, y*width);
+		}
+	}
+	
+	private void setScanline(int channel, byte [] outBuffer, int [] pixels, int offset) {
+		if(colorMode == PsdColorMode.RGB) {
+			PixelKernels.getDefault().orChannel(outBuffer, 0, pixels, offset, width, shifts[channel]);
+		}
+		else if(channel > 0) {
+			// alpha
+			int alpha = 0xFF << shifts[3];
+			for(int k=0; k<width; k++) {
+				pixels[offset+k] |= alpha;
 			}
 		}
-		
-		// alpha
-		if(channels > 1) {
-			for(int i=0; i<height; i++) {
-				PsdDecorder.decodeRunLengthEncoding(reader, outBuffer);
-				for(int j=0; j<width; j++) {
-					pixels[i*width+j] |= (0xFF << SHIFTS[3]);
-				}
+		else if(colorMode == PsdColorMode.GRAYSCALE) {
+			for(int k=0; k<width; k++) {
+				int e = outBuffer[k] & 0xFF;
+				pixels[offset+k] = (e << shifts[0]) | (e << shifts[1]) | (e << shifts[2]);
 			}
 		}
 		else {
-			// fill 0xFF
-			int alpha = 0xFF << format.getAlphaShift();
-			for(int i=0; i<pixels.length; i++) {
-				pixels[i] |= alpha;
+			// indexed
+			for(int k=0; k<width; k++) {
+				int index = outBuffer[k] & 0xFF;
+				pixels[offset+k] =
+						((colorModeData[index] & 0xFF) << shifts[0]) |
+						((colorModeData[index+256] & 0xFF) << shifts[1]) |
+						((colorModeData[index+512] & 0xFF) << shifts[2]);
 			}
 		}
-		
 	}
 	
-	private void readIndexed(InputReader reader) throws IOException {
-		
-		byte [] outBuffer = new byte[width];
-		
-		int [] SHIFTS = {
-			format.getRedShift(),
-			format.getGreenShift(),
-			format.getBlueShift(),
-			format.getAlphaShift()
-		};
-		
-		// rgb
-		for(int i=0; i<height; i++) {
-			PsdDecorder.decodeRunLengthEncoding(reader, outBuffer);
-			for(int j=0; j<width; j++) {
-				int index = (outBuffer[j] & 0xFF);
-				pixels[i*width+j] =
-						((colorModeData[index] & 0xFF) << SHIFTS[0]) |
-						((colorModeData[index+256] & 0xFF) << SHIFTS[1]) |
-						((colorModeData[index+512] & 0xFF) << SHIFTS[2]);
+	private void setScanlineBytes(int channel, int y, byte [] outBuffer) {
+		int offset = y*width*bytesPerPixel;
+		if(colorMode == PsdColorMode.RGB) {
+			int index = offset + (shifts[channel] >> 3);
+			if((shifts[channel] >> 3) >= bytesPerPixel) return;
+			for(int k=0; k<width; k++) {
+				bytes[index] = outBuffer[k];
+				index += bytesPerPixel;
 			}
 		}
-
-		// alpha
-		if(channels > 1) {
-			for(int i=0; i<height; i++) {
-				PsdDecorder.decodeRunLengthEncoding(reader, outBuffer);
-				for(int j=0; j<width; j++) {
-					pixels[i*width+j] |= (0xFF << SHIFTS[3]);
-				}
+		else if(channel > 0) {
+			// alpha
+			int index = offset + (shifts[3] >> 3);
+			if((shifts[3] >> 3) >= bytesPerPixel) return;
+			for(int k=0; k<width; k++) {
+				bytes[index] = (byte)0xFF;
+				index += bytesPerPixel;
 			}
 		}
 		else {
-			// fill 0xFF
-			int alpha = 0xFF << format.getAlphaShift();
-			for(int i=0; i<pixels.length; i++) {
-				pixels[i] |= alpha;
+			int r = shifts[0] >> 3;
+			int g = shifts[1] >> 3;
+			int b = shifts[2] >> 3;
+			for(int k=0; k<width; k++) {
+				if(colorMode == PsdColorMode.GRAYSCALE) {
+					bytes[offset+r] = bytes[offset+g] = bytes[offset+b] = outBuffer[k];
+				}
+				else {
+					// indexed
+					int index = outBuffer[k] & 0xFF;
+					bytes[offset+r] = colorModeData[index];
+					bytes[offset+g] = colorModeData[index+256];
+					bytes[offset+b] = colorModeData[index+512];
+				}
+				offset += bytesPerPixel;
 			}
 		}
-
 	}
 	
 	private int sigunature;
@@ -292,7 +655,23 @@ public class PsdImage extends PixelImage {
 	private int channels;
 	private int depth;
 	private PsdColorMode colorMode;
+	private int compression;
+	private long imageResourcesOffset;
+	private long layerAndMaskInformationOffset;
+	private long imageDataOffset;
+	
+	// image data decoding
+	private short [] byteCounts;
+	private int [] shifts;
+	private byte [] bytes;
+	private int bytesPerPixel;
 	private byte [] colorModeData;
+	private AlphaInfo.Builder alpha;
 	private PsdLayer [] layers;
-
+	
+	private static final int HEADER_SIZE = 26;
+	
+	// number of pixels in a band of scanlines decoded by an executor
+	private static final int BAND_SIZE = 64*1024;
+	
 }
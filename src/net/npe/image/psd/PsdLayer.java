@@ -20,12 +20,10 @@ import java.io.IOException;
 import net.npe.io.InputReader;
 import net.npe.image.PixelFormat;
 import net.npe.image.PixelImage;
+import net.npe.image.PixelKernels;
 
 public class PsdLayer {
 	
-	private static final int SIGUNATURE_8BIM = 0x3842494D;
-	private static final int SIGUNATURE_8B64 = 0x38423634;
-	
 	public PsdLayer() {
 	}
 	
@@ -95,37 +93,18 @@ public class PsdLayer {
 		position += 4*((1+layerNameLength+3)/4);
 		reader.setPosition(position);
 		*/
-		reader.mark();
 		int layerNameLength = reader.readByte() & 0xFF;
 		name = reader.readString(layerNameLength);
 		System.out.println("LayerName["+layerNameLength+"]:"+name);
 		
-		int skipByte = 4*((1+layerNameLength+3)/4);
-		reader.reset();
-		reader.skip(skipByte);
-		
-		// Additional Layer Information
-		int sigunature = reader.readInt();
-		System.out.println("sigunature:"+sigunature);
-		
-		// check if additional layer information is exist
-		if(sigunature == SIGUNATURE_8BIM || sigunature == SIGUNATURE_8B64) {
-			
-			// a 4-character code
-//			int code = reader.readInt();
-			reader.skip(4);
-			
-			// Length data below, rounded up to an even byte count.
-			int length = reader.readInt();
-			System.out.println("ALI Length:"+length);
-			
-			// skip Data
-			reader.skip(length);
-		}
-		else {
-			// rewind 4byte
-			reader.skip(-4);
-		}
+		int nameLength = 4*((1+layerNameLength+3)/4);
+		reader.skip(nameLength - (1+layerNameLength));
+		
+		// skip Additional Layer Information, the rest of the extra data field
+		reader.skip(extraLength - (4+layerMaskLength) - (4+layerBlendingLength) - nameLength);
+		
+		// 34 bytes of fixed fields, 6 bytes per channel and the extra data
+		recordSize = 34 + 6*channelCount + extraLength;
 		
 	}
 	
@@ -148,6 +127,16 @@ public class PsdLayer {
 	public String getName() { return name; }
 	public PsdChannel [] getChannels() { return channels; }
 	
+	/**
+	 * get the number of bytes of the layer record and its channel image data.
+	 * @return size
+	 */
+	int getSize() {
+		int size = recordSize;
+		for(int i=0; i<channels.length; i++) size += channels[i].getLength();
+		return size;
+	}
+	
 	public boolean isTransparencyProtected() { return (flags & 0x01) != 0; }
 	public boolean isInvisible() { return (flags & 0x02) != 0; }
 	
@@ -166,10 +155,21 @@ public class PsdLayer {
 	}
 	
 	public int [] createPixels(PixelFormat order) {
-		
-		int width = getWidth();
-		int height = getHeight();
-		int [] pixels = new int[width*height];
+		return createPixels(order, new int[getWidth()*getHeight()]);
+	}
+	
+	/**
+	 * merge the channels into an int array of the caller.
+	 * @param order pixel format
+	 * @param pixels destination of width*height or more pixels
+	 * @return pixels
+	 */
+	public int [] createPixels(PixelFormat order, int [] pixels) {
+		
+		int length = getWidth()*getHeight();
+		if(pixels.length < length) {
+			throw new IllegalArgumentException("Too small pixels: "+pixels.length+" < "+length);
+		}
 		
 		PsdChannel redChannel = getChannel(PsdChannel.RED);
 		PsdChannel greenChannel = getChannel(PsdChannel.GREEN);
@@ -181,17 +181,9 @@ public class PsdLayer {
 		byte [] blueData = (blueChannel != null) ? blueChannel.getData() : null;
 		byte [] alphaData = (alphaChannel != null) ? alphaChannel.getData() : null;
 		
-		int redShift = order.getRedShift();
-		int greenShift = order.getGreenShift();
-		int blueShift = order.getBlueShift();
-		int alphaShift = order.getAlphaShift();
-		
-		for(int i=0; i<pixels.length; i++) {
-			int r = (redData != null) ? (redData[i]&0xFF) : 0x00;
-			int g = (greenData != null) ? (greenData[i]&0xFF) : 0x00;
-			int b = (blueData != null) ? (blueData[i]&0xFF) : 0x00;
-			int a = (alphaData != null) ? (alphaData[i]&0xFF) : 0xFF;
-			pixels[i] = (r<<redShift) | (g<<greenShift) | (b<<blueShift) | (a<<alphaShift);
+		PixelKernels.getDefault().packChannels(redData, greenData, blueData, alphaData, 0, pixels, 0, length, order);
+		if(alphaData != null && order.isPremultiplied()) {
+			PixelKernels.getDefault().premultiply(pixels, 0, length, order);
 		}
 		
 		return pixels;
@@ -217,7 +209,8 @@ public class PsdLayer {
 	private int clipping;
 	private int flags;
 	private String name;
+	private int recordSize;
 	
 	private PsdChannel [] channels;
-
+	
 }
@@ -0,0 +1,130 @@
+/**
+ * MipmapChain.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.image.resample;
+
+import net.npe.image.PixelFormat;
+import net.npe.image.PixelImage;
+
+/**
+ * Mipmap levels in one int array.
+ * <p>
+ * The levels are stored from the largest one without gaps,
+ * so the array can be uploaded to a texture level by level with getOffset(), getWidth() and getHeight().
+ * </p>
+ */
+public class MipmapChain {
+	
+	/**
+	 * get the number of levels of a full chain.
+	 * @param width width of the largest level
+	 * @param height height of the largest level
+	 * @return number of levels down to 1x1
+	 */
+	public static int getLevelCount(int width, int height) {
+		int count = 1;
+		while(width > 1 || height > 1) {
+			width = Math.max(1, width >> 1);
+			height = Math.max(1, height >> 1);
+			count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * get the pixels of all levels.
+	 * @return pixels
+	 */
+	public int [] getPixels() {
+		return pixels;
+	}
+	
+	/**
+	 * get the pixel format.
+	 * @return pixel format
+	 */
+	public PixelFormat getFormat() {
+		return format;
+	}
+	
+	/**
+	 * get the number of levels.
+	 * @return number of levels
+	 */
+	public int getLevelCount() {
+		return offsets.length;
+	}
+	
+	/**
+	 * get the offset of a level in getPixels().
+	 * @param level level
+	 * @return offset
+	 */
+	public int getOffset(int level) {
+		return offsets[level];
+	}
+	
+	/**
+	 * get the width of a level.
+	 * @param level level
+	 * @return width
+	 */
+	public int getWidth(int level) {
+		return widths[level];
+	}
+	
+	/**
+	 * get the height of a level.
+	 * @param level level
+	 * @return height
+	 */
+	public int getHeight(int level) {
+		return heights[level];
+	}
+	
+	/**
+	 * get a level, which is a view of the pixels of the chain.
+	 * @param level level
+	 * @return image
+	 */
+	public PixelImage getLevel(int level) {
+		return new PixelImage(pixels, offsets[level], widths[level], widths[level], heights[level], format);
+	}
+	
+	MipmapChain(int width, int height, PixelFormat format) {
+		int count = getLevelCount(width, height);
+		this.offsets = new int[count];
+		this.widths = new int[count];
+		this.heights = new int[count];
+		int length = 0;
+		for(int i=0; i<count; i++) {
+			offsets[i] = length;
+			widths[i] = width;
+			heights[i] = height;
+			length += width*height;
+			width = Math.max(1, width >> 1);
+			height = Math.max(1, height >> 1);
+		}
+		this.pixels = new int[length];
+		this.format = format;
+	}
+	
+	private int [] pixels;
+	private PixelFormat format;
+	private int [] offsets;
+	private int [] widths;
+	private int [] heights;
+	
+}
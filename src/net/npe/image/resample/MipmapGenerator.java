@@ -0,0 +1,113 @@
+/**
+ * MipmapGenerator.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.image.resample;
+
+import net.npe.image.PixelImage;
+
+/**
+ * Generator of the full mipmap chain of an image.
+ * <p>
+ * Each level is a half of the previous level, down to 1x1, and is resampled from the previous level
+ * by a Resampler in bands of rows run by the executor of the image.
+ * The generator keeps a Resampler per level, so the weight tables are reused
+ * for the next images of the same size. A MipmapGenerator is not thread-safe, so keep one per thread.
+ * </p>
+ */
+public class MipmapGenerator {
+	
+	/**
+	 * constructor.
+	 * @param filter filter
+	 */
+	public MipmapGenerator(ResampleFilter filter) {
+		this.filter = filter;
+	}
+	
+	/**
+	 * get the filter.
+	 * @return filter
+	 */
+	public ResampleFilter getFilter() {
+		return filter;
+	}
+	
+	/**
+	 * check whether the colors are filtered in linear light.
+	 * @return true for linear light
+	 */
+	public boolean isLinear() {
+		return linear;
+	}
+	
+	/**
+	 * filter the colors in linear light (default), or the sRGB values as they are.
+	 * @param linear true for linear light
+	 */
+	public void setLinear(boolean linear) {
+		this.linear = linear;
+		for(int i=0; i<resamplers.length; i++) {
+			resamplers[i].setLinear(linear);
+		}
+	}
+	
+	/**
+	 * generate the mipmap chain of an image.
+	 * @param image image of the largest level, which may be a sub image or in a storage
+	 * @return chain in the format of the image
+	 */
+	public MipmapChain generate(PixelImage image) {
+		
+		if(image.getWidth() <= 0 || image.getHeight() <= 0) {
+			throw new IllegalArgumentException("Invalid size: "+image.getWidth()+", "+image.getHeight());
+		}
+		
+		MipmapChain chain = new MipmapChain(image.getWidth(), image.getHeight(), image.getFormat());
+		image.getPixels(image.getFormat(), chain.getPixels(), 0);
+		
+		int count = chain.getLevelCount();
+		if(resamplers.length < count-1) {
+			Resampler [] resamplers = new Resampler[count-1];
+			System.arraycopy(this.resamplers, 0, resamplers, 0, this.resamplers.length);
+			for(int i=this.resamplers.length; i<resamplers.length; i++) {
+				resamplers[i] = new Resampler(filter);
+				resamplers[i].setLinear(linear);
+			}
+			this.resamplers = resamplers;
+		}
+		
+		PixelImage previous = level(chain, 0, image);
+		for(int i=1; i<count; i++) {
+			PixelImage level = level(chain, i, image);
+			resamplers[i-1].resample(previous, level);
+			previous = level;
+		}
+		
+		return chain;
+		
+	}
+	
+	private static PixelImage level(MipmapChain chain, int level, PixelImage image) {
+		PixelImage view = chain.getLevel(level);
+		view.setExecutor(image.getExecutor());
+		view.setParallelThreshold(image.getParallelThreshold());
+		return view;
+	}
+	
+	private ResampleFilter filter;
+	private boolean linear = true;
+	private Resampler [] resamplers = new Resampler[0];
+	
+}
@@ -0,0 +1,92 @@
+/**
+ * ResampleFilter.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.image.resample;
+
+/**
+ * Reconstruction filter of Resampler.
+ * <p>
+ * The filters are stretched by the scale when an image is reduced,
+ * so every source pixel contributes to the destination.
+ * </p>
+ */
+public enum ResampleFilter {
+	
+	/** box filter: nearest neighbor for enlarging, area average for reducing */
+	BOX(0.5) {
+		@Override
+		public double evaluate(double x) {
+			return (x > -0.5 && x <= 0.5) ? 1 : 0;
+		}
+	},
+	
+	/** triangle filter: bilinear interpolation */
+	BILINEAR(1) {
+		@Override
+		public double evaluate(double x) {
+			x = Math.abs(x);
+			return (x < 1) ? 1 - x : 0;
+		}
+	},
+	
+	/** cubic convolution (Catmull-Rom, a = -0.5) */
+	BICUBIC(2) {
+		@Override
+		public double evaluate(double x) {
+			final double a = -0.5;
+			x = Math.abs(x);
+			if(x < 1) return ((a + 2) * x - (a + 3)) * x * x + 1;
+			if(x < 2) return ((a * x - 5 * a) * x + 8 * a) * x - 4 * a;
+			return 0;
+		}
+	},
+	
+	/** windowed sinc of 3 lobes */
+	LANCZOS3(3) {
+		@Override
+		public double evaluate(double x) {
+			if(x <= -3 || x >= 3) return 0;
+			return sinc(x) * sinc(x / 3);
+		}
+	};
+	
+	/**
+	 * get the radius of the filter.
+	 * @return radius in source pixels
+	 */
+	public double getSupport() {
+		return support;
+	}
+	
+	/**
+	 * evaluate the filter.
+	 * @param x distance from the center
+	 * @return weight
+	 */
+	public abstract double evaluate(double x);
+	
+	private ResampleFilter(double support) {
+		this.support = support;
+	}
+	
+	private static double sinc(double x) {
+		if(x == 0) return 1;
+		x *= Math.PI;
+		return Math.sin(x) / x;
+	}
+	
+	private final double support;
+	
+}
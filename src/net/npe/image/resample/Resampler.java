@@ -0,0 +1,446 @@
+/**
+ * Resampler.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.image.resample;
+
+import java.io.IOException;
+
+import net.npe.image.PixelExecutor;
+import net.npe.image.PixelFormat;
+import net.npe.image.PixelImage;
+import net.npe.image.PixelKernels;
+import net.npe.image.PixelStorage;
+
+/**
+ * Separable image resampler.
+ * <p>
+ * An image is filtered horizontally into an intermediate image of 8-bit channels, then vertically.
+ * Both passes are split into bands of rows, which are run by the executor of the source image
+ * when the image has getParallelThreshold() pixels or more.
+ * The colors of a non-premultiplied image are premultiplied while filtering,
+ * so transparent pixels do not bleed into their neighbors; a premultiplied image stays premultiplied.
+ * The colors may be filtered in linear light (see setLinear()), which keeps the brightness of reduced images.
+ * </p>
+ * <p>
+ * The weight tables of the last sizes are kept for the next images of the same sizes
+ * (e.g. the thumbnails of a sprite sheet). A Resampler is not thread-safe, so keep one per thread.
+ * </p>
+ */
+public class Resampler {
+	
+	/**
+	 * resample an image.
+	 * @param image source image
+	 * @param width destination width
+	 * @param height destination height
+	 * @param filter filter
+	 * @return new image of the format of the source image
+	 */
+	public static PixelImage resample(PixelImage image, int width, int height, ResampleFilter filter) {
+		return new Resampler(filter).resample(image, width, height);
+	}
+	
+	/**
+	 * constructor.
+	 * @param filter filter
+	 */
+	public Resampler(ResampleFilter filter) {
+		this.filter = filter;
+	}
+	
+	/**
+	 * get the filter.
+	 * @return filter
+	 */
+	public ResampleFilter getFilter() {
+		return filter;
+	}
+	
+	/**
+	 * check whether the colors are filtered in linear light.
+	 * @return true for linear light
+	 */
+	public boolean isLinear() {
+		return linear;
+	}
+	
+	/**
+	 * filter the colors in linear light.
+	 * The colors are decoded from sRGB into 12-bit linear values, and encoded to sRGB again.
+	 * Alpha is linear in both cases.
+	 * @param linear true for linear light, false for the sRGB values as they are (default)
+	 */
+	public void setLinear(boolean linear) {
+		this.linear = linear;
+	}
+	
+	/**
+	 * resample an image.
+	 * @param image source image, which may be a sub image or in a storage
+	 * @param width destination width
+	 * @param height destination height
+	 * @return new image of the format of the source image
+	 */
+	public PixelImage resample(PixelImage image, int width, int height) {
+		if(width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("Invalid size: "+width+", "+height);
+		}
+		PixelImage resampled = new PixelImage(new int[width*height], width, height, image.getFormat());
+		resampled.setExecutor(image.getExecutor());
+		resampled.setParallelThreshold(image.getParallelThreshold());
+		resample(image, resampled);
+		return resampled;
+	}
+	
+	/**
+	 * resample an image into another image.
+	 * @param image source image, which may be a sub image or in a storage
+	 * @param destination destination image of the format of the source image, which may be a sub image or in a storage
+	 */
+	public void resample(PixelImage image, PixelImage destination) {
+		
+		final PixelFormat format = image.getFormat();
+		if(destination.getFormat() != format) {
+			throw new IllegalArgumentException("Different formats: "+format+", "+destination.getFormat());
+		}
+		
+		final int sourceWidth = image.getWidth();
+		final int sourceHeight = image.getHeight();
+		final int width = destination.getWidth();
+		final int height = destination.getHeight();
+		if(width == 0 || height == 0) return;
+		
+		if(horizontal == null || horizontal.inSize != sourceWidth || horizontal.outSize != width) {
+			horizontal = new Weights(sourceWidth, width, filter);
+		}
+		if(vertical == null || vertical.inSize != sourceHeight || vertical.outSize != height) {
+			vertical = new Weights(sourceHeight, height, filter);
+		}
+		final Weights horizontal = this.horizontal;
+		final Weights vertical = this.vertical;
+		final boolean linear = this.linear;
+		
+		// straight colors are premultiplied in the passes
+		final boolean alpha = format.getAlphaMask() != 0;
+		final boolean straight = !format.isPremultiplied() && alpha;
+		final int alphaByte = alpha ? format.getAlphaShift() >> 3 : -1;
+		final PixelKernels kernels = PixelKernels.getDefault();
+		
+		final int [] pixels = image.getPixels();
+		final PixelStorage storage = image.getStorage();
+		final int offset = image.getOffset();
+		final int stride = image.getStride();
+		
+		final int [] destinationPixels = destination.getPixels();
+		final PixelStorage destinationStorage = destination.getStorage();
+		final int destinationOffset = destination.getOffset();
+		final int destinationStride = destination.getStride();
+		
+		// 8-bit pixels, or 4 channels of 12-bit linear values per pixel
+		final int [] work = new int[(linear ? 4 : 1)*width*sourceHeight];
+		
+		PixelExecutor executor = image.getExecutor();
+		if(sourceWidth*sourceHeight + width*height < image.getParallelThreshold()) {
+			executor = PixelExecutor.SEQUENTIAL;
+		}
+		
+		// horizontal pass: source rows to work rows
+		final int sourceBand = Math.max(1, BAND_SIZE / Math.max(1, sourceWidth));
+		execute(executor, (sourceHeight + sourceBand - 1) / sourceBand, new PixelExecutor.Task() {
+			@Override
+			public void run(int index) {
+				int top = index * sourceBand;
+				int bottom = Math.min(top + sourceBand, sourceHeight);
+				int [] row = (pixels == null || straight || linear) ? new int[sourceWidth] : null;
+				int [] channels = linear ? new int[4*sourceWidth] : null;
+				for(int y=top; y<bottom; y++) {
+					int [] line = pixels;
+					int lineOffset = offset + y*stride;
+					if(row != null) {
+						if(pixels != null) {
+							System.arraycopy(pixels, lineOffset, row, 0, sourceWidth);
+						}
+						else {
+							storage.get(lineOffset, row, 0, sourceWidth);
+						}
+						line = row;
+						lineOffset = 0;
+					}
+					if(linear) {
+						if(format.isPremultiplied()) kernels.unpremultiply(row, 0, sourceWidth, format);
+						toLinear(row, channels, sourceWidth, alphaByte);
+						filterChannels(channels, work, 4*y*width, horizontal);
+					}
+					else {
+						if(straight) kernels.premultiply(row, 0, sourceWidth, format);
+						filterRow(line, lineOffset, work, y*width, horizontal);
+					}
+				}
+			}
+		});
+		
+		// vertical pass: work rows to destination rows
+		final int destinationBand = Math.max(1, BAND_SIZE / width);
+		execute(executor, (height + destinationBand - 1) / destinationBand, new PixelExecutor.Task() {
+			@Override
+			public void run(int index) {
+				int top = index * destinationBand;
+				int bottom = Math.min(top + destinationBand, height);
+				int [] sums = new int[4*width];
+				int [] row = (destinationPixels == null) ? new int[width] : null;
+				for(int y=top; y<bottom; y++) {
+					int [] line = destinationPixels;
+					int lineOffset = destinationOffset + y*destinationStride;
+					if(row != null) {
+						line = row;
+						lineOffset = 0;
+					}
+					if(linear) {
+						filterColumns(work, true, sums, vertical, y, alphaByte);
+						toSRGB(sums, line, lineOffset, width, alphaByte);
+						if(format.isPremultiplied()) kernels.premultiply(line, lineOffset, width, format);
+					}
+					else {
+						filterColumns(work, false, sums, vertical, y, alphaByte);
+						for(int x=0; x<width; x++) {
+							line[lineOffset+x] = sums[4*x] | sums[4*x+1] << 8 | sums[4*x+2] << 16 | sums[4*x+3] << 24;
+						}
+						if(straight) kernels.unpremultiply(line, lineOffset, width, format);
+					}
+					if(row != null) {
+						destinationStorage.set(destinationOffset + y*destinationStride, row, 0, width);
+					}
+				}
+			}
+		});
+		
+		// the pixels are written directly
+		destination.setAlphaInfo(null);
+		
+	}
+	
+	// filter the 4 bytes of the pixels of a row
+	private static void filterRow(int [] source, int sourceOffset, int [] destination, int destinationOffset, Weights weights) {
+		int [] starts = weights.starts;
+		int [] counts = weights.counts;
+		int [] values = weights.values;
+		int taps = weights.taps;
+		for(int x=0; x<weights.outSize; x++) {
+			int s0 = ROUND, s1 = ROUND, s2 = ROUND, s3 = ROUND;
+			int index = sourceOffset + starts[x];
+			int w = x*taps;
+			for(int k=0; k<counts[x]; k++) {
+				int p = source[index+k];
+				int weight = values[w+k];
+				s0 += (p & 0xFF) * weight;
+				s1 += ((p >> 8) & 0xFF) * weight;
+				s2 += ((p >> 16) & 0xFF) * weight;
+				s3 += (p >>> 24) * weight;
+			}
+			destination[destinationOffset+x] = clamp(s0, 255) | clamp(s1, 255) << 8 | clamp(s2, 255) << 16 | clamp(s3, 255) << 24;
+		}
+	}
+	
+	// filter the 4 channels of the pixels of a row of 12-bit linear values
+	private static void filterChannels(int [] source, int [] destination, int destinationOffset, Weights weights) {
+		int [] starts = weights.starts;
+		int [] counts = weights.counts;
+		int [] values = weights.values;
+		int taps = weights.taps;
+		for(int x=0; x<weights.outSize; x++) {
+			int s0 = ROUND, s1 = ROUND, s2 = ROUND, s3 = ROUND;
+			int index = 4*starts[x];
+			int w = x*taps;
+			for(int k=0; k<counts[x]; k++) {
+				int weight = values[w+k];
+				s0 += source[index++] * weight;
+				s1 += source[index++] * weight;
+				s2 += source[index++] * weight;
+				s3 += source[index++] * weight;
+			}
+			int i = destinationOffset + 4*x;
+			destination[i] = clamp(s0, 4095);
+			destination[i+1] = clamp(s1, 4095);
+			destination[i+2] = clamp(s2, 4095);
+			destination[i+3] = clamp(s3, 4095);
+		}
+	}
+	
+	// filter the columns of the work rows into the 4 channels of a destination row
+	private static void filterColumns(int [] work, boolean linear, int [] sums, Weights weights, int y, int alphaByte) {
+		int rowLength = linear ? sums.length : sums.length / 4;
+		int max = linear ? 4095 : 255;
+		for(int i=0; i<sums.length; i++) {
+			sums[i] = ROUND;
+		}
+		int start = weights.starts[y];
+		int w = y*weights.taps;
+		for(int k=0; k<weights.counts[y]; k++) {
+			int weight = weights.values[w+k];
+			int index = (start+k)*rowLength;
+			if(!linear) {
+				for(int x=0; x<rowLength; x++) {
+					int p = work[index+x];
+					sums[4*x] += (p & 0xFF) * weight;
+					sums[4*x+1] += ((p >> 8) & 0xFF) * weight;
+					sums[4*x+2] += ((p >> 16) & 0xFF) * weight;
+					sums[4*x+3] += (p >>> 24) * weight;
+				}
+			}
+			else {
+				for(int i=0; i<rowLength; i++) {
+					sums[i] += work[index+i] * weight;
+				}
+			}
+		}
+		for(int i=0; i<sums.length; i++) {
+			sums[i] = clamp(sums[i], max);
+		}
+		if(alphaByte >= 0) {
+			// the overshoot of a sharp filter must not make a color greater than its alpha
+			for(int i=0; i<sums.length; i+=4) {
+				int a = sums[i+alphaByte];
+				sums[i] = Math.min(sums[i], a);
+				sums[i+1] = Math.min(sums[i+1], a);
+				sums[i+2] = Math.min(sums[i+2], a);
+				sums[i+3] = Math.min(sums[i+3], a);
+			}
+		}
+	}
+	
+	// decode straight sRGB pixels into premultiplied 12-bit linear channels
+	private static void toLinear(int [] pixels, int [] channels, int length, int alphaByte) {
+		for(int x=0; x<length; x++) {
+			int p = pixels[x];
+			int a = (alphaByte >= 0) ? (p >>> (8*alphaByte)) & 0xFF : 0xFF;
+			for(int i=0; i<4; i++) {
+				int c = (p >>> (8*i)) & 0xFF;
+				channels[4*x+i] = (i == alphaByte) ? (a << 4 | a >> 4) : (TO_LINEAR[c] * a + 127) / 255;
+			}
+		}
+	}
+	
+	// encode premultiplied 12-bit linear channels into straight sRGB pixels
+	private static void toSRGB(int [] channels, int [] pixels, int offset, int length, int alphaByte) {
+		for(int x=0; x<length; x++) {
+			int a = (alphaByte >= 0) ? channels[4*x+alphaByte] : 4095;
+			int p = 0;
+			for(int i=0; i<4; i++) {
+				int c = channels[4*x+i];
+				if(i == alphaByte) {
+					c = (c * 255 + 2047) / 4095;
+				}
+				else {
+					c = (a == 0) ? 0 : TO_SRGB[Math.min(4095, (c * 4095 + a / 2) / a)];
+				}
+				p |= c << (8*i);
+			}
+			pixels[offset+x] = p;
+		}
+	}
+	
+	private static int clamp(int sum, int max) {
+		int value = sum >> PRECISION;
+		return (value < 0) ? 0 : (value > max) ? max : value;
+	}
+	
+	private static void execute(PixelExecutor executor, int count, PixelExecutor.Task task) {
+		try {
+			executor.execute(count, task);
+		}
+		catch(IOException e) {
+			// passes do not throw IOException
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	// fixed-point weights of the source pixels for each destination pixel of an axis
+	private static final class Weights {
+		
+		Weights(int inSize, int outSize, ResampleFilter filter) {
+			this.inSize = inSize;
+			this.outSize = outSize;
+			double scale = (double)inSize / outSize;
+			double filterScale = Math.max(scale, 1);
+			double support = filter.getSupport() * filterScale;
+			taps = (int)Math.ceil(support) * 2 + 1;
+			starts = new int[outSize];
+			counts = new int[outSize];
+			values = new int[outSize*taps];
+			double [] weights = new double[taps];
+			for(int x=0; x<outSize; x++) {
+				double center = (x + 0.5) * scale;
+				int min = Math.max(0, (int)(center - support + 0.5));
+				int max = Math.min(inSize, (int)(center + support + 0.5));
+				int count = Math.min(max - min, taps);
+				double total = 0;
+				for(int k=0; k<count; k++) {
+					weights[k] = filter.evaluate((min + k - center + 0.5) / filterScale);
+					total += weights[k];
+				}
+				for(int k=0; k<count; k++) {
+					values[x*taps+k] = (int)Math.round(((total != 0) ? weights[k] / total : 0) * (1 << PRECISION));
+				}
+				starts[x] = min;
+				counts[x] = count;
+			}
+		}
+		
+		final int inSize;
+		final int outSize;
+		final int taps;
+		final int [] starts;
+		final int [] counts;
+		final int [] values;
+		
+	}
+	
+	private static int [] createLinearTable() {
+		int [] table = new int[256];
+		for(int i=0; i<256; i++) {
+			double c = i / 255.0;
+			c = (c <= 0.04045) ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+			table[i] = (int)Math.round(c * 4095);
+		}
+		return table;
+	}
+	
+	private static int [] createSRGBTable() {
+		int [] table = new int[4096];
+		for(int i=0; i<4096; i++) {
+			double c = i / 4095.0;
+			c = (c <= 0.0031308) ? c * 12.92 : 1.055 * Math.pow(c, 1 / 2.4) - 0.055;
+			table[i] = (int)Math.round(c * 255);
+		}
+		return table;
+	}
+	
+	private ResampleFilter filter;
+	private boolean linear;
+	private Weights horizontal;
+	private Weights vertical;
+	
+	// fraction bits of the weights
+	private static final int PRECISION = 14;
+	private static final int ROUND = 1 << (PRECISION - 1);
+	
+	// number of pixels in a band of rows run by the executor
+	private static final int BAND_SIZE = 64*1024;
+	
+	// sRGB to 12-bit linear, and 12-bit linear to sRGB
+	private static final int [] TO_LINEAR = createLinearTable();
+	private static final int [] TO_SRGB = createSRGBTable();
+	
+}
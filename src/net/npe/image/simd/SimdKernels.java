@@ -0,0 +1,76 @@
+/**
+ * SimdKernels.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.image.simd;
+
+import net.npe.image.PixelKernels;
+
+/**
+ * Loader of the vectorized PixelKernels.
+ * <p>
+ * The vector API is the incubator module jdk.incubator.vector (Java 16+),
+ * which is resolved only with --add-modules jdk.incubator.vector.
+ * This class does not refer to the module, so it can be called on any JVM
+ * and falls back to the scalar kernels.
+ * </p>
+ */
+public final class SimdKernels {
+	
+	/**
+	 * check whether the vector API is available.
+	 * @return true if the vectorized kernels can be used
+	 */
+	public static boolean isAvailable() {
+		return VECTOR != null;
+	}
+	
+	/**
+	 * get the vectorized kernels if available, otherwise the scalar kernels.
+	 * @return kernels
+	 */
+	public static PixelKernels get() {
+		return (VECTOR != null) ? VECTOR : PixelKernels.SCALAR;
+	}
+	
+	/**
+	 * install get() as the default kernels of the library.
+	 * @return true if the vectorized kernels are installed
+	 */
+	public static boolean install() {
+		PixelKernels.setDefault(get());
+		return isAvailable();
+	}
+	
+	private static PixelKernels load() {
+		if(!ModuleLayer.boot().findModule(MODULE).isPresent()) return null;
+		try {
+			return (PixelKernels)Class.forName(VECTOR_KERNELS).getConstructor().newInstance();
+		}
+		catch(ReflectiveOperationException e) {
+			return null;
+		}
+		catch(LinkageError e) {
+			return null;
+		}
+	}
+	
+	private SimdKernels() {}
+	
+	private static final String MODULE = "jdk.incubator.vector";
+	private static final String VECTOR_KERNELS = "net.npe.image.simd.VectorPixelKernels";
+	
+	private static final PixelKernels VECTOR = load();
+	
+}
@@ -0,0 +1,263 @@
+/**
+ * VectorPixelKernels.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.image.simd;
+
+import java.util.function.IntUnaryOperator;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+import net.npe.image.PixelFormat;
+import net.npe.image.PixelKernels;
+
+/**
+ * PixelKernels with the jdk.incubator.vector API.
+ * <p>
+ * The loops run on the preferred vector species, and the tails are left to the scalar implementation.
+ * Do not load this class directly: SimdKernels checks that the module is available.
+ * </p>
+ */
+public final class VectorPixelKernels extends PixelKernels {
+	
+	public VectorPixelKernels() {
+		super();
+	}
+	
+	@Override
+	public void swapRedBlue(int [] source, int sourceOffset, int [] destination, int destinationOffset, int length) {
+		int bound = INT.loopBound(length);
+		for(int i=0; i<bound; i+=INT.length()) {
+			IntVector p = IntVector.fromArray(INT, source, sourceOffset+i);
+			p.and(0xFF00FF00)
+				.or(p.lanewise(VectorOperators.LSHR, 16).and(0xFF))
+				.or(p.and(0xFF).lanewise(VectorOperators.LSHL, 16))
+				.intoArray(destination, destinationOffset+i);
+		}
+		super.swapRedBlue(source, sourceOffset+bound, destination, destinationOffset+bound, length-bound);
+	}
+	
+	@Override
+	public void rotate(int [] source, int sourceOffset, int [] destination, int destinationOffset, int length, int distance) {
+		int bound = INT.loopBound(length);
+		for(int i=0; i<bound; i+=INT.length()) {
+			IntVector.fromArray(INT, source, sourceOffset+i)
+				.lanewise(VectorOperators.ROL, distance)
+				.intoArray(destination, destinationOffset+i);
+		}
+		super.rotate(source, sourceOffset+bound, destination, destinationOffset+bound, length-bound, distance);
+	}
+	
+	@Override
+	public void reverseBytes(int [] source, int sourceOffset, int [] destination, int destinationOffset, int length) {
+		int bound = INT.loopBound(length);
+		for(int i=0; i<bound; i+=INT.length()) {
+			IntVector p = IntVector.fromArray(INT, source, sourceOffset+i);
+			p.lanewise(VectorOperators.LSHL, 24)
+				.or(p.and(0xFF00).lanewise(VectorOperators.LSHL, 8))
+				.or(p.lanewise(VectorOperators.LSHR, 8).and(0xFF00))
+				.or(p.lanewise(VectorOperators.LSHR, 24))
+				.intoArray(destination, destinationOffset+i);
+		}
+		super.reverseBytes(source, sourceOffset+bound, destination, destinationOffset+bound, length-bound);
+	}
+	
+	@Override
+	public void fillAlpha(int [] pixels, int offset, int length, int rgbMask, int alphaBits) {
+		int bound = INT.loopBound(length);
+		for(int i=offset; i<offset+bound; i+=INT.length()) {
+			IntVector.fromArray(INT, pixels, i).and(rgbMask).or(alphaBits).intoArray(pixels, i);
+		}
+		super.fillAlpha(pixels, offset+bound, length-bound, rgbMask, alphaBits);
+	}
+	
+	@Override
+	public void multiplyAlpha(int [] pixels, int offset, int length, int alphaMask, int alphaShift, int alpha) {
+		int rgbMask = ~alphaMask;
+		int bound = INT.loopBound(length);
+		for(int i=offset; i<offset+bound; i+=INT.length()) {
+			IntVector p = IntVector.fromArray(INT, pixels, i);
+			IntVector a = multiply(p.and(alphaMask).lanewise(VectorOperators.LSHR, alphaShift), IntVector.broadcast(INT, alpha));
+			p.and(rgbMask).or(a.lanewise(VectorOperators.LSHL, alphaShift)).intoArray(pixels, i);
+		}
+		super.multiplyAlpha(pixels, offset+bound, length-bound, alphaMask, alphaShift, alpha);
+	}
+	
+	@Override
+	public void multiplyChannels(int [] pixels, int offset, int length, int alpha) {
+		IntVector a = IntVector.broadcast(INT, alpha);
+		int bound = INT.loopBound(length);
+		for(int i=offset; i<offset+bound; i+=INT.length()) {
+			IntVector p = IntVector.fromArray(INT, pixels, i);
+			multiply(p.and(0xFF), a)
+				.or(multiply(p.lanewise(VectorOperators.LSHR, 8).and(0xFF), a).lanewise(VectorOperators.LSHL, 8))
+				.or(multiply(p.lanewise(VectorOperators.LSHR, 16).and(0xFF), a).lanewise(VectorOperators.LSHL, 16))
+				.or(multiply(p.lanewise(VectorOperators.LSHR, 24), a).lanewise(VectorOperators.LSHL, 24))
+				.intoArray(pixels, i);
+		}
+		super.multiplyChannels(pixels, offset+bound, length-bound, alpha);
+	}
+	
+	@Override
+	public void premultiply(int [] pixels, int offset, int length, PixelFormat format) {
+		int alphaMask = format.getAlphaMask();
+		if(alphaMask == 0) return;
+		int rs = format.getRedShift();
+		int gs = format.getGreenShift();
+		int bs = format.getBlueShift();
+		int as = format.getAlphaShift();
+		int bound = INT.loopBound(length);
+		for(int i=offset; i<offset+bound; i+=INT.length()) {
+			IntVector p = IntVector.fromArray(INT, pixels, i);
+			IntVector a = p.and(alphaMask).lanewise(VectorOperators.LSHR, as);
+			IntVector q = p.and(alphaMask)
+				.or(multiply(p.lanewise(VectorOperators.LSHR, rs).and(0xFF), a).lanewise(VectorOperators.LSHL, rs))
+				.or(multiply(p.lanewise(VectorOperators.LSHR, gs).and(0xFF), a).lanewise(VectorOperators.LSHL, gs))
+				.or(multiply(p.lanewise(VectorOperators.LSHR, bs).and(0xFF), a).lanewise(VectorOperators.LSHL, bs));
+			// opaque pixels are kept as the scalar loop does
+			p.blend(q, a.compare(VectorOperators.NE, 0xFF)).intoArray(pixels, i);
+		}
+		super.premultiply(pixels, offset+bound, length-bound, format);
+	}
+	
+	@Override
+	public void unpremultiply(int [] pixels, int offset, int length, PixelFormat format) {
+		int alphaMask = format.getAlphaMask();
+		if(alphaMask == 0) return;
+		int rs = format.getRedShift();
+		int gs = format.getGreenShift();
+		int bs = format.getBlueShift();
+		int as = format.getAlphaShift();
+		int bound = INT.loopBound(length);
+		for(int i=offset; i<offset+bound; i+=INT.length()) {
+			IntVector p = IntVector.fromArray(INT, pixels, i);
+			IntVector a = p.and(alphaMask).lanewise(VectorOperators.LSHR, as);
+			FloatVector divisor = (FloatVector)a.convert(VectorOperators.I2F, 0);
+			IntVector half = a.lanewise(VectorOperators.LSHR, 1);
+			IntVector q = p.and(alphaMask)
+				.or(divide(p.lanewise(VectorOperators.LSHR, rs).and(0xFF), half, divisor).lanewise(VectorOperators.LSHL, rs))
+				.or(divide(p.lanewise(VectorOperators.LSHR, gs).and(0xFF), half, divisor).lanewise(VectorOperators.LSHL, gs))
+				.or(divide(p.lanewise(VectorOperators.LSHR, bs).and(0xFF), half, divisor).lanewise(VectorOperators.LSHL, bs));
+			// transparent pixels have black colors, and opaque pixels are kept as the scalar loop does
+			q = q.blend(p.and(alphaMask), a.compare(VectorOperators.EQ, 0));
+			p.blend(q, a.compare(VectorOperators.NE, 0xFF)).intoArray(pixels, i);
+		}
+		super.unpremultiply(pixels, offset+bound, length-bound, format);
+	}
+	
+	@Override
+	public void orChannel(byte [] source, int sourceOffset, int [] pixels, int offset, int length, int shift) {
+		int bound = BYTE.loopBound(length);
+		for(int i=0; i<bound; i+=BYTE.length()) {
+			ByteVector b = ByteVector.fromArray(BYTE, source, sourceOffset+i);
+			for(int part=0; part<PARTS; part++) {
+				int index = offset + i + part*INT.length();
+				IntVector.fromArray(INT, pixels, index)
+					.or(expand(b, part).lanewise(VectorOperators.LSHL, shift))
+					.intoArray(pixels, index);
+			}
+		}
+		super.orChannel(source, sourceOffset+bound, pixels, offset+bound, length-bound, shift);
+	}
+	
+	@Override
+	public void packChannels(byte [] red, byte [] green, byte [] blue, byte [] alpha, int sourceOffset, int [] pixels, int offset, int length, PixelFormat format) {
+		int rs = format.getRedShift();
+		int gs = format.getGreenShift();
+		int bs = format.getBlueShift();
+		int as = format.getAlphaShift();
+		// bits of the missing planes
+		int constant = (alpha == null) ? 0xFF << as : 0;
+		int bound = BYTE.loopBound(length);
+		for(int i=0; i<bound; i+=BYTE.length()) {
+			int j = sourceOffset+i;
+			ByteVector r = (red != null) ? ByteVector.fromArray(BYTE, red, j) : null;
+			ByteVector g = (green != null) ? ByteVector.fromArray(BYTE, green, j) : null;
+			ByteVector b = (blue != null) ? ByteVector.fromArray(BYTE, blue, j) : null;
+			ByteVector a = (alpha != null) ? ByteVector.fromArray(BYTE, alpha, j) : null;
+			for(int part=0; part<PARTS; part++) {
+				IntVector p = IntVector.broadcast(INT, constant);
+				if(r != null) p = p.or(expand(r, part).lanewise(VectorOperators.LSHL, rs));
+				if(g != null) p = p.or(expand(g, part).lanewise(VectorOperators.LSHL, gs));
+				if(b != null) p = p.or(expand(b, part).lanewise(VectorOperators.LSHL, bs));
+				if(a != null) p = p.or(expand(a, part).lanewise(VectorOperators.LSHL, as));
+				p.intoArray(pixels, offset + i + part*INT.length());
+			}
+		}
+		super.packChannels(red, green, blue, alpha, sourceOffset+bound, pixels, offset+bound, length-bound, format);
+	}
+	
+	@Override
+	public void expandBGR(byte [] source, int sourceOffset, int [] pixels, int offset, int length, PixelFormat format) {
+		int rs = format.getRedShift();
+		int gs = format.getGreenShift();
+		int bs = format.getBlueShift();
+		int alpha = 0xFF << format.getAlphaShift();
+		boolean bgrx = (rs == 16 && gs == 8 && bs == 0);
+		// each step loads BYTE.length() bytes for 3*INT.length() bytes of BGR
+		int count = INT.length();
+		int bound = 0;
+		while(bound + count <= length && sourceOffset + 3*bound + BYTE.length() <= source.length) {
+			IntVector p = ByteVector.fromArray(BYTE, source, sourceOffset+3*bound)
+				.rearrange(BGR_SHUFFLE)
+				.reinterpretAsInts()
+				.and(0x00FFFFFF);
+			if(!bgrx) {
+				p = p.and(0xFF).lanewise(VectorOperators.LSHL, bs)
+					.or(p.lanewise(VectorOperators.LSHR, 8).and(0xFF).lanewise(VectorOperators.LSHL, gs))
+					.or(p.lanewise(VectorOperators.LSHR, 16).lanewise(VectorOperators.LSHL, rs));
+			}
+			p.or(alpha).intoArray(pixels, offset+bound);
+			bound += count;
+		}
+		super.expandBGR(source, sourceOffset+3*bound, pixels, offset+bound, length-bound, format);
+	}
+	
+	// (c*a + 127) / 255 of the 8-bit channels, the same as the table of the scalar loops
+	private static IntVector multiply(IntVector c, IntVector a) {
+		IntVector t = c.mul(a).add(127);
+		return t.add(t.lanewise(VectorOperators.LSHR, 8)).add(1).lanewise(VectorOperators.LSHR, 8);
+	}
+	
+	// min(255, (c*255 + a/2) / a) of the 8-bit channels; a float quotient below 256 truncates to the same integer
+	private static IntVector divide(IntVector c, IntVector half, FloatVector a) {
+		FloatVector n = (FloatVector)c.mul(255).add(half).convert(VectorOperators.I2F, 0);
+		return ((IntVector)n.div(a).convert(VectorOperators.F2I, 0)).min(255);
+	}
+	
+	// unsigned bytes of a part of the byte vector
+	private static IntVector expand(ByteVector bytes, int part) {
+		return ((IntVector)bytes.convertShape(VectorOperators.B2I, INT, part)).and(0xFF);
+	}
+	
+	private static final VectorSpecies<Integer> INT = IntVector.SPECIES_PREFERRED;
+	
+	// bytes of the same shape as INT, which hold 4 parts of INT.length() lanes
+	private static final VectorSpecies<Byte> BYTE = VectorSpecies.of(byte.class, INT.vectorShape());
+	private static final int PARTS = BYTE.length() / INT.length();
+	
+	// B, G, R of pixel k to bytes 4k, 4k+1, 4k+2 (little-endian ints); byte 4k+3 is masked out
+	private static final VectorShuffle<Byte> BGR_SHUFFLE = VectorShuffle.fromOp(BYTE, new IntUnaryOperator() {
+		@Override
+		public int applyAsInt(int i) {
+			return 3*(i/4) + Math.min(i%4, 2);
+		}
+	});
+	
+}
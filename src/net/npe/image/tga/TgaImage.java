@@ -17,8 +17,12 @@ package net.npe.image.tga;
 
 import java.io.IOException;
 
+import net.npe.image.AlphaInfo;
 import net.npe.image.PixelFormat;
 import net.npe.image.PixelImage;
+import net.npe.image.PixelStorage;
+import net.npe.io.ByteArrayReader;
+import net.npe.io.InputReader;
 
 public class TgaImage extends PixelImage {
 	
@@ -29,8 +33,40 @@ public class TgaImage extends PixelImage {
 		 // offset is not yet supported
 		this.width = TgaReader.getWidth(buffer);
 		this.height = TgaReader.getHeight(buffer);
-		this.pixels = TgaReader.read(buffer, format);
+		ByteArrayReader reader = new ByteArrayReader(buffer, TgaReader.HEADER_SIZE, InputReader.LittleEndian);
+		AlphaInfo.Builder alpha = new AlphaInfo.Builder(format);
+		this.pixels = TgaReader.read(buffer, reader, format, PixelStorage.HEAP, alpha).getArray();
 		this.format = format;
+		setAlphaInfo(alpha.build(width, height));
 	}
-
+	
+	public void read(InputReader reader, PixelFormat format) throws IOException {
+		byte [] header = new byte[TgaReader.HEADER_SIZE];
+		reader.read(header, 0, header.length);
+		this.width = TgaReader.getWidth(header);
+		this.height = TgaReader.getHeight(header);
+		AlphaInfo.Builder alpha = new AlphaInfo.Builder(format);
+		this.pixels = TgaReader.read(header, reader, format, PixelStorage.HEAP, alpha).getArray();
+		this.format = format;
+		setAlphaInfo(alpha.build(width, height));
+	}
+	
+	/**
+	 * read a TGA image into a storage allocated by the allocator.
+	 * @param reader input reader
+	 * @param format pixel format
+	 * @param allocator allocator of the storage (e.g. DirectPixelStorage.ALLOCATOR)
+	 * @throws IOException I/O exception
+	 */
+	public void read(InputReader reader, PixelFormat format, PixelStorage.Allocator allocator) throws IOException {
+		byte [] header = new byte[TgaReader.HEADER_SIZE];
+		reader.read(header, 0, header.length);
+		this.width = TgaReader.getWidth(header);
+		this.height = TgaReader.getHeight(header);
+		AlphaInfo.Builder alpha = new AlphaInfo.Builder(format);
+		setStorage(TgaReader.read(header, reader, format, allocator, alpha));
+		this.format = format;
+		setAlphaInfo(alpha.build(width, height));
+	}
+	
 }
@@ -17,7 +17,13 @@ package net.npe.image.tga;
 
 import java.io.IOException;
 
+import net.npe.image.AlphaInfo;
+import net.npe.image.BufferPool;
 import net.npe.image.PixelFormat;
+import net.npe.image.PixelKernels;
+import net.npe.image.PixelStorage;
+import net.npe.io.ByteArrayReader;
+import net.npe.io.InputReader;
 
 public final class TgaReader {
 	
@@ -30,502 +36,348 @@ public final class TgaReader {
 	}
 	
 	public static int [] read(byte [] buffer, PixelFormat format) throws IOException {
+		ByteArrayReader reader = new ByteArrayReader(buffer, HEADER_SIZE, InputReader.LittleEndian);
+		return read(buffer, reader, format);
+	}
+	
+	/**
+	 * read pixels into an int array of the caller.
+	 * @param buffer TGA file
+	 * @param format pixel format
+	 * @param pixels destination of width*height or more pixels
+	 * @return pixels
+	 * @throws IOException I/O exception
+	 */
+	public static int [] read(byte [] buffer, PixelFormat format, int [] pixels) throws IOException {
+		ByteArrayReader reader = new ByteArrayReader(buffer, HEADER_SIZE, InputReader.LittleEndian);
+		return read(buffer, reader, format, pixels);
+	}
+	
+	/**
+	 * read pixels from the reader without copying the whole file into a byte array.
+	 * The image data is decoded one scanline at a time.
+	 * @param header TGA header (HEADER_SIZE bytes) already read from the reader
+	 * @param reader input reader positioned at the end of the header
+	 * @param format pixel format
+	 * @return pixels
+	 * @throws IOException I/O exception
+	 */
+	public static int [] read(byte [] header, InputReader reader, PixelFormat format) throws IOException {
+		return read(header, reader, format, PixelStorage.HEAP).getArray();
+	}
+	
+	/**
+	 * read pixels from the reader into an int array of the caller.
+	 * @param header TGA header (HEADER_SIZE bytes) already read from the reader
+	 * @param reader input reader positioned at the end of the header
+	 * @param format pixel format
+	 * @param pixels destination of width*height or more pixels
+	 * @return pixels
+	 * @throws IOException I/O exception
+	 */
+	public static int [] read(byte [] header, InputReader reader, PixelFormat format, int [] pixels) throws IOException {
+		read(header, reader, format, PixelStorage.allocator(PixelStorage.wrap(pixels)));
+		return pixels;
+	}
+	
+	/**
+	 * read pixels from the reader into a storage.
+	 * When the storage is not an int array, each scanline is decoded into an int line buffer and copied to the storage.
+	 * @param header TGA header (HEADER_SIZE bytes) already read from the reader
+	 * @param reader input reader positioned at the end of the header
+	 * @param format pixel format
+	 * @param allocator allocator of the storage
+	 * @return storage of width*height pixels
+	 * @throws IOException I/O exception
+	 */
+	public static PixelStorage read(byte [] header, InputReader reader, PixelFormat format, PixelStorage.Allocator allocator) throws IOException {
+		return read(header, reader, format, allocator, null);
+	}
+	
+	// read pixels into a storage and record their alpha to the builder (or null)
+	static PixelStorage read(byte [] header, InputReader reader, PixelFormat format, PixelStorage.Allocator allocator, AlphaInfo.Builder alpha) throws IOException {
+		PixelStorage storage = allocator.allocate(getWidth(header)*getHeight(header), format);
+		decode(header, reader, format, storage, alpha);
+		return storage;
+	}
+	
+	/**
+	 * read pixels into a byte array of the byte format.
+	 * @param buffer TGA file
+	 * @param format byte pixel format (e.g. PixelFormat.RGBA8888)
+	 * @return bytes of width*height*format.getBytesPerPixel()
+	 * @throws IOException I/O exception
+	 */
+	public static byte [] readBytes(byte [] buffer, PixelFormat format) throws IOException {
+		ByteArrayReader reader = new ByteArrayReader(buffer, HEADER_SIZE, InputReader.LittleEndian);
+		return readBytes(buffer, reader, format);
+	}
+	
+	/**
+	 * read pixels from the reader into a byte array of the byte format.
+	 * Each scanline is decoded into an int line buffer and packed by PixelFormat.writeBytes().
+	 * @param header TGA header (HEADER_SIZE bytes) already read from the reader
+	 * @param reader input reader positioned at the end of the header
+	 * @param format byte pixel format (e.g. PixelFormat.RGBA8888)
+	 * @return bytes of width*height*format.getBytesPerPixel()
+	 * @throws IOException I/O exception
+	 */
+	public static byte [] readBytes(byte [] header, InputReader reader, PixelFormat format) throws IOException {
+		byte [] bytes = new byte[getWidth(header)*getHeight(header)*format.getBytesPerPixel()];
+		decode(header, reader, format, PixelStorage.wrap(bytes, format), null);
+		return bytes;
+	}
+	
+	/** TGA header size */
+	public static final int HEADER_SIZE = 18;
+	
+	private static final int COLORMAP = 1;
+	private static final int RGB = 2;
+	private static final int GRAYSCALE = 3;
+	private static final int COLORMAP_RLE = 9;
+	private static final int RGB_RLE = 10;
+	private static final int GRAYSCALE_RLE = 11;
+	private static final int RLE = 8;
+	
+	private static final int RIGHT_ORIGIN = 0x10;
+	private static final int UPPER_ORIGIN = 0x20;
+	
+	// decode into the int array of the storage, or through a line buffer
+	private static void decode(byte [] header, InputReader reader, PixelFormat format, PixelStorage storage, AlphaInfo.Builder alpha) throws IOException {
 		
 		// header
-//		int idFieldLength = buffer[0] & 0xFF;
-//		int colormapType = buffer[1] & 0xFF;
-		int type = buffer[2] & 0xFF;
-		int colormapOrigin = (buffer[3] & 0xFF) | (buffer[4] & 0xFF) << 8;
-		int colormapLength = (buffer[5] & 0xFF) | (buffer[6] & 0xFF) << 8;
-		int colormapDepth = buffer[7] & 0xFF;
-//		int originX = (buffer[8] & 0xFF) | (buffer[9] & 0xFF) << 8; // unsupported
-//		int originY = (buffer[10] & 0xFF) | (buffer[11] & 0xFF) << 8; // unsupported
-		int width = getWidth(buffer);
-		int height = getHeight(buffer);
-		int depth = buffer[16] & 0xFF;
-		int descriptor = buffer[17] & 0xFF;
-	    
-		int [] pixels = null;
+		int idFieldLength = header[0] & 0xFF;
+		int colormapType = header[1] & 0xFF;
+		int type = header[2] & 0xFF;
+		int colormapOrigin = (header[3] & 0xFF) | (header[4] & 0xFF) << 8;
+		int colormapLength = (header[5] & 0xFF) | (header[6] & 0xFF) << 8;
+		int colormapDepth = header[7] & 0xFF;
+//		int originX = (header[8] & 0xFF) | (header[9] & 0xFF) << 8; // unsupported
+//		int originY = (header[10] & 0xFF) | (header[11] & 0xFF) << 8; // unsupported
+		int width = getWidth(header);
+		int height = getHeight(header);
+		int depth = header[16] & 0xFF;
+		int descriptor = header[17] & 0xFF;
 		
-		// data
+		// check pixel depth
+		int colorDepth;
 		switch(type) {
-		case COLORMAP: {
-			int imageDataOffset = 18 + (colormapDepth / 8) * colormapLength;
-			pixels = createPixelsFromColormap(width, height, colormapDepth, buffer, imageDataOffset, buffer, colormapOrigin, descriptor, format);
-			} break;
+		case COLORMAP:
+		case COLORMAP_RLE:
+			colorDepth = colormapDepth;
+			if(depth != 8) throw new IOException("Unsupported depth:"+depth);
+			if(colorDepth != 24 && colorDepth != 32) throw new IOException("Unsupported depth:"+colorDepth);
+			break;
 		case RGB:
-			pixels = createPixelsFromRGB(width, height, depth, buffer, 18, descriptor, format);
+		case RGB_RLE:
+			colorDepth = depth;
+			if(colorDepth != 24 && colorDepth != 32) throw new IOException("Unsupported depth:"+colorDepth);
 			break;
 		case GRAYSCALE:
-			pixels = createPixelsFromGrayscale(width, height, depth, buffer, 18, descriptor, format);
+		case GRAYSCALE_RLE:
+			colorDepth = depth;
+			if(colorDepth != 8 && colorDepth != 16) throw new IOException("Unsupported depth:"+colorDepth);
 			break;
-		case COLORMAP_RLE: {
-			int imageDataOffset = 18 + (colormapDepth / 8) * colormapLength;
-			byte [] decodeBuffer = decodeRLE(width, height, depth, buffer, imageDataOffset);
-			pixels = createPixelsFromColormap(width, height, colormapDepth, decodeBuffer, 0, buffer, colormapOrigin, descriptor, format);
-			} break;
-		case RGB_RLE: {
-			byte [] decodeBuffer = decodeRLE(width, height, depth, buffer, 18);
-			pixels = createPixelsFromRGB(width, height, depth, decodeBuffer, 0, descriptor, format);
-			} break;
-		case GRAYSCALE_RLE: {
-			byte [] decodeBuffer = decodeRLE(width, height, depth, buffer, 18);
-			pixels = createPixelsFromGrayscale(width, height, depth, decodeBuffer, 0, descriptor, format);
-			} break;
 		default:
 			throw new IOException("Unsupported image type: "+type);
 		}
 		
-		return pixels;
+		// image id
+		reader.skip(idFieldLength);
+		
+		// colormap
+		byte [] palette = null;
+		if(colormapType != 0) {
+			palette = new byte[(colormapDepth / 8) * colormapLength];
+			reader.read(palette, 0, palette.length);
+		}
+		
+		// data
+		BufferPool pool = BufferPool.getDefault();
+		int elementCount = depth / 8;
+		int rowLength = elementCount * width;
+		byte [] row = pool.getBytes(rowLength);
+		RunLengthDecoder decoder = (type & RLE) != 0 ? new RunLengthDecoder(reader, elementCount) : null;
+		int [] pixels = storage.getArray();
+		int [] line = (pixels == null) ? pool.getInts(width) : null;
+		PixelKernels kernels = PixelKernels.getDefault();
+		boolean opaque = (colorDepth == 24 || colorDepth == 8);
+		
+		for(int i=0; i<height; i++) {
+			
+			if(decoder != null) {
+				decoder.decode(row, rowLength);
+			}
+			else {
+				reader.read(row, 0, rowLength);
+			}
+			
+			// destination of the scanline
+			int y = ((descriptor & UPPER_ORIGIN) != 0) ? i : height-i-1;
+			int [] out = (pixels != null) ? pixels : line;
+			int index = (pixels != null) ? width * y : 0;
+			int step = 1;
+			if((descriptor & RIGHT_ORIGIN) != 0) {
+				index += width-1;
+				step = -1;
+			}
+			
+			switch(type & ~RLE) {
+			case COLORMAP:
+				readColormap(row, width, colorDepth, palette, colormapOrigin, out, index, step, format);
+				break;
+			case RGB:
+				readRGB(row, width, colorDepth, out, index, step, format);
+				break;
+			case GRAYSCALE:
+				readGrayscale(row, width, colorDepth, out, index, step, format);
+				break;
+			}
+			
+			if(format.isPremultiplied()) {
+				kernels.premultiply(out, (pixels != null) ? width*y : 0, width, format);
+			}
+			
+			if(alpha != null) {
+				if(opaque) {
+					alpha.addOpaque(width, y, 1);
+				}
+				else {
+					alpha.add(out, (pixels != null) ? width*y : 0, width, y);
+				}
+			}
+			
+			if(pixels == null) {
+				storage.set(width*y, line, 0, width);
+			}
+			
+		}
+		
+		pool.release(row);
+		pool.release(line);
 		
 	}
 	
-	private static final int COLORMAP = 1;
-	private static final int RGB = 2;
-	private static final int GRAYSCALE = 3;
-	private static final int COLORMAP_RLE = 9;
-	private static final int RGB_RLE = 10;
-	private static final int GRAYSCALE_RLE = 11;
-	
-	private static final int RIGHT_ORIGIN = 0x10;
-	private static final int UPPER_ORIGIN = 0x20;
-	
-	private static byte [] decodeRLE(int width, int height, int depth, byte [] buffer, int offset) {
-		int elementCount = depth/8;
-		byte [] elements = new byte[elementCount];
-		int decodeBufferLength = elementCount * width * height;
-		byte [] decodeBuffer = new byte[decodeBufferLength];
-		int decoded = 0;
-		while(decoded < decodeBufferLength) {
-			int packet = buffer[offset++] & 0xFF;
-			if((packet & 0x80) != 0) { // RLE
-				for(int i=0; i<elementCount; i++) {
-					elements[i] = buffer[offset++];
+	private static final class RunLengthDecoder {
+		
+		RunLengthDecoder(InputReader reader, int elementCount) {
+			this.reader = reader;
+			this.elementCount = elementCount;
+			this.elements = new byte[elementCount];
+		}
+		
+		// packets may run across scanlines, so the current packet is kept between calls.
+		void decode(byte [] outBuffer, int length) throws IOException {
+			int decoded = 0;
+			while(decoded < length) {
+				if(count == 0) {
+					int packet = reader.read();
+					repeating = (packet & 0x80) != 0;
+					count = (packet & 0x7F) + 1;
+					if(repeating) reader.read(elements, 0, elementCount);
 				}
-				int count = (packet&0x7F)+1;
-				for(int i=0; i<count; i++) {
-					for(int j=0; j<elementCount; j++) {
-						decodeBuffer[decoded++] = elements[j];
+				int n = Math.min(count, (length-decoded) / elementCount);
+				if(repeating) { // RLE
+					for(int i=0; i<n; i++) {
+						for(int j=0; j<elementCount; j++) {
+							outBuffer[decoded++] = elements[j];
+						}
 					}
 				}
-			}
-			else { // RAW
-				int count = (packet+1) * elementCount;
-				for(int i=0; i<count; i++) {
-					decodeBuffer[decoded++] = buffer[offset++];
+				else { // RAW
+					reader.read(outBuffer, decoded, n * elementCount);
+					decoded += n * elementCount;
 				}
+				count -= n;
 			}
 		}
-		return decodeBuffer;
+		
+		private InputReader reader;
+		private int elementCount;
+		private byte [] elements;
+		private boolean repeating;
+		private int count;
+		
 	}
 	
-	private static int [] createPixelsFromColormap(int width, int height, int depth, byte [] bytes, int offset, byte [] palette, int colormapOrigin, int descriptor, PixelFormat format) throws IOException {
-		int [] pixels = null;
+	private static void readColormap(byte [] bytes, int width, int depth, byte [] palette, int colormapOrigin, int [] pixels, int index, int step, PixelFormat format) {
 		int rs = format.getRedShift();
 		int gs = format.getGreenShift();
 		int bs = format.getBlueShift();
 		int as = format.getAlphaShift();
-		switch(depth) {
-		case 24:
-			pixels = new int[width*height];
-			if((descriptor & RIGHT_ORIGIN) != 0) {
-				if((descriptor & UPPER_ORIGIN) != 0) {
-					// UpperRight
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int colormapIndex = bytes[offset+width*i+j] & 0xFF - colormapOrigin;
-							int color = 0xFFFFFFFF;
-							if(colormapIndex >= 0) {
-								int index = 3*colormapIndex+18;
-								int b = palette[index+0] & 0xFF;
-								int g = palette[index+1] & 0xFF;
-								int r = palette[index+2] & 0xFF;
-								int a = 0xFF;
-								color = (r<<rs) | (g<<gs) | (b<<bs) | (a<<as);
-							}
-							pixels[width*i+(width-j-1)] = color;
-						}
-					}
-				}
-				else {
-					// LowerRight
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int colormapIndex = bytes[offset+width*i+j] & 0xFF - colormapOrigin;
-							int color = 0xFFFFFFFF;
-							if(colormapIndex >= 0) {
-								int index = 3*colormapIndex+18;
-								int b = palette[index+0] & 0xFF;
-								int g = palette[index+1] & 0xFF;
-								int r = palette[index+2] & 0xFF;
-								int a = 0xFF;
-								color = (r<<rs) | (g<<gs) | (b<<bs) | (a<<as);
-							}
-							pixels[width*(height-i-1)+(width-j-1)] = color;
-						}
-					}
-				}
-			}
-			else {
-				if((descriptor & UPPER_ORIGIN) != 0) {
-					// UpperLeft
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int colormapIndex = bytes[offset+width*i+j] & 0xFF - colormapOrigin;
-							int color = 0xFFFFFFFF;
-							if(colormapIndex >= 0) {
-								int index = 3*colormapIndex+18;
-								int b = palette[index+0] & 0xFF;
-								int g = palette[index+1] & 0xFF;
-								int r = palette[index+2] & 0xFF;
-								int a = 0xFF;
-								color = (r<<rs) | (g<<gs) | (b<<bs) | (a<<as);
-							}
-							pixels[width*i+j] = color;
-						}
-					}
-				}
-				else {
-					// LowerLeft
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int colormapIndex = bytes[offset+width*i+j] & 0xFF - colormapOrigin;
-							int color = 0xFFFFFFFF;
-							if(colormapIndex >= 0) {
-								int index = 3*colormapIndex+18;
-								int b = palette[index+0] & 0xFF;
-								int g = palette[index+1] & 0xFF;
-								int r = palette[index+2] & 0xFF;
-								int a = 0xFF;
-								color = (r<<rs) | (g<<gs) | (b<<bs) | (a<<as);
-							}
-							pixels[width*(height-i-1)+j] = color;
-						}
-					}
-				}
-			}
-			break;
-		case 32:
-			pixels = new int[width*height];
-			if((descriptor & RIGHT_ORIGIN) != 0) {
-				if((descriptor & UPPER_ORIGIN) != 0) {
-					// UpperRight
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int colormapIndex = bytes[offset+width*i+j] & 0xFF - colormapOrigin;
-							int color = 0xFFFFFFFF;
-							if(colormapIndex >= 0) {
-								int index = 4*colormapIndex+18;
-								int b = palette[index+0] & 0xFF;
-								int g = palette[index+1] & 0xFF;
-								int r = palette[index+2] & 0xFF;
-								int a = palette[index+3] & 0xFF;
-								color = (r<<rs) | (g<<gs) | (b<<bs) | (a<<as);
-							}
-							pixels[width*i+(width-j-1)] = color;
-						}
-					}
-				}
-				else {
-					// LowerRight
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int colormapIndex = bytes[offset+width*i+j] & 0xFF - colormapOrigin;
-							int color = 0xFFFFFFFF;
-							if(colormapIndex >= 0) {
-								int index = 4*colormapIndex+18;
-								int b = palette[index+0] & 0xFF;
-								int g = palette[index+1] & 0xFF;
-								int r = palette[index+2] & 0xFF;
-								int a = palette[index+3] & 0xFF;
-								color = (r<<rs) | (g<<gs) | (b<<bs) | (a<<as);
-							}
-							pixels[width*(height-i-1)+(width-j-1)] = color;
-						}
-					}
-				}
+		int elementCount = depth / 8;
+		for(int j=0; j<width; j++) {
+			int colormapIndex = (bytes[j] & 0xFF) - colormapOrigin;
+			int color = 0xFFFFFFFF;
+			if(colormapIndex >= 0) {
+				int offset = elementCount*colormapIndex;
+				int b = palette[offset+0] & 0xFF;
+				int g = palette[offset+1] & 0xFF;
+				int r = palette[offset+2] & 0xFF;
+				int a = (depth == 32) ? palette[offset+3] & 0xFF : 0xFF;
+				color = (r<<rs) | (g<<gs) | (b<<bs) | (a<<as);
 			}
-			else {
-				if((descriptor & UPPER_ORIGIN) != 0) {
-					// UpperLeft
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int colormapIndex = bytes[offset+width*i+j] & 0xFF - colormapOrigin;
-							int color = 0xFFFFFFFF;
-							if(colormapIndex >= 0) {
-								int index = 4*colormapIndex+18;
-								int b = palette[index+0] & 0xFF;
-								int g = palette[index+1] & 0xFF;
-								int r = palette[index+2] & 0xFF;
-								int a = palette[index+3] & 0xFF;
-								color = (r<<rs) | (g<<gs) | (b<<bs) | (a<<as);
-							}
-							pixels[width*i+j] = color;
-						}
-					}
-				}
-				else {
-					// LowerLeft
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int colormapIndex = bytes[offset+width*i+j] & 0xFF - colormapOrigin;
-							int color = 0xFFFFFFFF;
-							if(colormapIndex >= 0) {
-								int index = 4*colormapIndex+18;
-								int b = palette[index+0] & 0xFF;
-								int g = palette[index+1] & 0xFF;
-								int r = palette[index+2] & 0xFF;
-								int a = palette[index+3] & 0xFF;
-								color = (r<<rs) | (g<<gs) | (b<<bs) | (a<<as);
-							}
-							pixels[width*(height-i-1)+j] = color;
-						}
-					}
-				}
-			}
-			break;
-		default:
-			throw new IOException("Unsupported depth:"+depth);
+			pixels[index] = color;
+			index += step;
 		}
-		return pixels;
 	}
 	
-	private static int [] createPixelsFromRGB(int width, int height, int depth, byte [] bytes, int offset, int descriptor, PixelFormat format) throws IOException {
-		int [] pixels = null;
+	private static void readRGB(byte [] bytes, int width, int depth, int [] pixels, int index, int step, PixelFormat format) {
 		int rs = format.getRedShift();
 		int gs = format.getGreenShift();
 		int bs = format.getBlueShift();
 		int as = format.getAlphaShift();
 		switch(depth) {
 		case 24:
-			pixels = new int[width*height];
-			if((descriptor & RIGHT_ORIGIN) != 0) {
-				if((descriptor & UPPER_ORIGIN) != 0) {
-					// UpperRight
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int index = offset+3*width*i+3*j;
-							int b = bytes[index+0] & 0xFF;
-							int g = bytes[index+1] & 0xFF;
-							int r = bytes[index+2] & 0xFF;
-							int a = 0xFF;
-							pixels[width*i+(width-j-1)] = (r<<rs) | (g<<gs) | (b<<bs) | (a<<as);
-						}
-					}
-				}
-				else {
-					// LowerRight
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int index = offset+3*width*i+3*j;
-							int b = bytes[index+0] & 0xFF;
-							int g = bytes[index+1] & 0xFF;
-							int r = bytes[index+2] & 0xFF;
-							int a = 0xFF;
-							pixels[width*(height-i-1)+(width-j-1)] = (r<<rs) | (g<<gs) | (b<<bs) | (a<<as);
-						}
-					}
-				}
+			if(step == 1) {
+				PixelKernels.getDefault().expandBGR(bytes, 0, pixels, index, width, format);
+				break;
 			}
-			else {
-				if((descriptor & UPPER_ORIGIN) != 0) {
-					// UpperLeft
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int index = offset+3*width*i+3*j;
-							int b = bytes[index+0] & 0xFF;
-							int g = bytes[index+1] & 0xFF;
-							int r = bytes[index+2] & 0xFF;
-							int a = 0xFF;
-							pixels[width*i+j] = (r<<rs) | (g<<gs) | (b<<bs) | (a<<as);
-						}
-					}
-				}
-				else {
-					// LowerLeft
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int index = offset+3*width*i+3*j;
-							int b = bytes[index+0] & 0xFF;
-							int g = bytes[index+1] & 0xFF;
-							int r = bytes[index+2] & 0xFF;
-							int a = 0xFF;
-							pixels[width*(height-i-1)+j] = (r<<rs) | (g<<gs) | (b<<bs) | (a<<as);
-						}
-					}
-				}
+			for(int j=0; j<width; j++) {
+				int b = bytes[3*j+0] & 0xFF;
+				int g = bytes[3*j+1] & 0xFF;
+				int r = bytes[3*j+2] & 0xFF;
+				int a = 0xFF;
+				pixels[index] = (r<<rs) | (g<<gs) | (b<<bs) | (a<<as);
+				index += step;
 			}
 			break;
 		case 32:
-			pixels = new int[width*height];
-			if((descriptor & RIGHT_ORIGIN) != 0) {
-				if((descriptor & UPPER_ORIGIN) != 0) {
-					// UpperRight
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int index = offset+4*width*i+4*j;
-							int b = bytes[index+0] & 0xFF;
-							int g = bytes[index+1] & 0xFF;
-							int r = bytes[index+2] & 0xFF;
-							int a = bytes[index+3] & 0xFF;
-							pixels[width*i+(width-j-1)] = (r<<rs) | (g<<gs) | (b<<bs) | (a<<as);
-						}
-					}
-				}
-				else {
-					// LowerRight
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int index = offset+4*width*i+4*j;
-							int b = bytes[index+0] & 0xFF;
-							int g = bytes[index+1] & 0xFF;
-							int r = bytes[index+2] & 0xFF;
-							int a = bytes[index+3] & 0xFF;
-							pixels[width*(height-i-1)+(width-j-1)] = (r<<rs) | (g<<gs) | (b<<bs) | (a<<as);
-						}
-					}
-				}
-			}
-			else {
-				if((descriptor & UPPER_ORIGIN) != 0) {
-					// UpperLeft
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int index = offset+4*width*i+4*j;
-							int b = bytes[index+0] & 0xFF;
-							int g = bytes[index+1] & 0xFF;
-							int r = bytes[index+2] & 0xFF;
-							int a = bytes[index+3] & 0xFF;
-							pixels[width*i+j] = (r<<rs) | (g<<gs) | (b<<bs) | (a<<as);
-						}
-					}
-				}
-				else {
-					// LowerLeft
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int index = offset+4*width*i+4*j;
-							int b = bytes[index+0] & 0xFF;
-							int g = bytes[index+1] & 0xFF;
-							int r = bytes[index+2] & 0xFF;
-							int a = bytes[index+3] & 0xFF;
-							pixels[width*(height-i-1)+j] = (r<<rs) | (g<<gs) | (b<<bs) | (a<<as);
-						}
-					}
-				}
+			for(int j=0; j<width; j++) {
+				int b = bytes[4*j+0] & 0xFF;
+				int g = bytes[4*j+1] & 0xFF;
+				int r = bytes[4*j+2] & 0xFF;
+				int a = bytes[4*j+3] & 0xFF;
+				pixels[index] = (r<<rs) | (g<<gs) | (b<<bs) | (a<<as);
+				index += step;
 			}
 			break;
-		default:
-			throw new IOException("Unsupported depth:"+depth);
 		}
-		return pixels;
 	}
 	
-	private static int [] createPixelsFromGrayscale(int width, int height, int depth, byte [] bytes, int offset, int descriptor, PixelFormat format) throws IOException {
-		int [] pixels = null;
+	private static void readGrayscale(byte [] bytes, int width, int depth, int [] pixels, int index, int step, PixelFormat format) {
 		int rs = format.getRedShift();
 		int gs = format.getGreenShift();
 		int bs = format.getBlueShift();
 		int as = format.getAlphaShift();
 		switch(depth) {
 		case 8:
-			pixels = new int[width*height];
-			if((descriptor & RIGHT_ORIGIN) != 0) {
-				if((descriptor & UPPER_ORIGIN) != 0) {
-					// UpperRight
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int e = bytes[offset+width*i+j] & 0xFF;
-							int a = 0xFF;
-							pixels[width*i+(width-j-1)] = (e<<rs) | (e<<gs) | (e<<bs) | (a<<as);
-						}
-					}
-				}
-				else {
-					// LowerRight
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int e = bytes[offset+width*i+j] & 0xFF;
-							int a = 0xFF;
-							pixels[width*(height-i-1)+(width-j-1)] = (e<<rs) | (e<<gs) | (e<<bs) | (a<<as);
-						}
-					}
-				}
-			}
-			else {
-				if((descriptor & UPPER_ORIGIN) != 0) {
-					// UpperLeft
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int e = bytes[offset+width*i+j] & 0xFF;
-							int a = 0xFF;
-							pixels[width*i+j] = (e<<rs) | (e<<gs) | (e<<bs) | (a<<as);
-						}
-					}
-				}
-				else {
-					// LowerLeft
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int e = bytes[offset+width*i+j] & 0xFF;
-							int a = 0xFF;
-							pixels[width*(height-i-1)+j] = (e<<rs) | (e<<gs) | (e<<bs) | (a<<as);
-						}
-					}
-				}
+			for(int j=0; j<width; j++) {
+				int e = bytes[j] & 0xFF;
+				int a = 0xFF;
+				pixels[index] = (e<<rs) | (e<<gs) | (e<<bs) | (a<<as);
+				index += step;
 			}
 			break;
 		case 16:
-			pixels = new int[width*height];
-			if((descriptor & RIGHT_ORIGIN) != 0) {
-				if((descriptor & UPPER_ORIGIN) != 0) {
-					// UpperRight
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int e = bytes[offset+2*width*i+2*j+0] & 0xFF;
-							int a = bytes[offset+2*width*i+2*j+1] & 0xFF;
-							pixels[width*i+(width-j-1)] = (e<<rs) | (e<<gs) | (e<<bs) | (a<<as);
-						}
-					}
-				}
-				else {
-					// LowerRight
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int e = bytes[offset+2*width*i+2*j+0] & 0xFF;
-							int a = bytes[offset+2*width*i+2*j+1] & 0xFF;
-							pixels[width*(height-i-1)+(width-j-1)] = (e<<rs) | (e<<gs) | (e<<bs) | (a<<as);
-						}
-					}
-				}
-			}
-			else {
-				if((descriptor & UPPER_ORIGIN) != 0) {
-					// UpperLeft
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int e = bytes[offset+2*width*i+2*j+0] & 0xFF;
-							int a = bytes[offset+2*width*i+2*j+1] & 0xFF;
-							pixels[width*i+j] = (e<<rs) | (e<<gs) | (e<<bs) | (a<<as);
-						}
-					}
-				}
-				else {
-					// LowerLeft
-					for(int i=0; i<height; i++) {
-						for(int j=0; j<width; j++) {
-							int e = bytes[offset+2*width*i+2*j+0] & 0xFF;
-							int a = bytes[offset+2*width*i+2*j+1] & 0xFF;
-							pixels[width*(height-i-1)+j] = (e<<rs) | (e<<gs) | (e<<bs) | (a<<as);
-						}
-					}
-				}
+			for(int j=0; j<width; j++) {
+				int e = bytes[2*j+0] & 0xFF;
+				int a = bytes[2*j+1] & 0xFF;
+				pixels[index] = (e<<rs) | (e<<gs) | (e<<bs) | (a<<as);
+				index += step;
 			}
 			break;
-		default:
-			throw new IOException("Unsupported depth:"+depth);
 		}
-		return pixels;
 	}
 	
 	private TgaReader() {}
@@ -15,7 +15,13 @@
 
 package net.npe.image.tga;
 
+import java.io.IOException;
+
+import net.npe.image.AlphaInfo;
 import net.npe.image.PixelFormat;
+import net.npe.image.PixelFormatConverter;
+import net.npe.io.ByteArrayWriter;
+import net.npe.io.OutputWriter;
 
 public class TgaWriter {
 	
@@ -28,232 +34,344 @@ public class TgaWriter {
 	public static byte [] write(int [] pixels, int width, int height, PixelFormat format) {
 		return write(pixels, width, height, format, EncodeType.AUTO);
 	}
-
+	
 	public static byte [] write(int [] pixels, int width, int height, PixelFormat format, EncodeType encodeType) {
+		return write(pixels, 0, width, width, height, format, encodeType);
+	}
+	
+	/**
+	 * write a TGA image in a part of a pixel array (e.g. PixelImage.subImage()).
+	 * @param pixels pixels
+	 * @param offset index of the top-left pixel
+	 * @param stride number of array elements from a row to the next row
+	 * @param width width
+	 * @param height height
+	 * @param format pixel format
+	 * @param encodeType encode type
+	 * @return TGA image
+	 */
+	public static byte [] write(int [] pixels, int offset, int stride, int width, int height, PixelFormat format, EncodeType encodeType) {
+		return write(pixels, offset, stride, width, height, format, null, encodeType);
+	}
+	
+	/**
+	 * write a TGA image with the alpha info of the pixels (e.g. PixelImage.getAlphaInfo()),
+	 * so the pixels are not scanned for the alpha channel.
+	 * @param pixels pixels
+	 * @param offset index of the top-left pixel
+	 * @param stride number of array elements from a row to the next row
+	 * @param width width
+	 * @param height height
+	 * @param format pixel format
+	 * @param alpha alpha info, or null to scan the pixels
+	 * @param encodeType encode type
+	 * @return TGA image
+	 */
+	public static byte [] write(int [] pixels, int offset, int stride, int width, int height, PixelFormat format, AlphaInfo alpha, EncodeType encodeType) {
+		ByteArrayWriter writer = new ByteArrayWriter(0, OutputWriter.LittleEndian);
+		write(pixels, offset, stride, width, height, format, alpha, encodeType, writer);
+		byte [] buffer = writer.getBuffer();
+		return (buffer.length == writer.getPosition()) ? buffer : writer.toByteArray();
+	}
+	
+	/**
+	 * append a TGA image at the position of the writer.
+	 * @param pixels pixels
+	 * @param width width
+	 * @param height height
+	 * @param format pixel format
+	 * @param encodeType encode type
+	 * @param writer byte array writer, which can be reset and reused for the next image
+	 */
+	public static void write(int [] pixels, int width, int height, PixelFormat format, EncodeType encodeType, ByteArrayWriter writer) {
+		write(pixels, 0, width, width, height, format, encodeType, writer);
+	}
+	
+	/**
+	 * append a TGA image in a part of a pixel array at the position of the writer.
+	 * @param pixels pixels
+	 * @param offset index of the top-left pixel
+	 * @param stride number of array elements from a row to the next row
+	 * @param width width
+	 * @param height height
+	 * @param format pixel format
+	 * @param encodeType encode type
+	 * @param writer byte array writer, which can be reset and reused for the next image
+	 */
+	public static void write(int [] pixels, int offset, int stride, int width, int height, PixelFormat format, EncodeType encodeType, ByteArrayWriter writer) {
+		write(pixels, offset, stride, width, height, format, null, encodeType, writer);
+	}
+	
+	/**
+	 * append a TGA image with the alpha info of the pixels at the position of the writer.
+	 * The RLE data is encoded once, and replaced by the raw data if it is not smaller.
+	 * @param pixels pixels
+	 * @param offset index of the top-left pixel
+	 * @param stride number of array elements from a row to the next row
+	 * @param width width
+	 * @param height height
+	 * @param format pixel format
+	 * @param alpha alpha info, or null to scan the pixels
+	 * @param encodeType encode type
+	 * @param writer byte array writer, which can be reset and reused for the next image
+	 */
+	public static void write(int [] pixels, int offset, int stride, int width, int height, PixelFormat format, AlphaInfo alpha, EncodeType encodeType, ByteArrayWriter writer) {
+		
+		// TGA colors are not premultiplied
+		if(format.isPremultiplied()) {
+			pixels = unpremultiply(pixels, offset, stride, width, height, format);
+			offset = 0;
+			stride = width;
+			format = format.unpremultiplied();
+		}
+		
+		int elementCount = getElementCount(pixels, offset, stride, width, height, format, alpha);
+		int rawSize = elementCount * width * height;
+		
+		int start = writer.getPosition();
+		
+		// raw data always fits, so only a larger RLE output grows the buffer
+		writer.ensureCapacity(start + HEADER_SIZE + rawSize + FOOTER.length);
+		
+		try {
+			
+			writeHeader(width, height, elementCount, false, writer);
+			
+			boolean encoding;
+			
+			switch(encodeType) {
+			case RLE:
+				encoding = encodeRLE(pixels, offset, stride, width, height, elementCount, format, writer, Integer.MAX_VALUE);
+				break;
+			case AUTO:
+				// give up RLE as soon as it is not smaller than raw data
+				encoding = encodeRLE(pixels, offset, stride, width, height, elementCount, format, writer, rawSize);
+				break;
+			default:
+				// raw
+				encoding = false;
+				break;
+			}
+			
+			if(!encoding) {
+				writer.setPosition(start + HEADER_SIZE);
+				writeRaw(pixels, offset, stride, width, height, elementCount, format, writer);
+			}
+			
+			writer.getBuffer()[start+2] = (byte)(encoding ? 10 : 2);
+			
+			// Footer
+			writer.write(FOOTER, 0, FOOTER.length);
+			
+		}
+		catch(IOException e) {
+			// ByteArrayWriter does not throw IOException
+			throw new IllegalStateException(e);
+		}
+		
+	}
+	
+	/**
+	 * write a TGA image with the alpha info of the pixels to the writer, one row or RLE packet at a time.
+	 * The header cannot be updated after the data, so AUTO measures the RLE data before writing it.
+	 * @param pixels pixels
+	 * @param offset index of the top-left pixel
+	 * @param stride number of array elements from a row to the next row
+	 * @param width width
+	 * @param height height
+	 * @param format pixel format
+	 * @param alpha alpha info, or null to scan the pixels
+	 * @param encodeType encode type
+	 * @param writer output writer (e.g. ChannelWriter or StreamWriter)
+	 * @throws IOException I/O exception of the writer
+	 */
+	public static void write(int [] pixels, int offset, int stride, int width, int height, PixelFormat format, AlphaInfo alpha, EncodeType encodeType, OutputWriter writer) throws IOException {
+		
+		if(writer instanceof ByteArrayWriter) {
+			write(pixels, offset, stride, width, height, format, alpha, encodeType, (ByteArrayWriter)writer);
+			return;
+		}
 		
-		int elementCount = hasAlpha(pixels, format) ? 4 : 3;
+		// TGA colors are not premultiplied
+		if(format.isPremultiplied()) {
+			pixels = unpremultiply(pixels, offset, stride, width, height, format);
+			offset = 0;
+			stride = width;
+			format = format.unpremultiplied();
+		}
 		
-		int rawSize = elementCount * pixels.length;
-		int rleSize = getEncodeSize(pixels, width, elementCount);
+		int elementCount = getElementCount(pixels, offset, stride, width, height, format, alpha);
+		int rawSize = elementCount * width * height;
 		
 		boolean encoding;
-		int dataSize;
 		
 		switch(encodeType) {
 		case RLE:
 			encoding = true;
-			dataSize = rleSize;
 			break;
 		case AUTO:
-			encoding = rleSize < rawSize;
-			dataSize = encoding ? rleSize : rawSize;
+			// the RLE packets are only counted
+			encoding = encodeRLE(pixels, offset, stride, width, height, elementCount, format, null, rawSize);
 			break;
 		default:
 			// raw
 			encoding = false;
-			dataSize = rawSize;
 			break;
 		}
 		
-		int length = 18 + FOOTER.length + dataSize;
-		
-		byte [] buffer = new byte[length];
-		
-		int index = 0;
-		
-		// Header
-		buffer[index++] = 0; // idFieldLength
-		buffer[index++] = 0; // colormapType
-		buffer[index++] = (byte)(encoding ? 10 : 2); // RGB or RGB_RLE
-		buffer[index++] = 0; buffer[index++] = 0; // colormapOrigin
-		buffer[index++] = 0; buffer[index++] = 0; // colormapLength
-		buffer[index++] = 0; // colormapDepth
-		buffer[index++] = 0; buffer[index++] = 0; // originX
-		buffer[index++] = 0; buffer[index++] = 0; // originY
-		buffer[index++] = (byte)((width >> 0) & 0xFF); // width
-		buffer[index++] = (byte)((width >> 8) & 0xFF); // width
-		buffer[index++] = (byte)((height >> 0) & 0xFF); // height
-		buffer[index++] = (byte)((height >> 8) & 0xFF); // height
-		buffer[index++] = (byte)(8*elementCount); // depth
-		buffer[index++] = 0x20; // descriptor TODO alpha channel depth
+		writeHeader(width, height, elementCount, encoding, writer);
 		
 		if(encoding) {
-			index = encodeRLE(pixels, width, elementCount, format, buffer, index);
+			encodeRLE(pixels, offset, stride, width, height, elementCount, format, writer, Integer.MAX_VALUE);
 		}
 		else {
-			index = writeRaw(pixels, buffer, index, elementCount, format);
+			writeRaw(pixels, offset, stride, width, height, elementCount, format, writer);
 		}
 		
-		// Copy Footer
-		for(int i=0; i<FOOTER.length; i++) {
-			buffer[index++] = FOOTER[i];
-		}
-
-		return buffer;
+		// Footer
+		writer.write(FOOTER, 0, FOOTER.length);
 		
 	}
 	
-	private static int writeRaw(int [] pixels, byte [] buffer, int index, int elementCount, PixelFormat format) {
+	private static int [] unpremultiply(int [] pixels, int offset, int stride, int width, int height, PixelFormat format) {
+		int [] straight = new int[width*height];
+		PixelFormatConverter converter = PixelFormatConverter.get(format, format.unpremultiplied());
+		for(int y=0; y<height; y++) {
+			converter.convert(pixels, offset+y*stride, straight, y*width, width);
+		}
+		return straight;
+	}
+	
+	private static int getElementCount(int [] pixels, int offset, int stride, int width, int height, PixelFormat format, AlphaInfo alpha) {
+		boolean hasAlpha = (alpha != null) ? !alpha.isOpaque() : hasAlpha(pixels, offset, stride, width, height, format);
+		return hasAlpha ? 4 : 3;
+	}
+	
+	private static void writeHeader(int width, int height, int elementCount, boolean encoding, OutputWriter writer) throws IOException {
+		byte [] header = new byte[HEADER_SIZE];
+		header[2] = (byte)(encoding ? 10 : 2); // RGB or RGB_RLE
+		header[12] = (byte)((width >> 0) & 0xFF); // width
+		header[13] = (byte)((width >> 8) & 0xFF); // width
+		header[14] = (byte)((height >> 0) & 0xFF); // height
+		header[15] = (byte)((height >> 8) & 0xFF); // height
+		header[16] = (byte)(8*elementCount); // depth
+		header[17] = 0x20; // descriptor TODO alpha channel depth
+		writer.write(header, 0, HEADER_SIZE);
+	}
+	
+	private static void writeRaw(int [] pixels, int offset, int stride, int width, int height, int elementCount, PixelFormat format, OutputWriter writer) throws IOException {
 		int redShift = format.getRedShift();
 		int greenShift = format.getGreenShift();
 		int blueShift = format.getBlueShift();
-		if(elementCount == 3) {
-			// BGR
-			for(int i=0; i<pixels.length; i++) {
-				buffer[index++] = (byte)((pixels[i] >> blueShift) & 0xFF);
-				buffer[index++] = (byte)((pixels[i] >> greenShift) & 0xFF);
-				buffer[index++] = (byte)((pixels[i] >> redShift) & 0xFF);
+		int alphaShift = format.getAlphaShift();
+		byte [] row = new byte[elementCount * width];
+		for(int j=0; j<height; j++) {
+			int y = offset + j*stride;
+			int index = 0;
+			if(elementCount == 3) {
+				// BGR
+				for(int i=y; i<y+width; i++) {
+					row[index++] = (byte)((pixels[i] >> blueShift) & 0xFF);
+					row[index++] = (byte)((pixels[i] >> greenShift) & 0xFF);
+					row[index++] = (byte)((pixels[i] >> redShift) & 0xFF);
+				}
 			}
-		}
-		else {
-			// BGRA
-			int alphaShift = format.getAlphaShift();
-			for(int i=0; i<pixels.length; i++) {
-				buffer[index++] = (byte)((pixels[i] >> blueShift) & 0xFF);
-				buffer[index++] = (byte)((pixels[i] >> greenShift) & 0xFF);
-				buffer[index++] = (byte)((pixels[i] >> redShift) & 0xFF);
-				buffer[index++] = (byte)((pixels[i] >> alphaShift) & 0xFF);
+			else {
+				// BGRA
+				for(int i=y; i<y+width; i++) {
+					row[index++] = (byte)((pixels[i] >> blueShift) & 0xFF);
+					row[index++] = (byte)((pixels[i] >> greenShift) & 0xFF);
+					row[index++] = (byte)((pixels[i] >> redShift) & 0xFF);
+					row[index++] = (byte)((pixels[i] >> alphaShift) & 0xFF);
+				}
 			}
+			writer.write(row, 0, index);
 		}
-		return index;
 	}
-
+	
 	private static final int MODE_RESET = 0;
 	private static final int MODE_SELECT = 1;
 	private static final int MODE_SAME_COLOR = 2;
 	private static final int MODE_DIFFERENT_COLOR = 3;
 	
-	private static int getEncodeSize(int [] pixels, int width, int elementCount) {
+	// the packets are only counted when the writer is null, and false is returned as soon as the size reaches the limit
+	private static boolean encodeRLE(int [] pixels, int offset, int stride, int width, int height, int elementCount, PixelFormat format, OutputWriter writer, int limit) throws IOException {
 		
-		int size = 0;
+		byte [] packet = new byte[1 + 128*elementCount];
 		int color = 0;
 		int mode = MODE_RESET;
 		int start = 0;
+		int size = 0;
 		
-		for(int i=0; i<pixels.length; i++) {
-			if(mode == MODE_RESET) {
-				color = pixels[i];
-				mode = MODE_SELECT;
-				start = i;
-			}
-			else if(mode == MODE_SELECT) {
-				mode = (color == pixels[i]) ? MODE_SAME_COLOR : MODE_DIFFERENT_COLOR;
-				color = pixels[i];
-			}
-			else if(mode == MODE_SAME_COLOR) {
-				if(color != pixels[i]) {
-					// packet + rleData
-					size += 1 + elementCount;
-					mode = MODE_SELECT;
+		// packets do not run across scanlines
+		for(int j=0; j<height; j++) {
+			int rowEnd = offset + j*stride + width;
+			for(int i=offset+j*stride; i<rowEnd; i++) {
+				if(mode == MODE_RESET) {
 					color = pixels[i];
+					mode = MODE_SELECT;
 					start = i;
 				}
-				else if((i-start) >= 127) {
-					size += 1 + elementCount;
-					mode = MODE_RESET;
-				}
-			}
-			else if(mode == MODE_DIFFERENT_COLOR) {
-				if(color == pixels[i]) {
-					// packet + rawData * count
-					size += 1 + elementCount*(i-1-start);
-					mode = MODE_SAME_COLOR;
+				else if(mode == MODE_SELECT) {
+					mode = (color == pixels[i]) ? MODE_SAME_COLOR : MODE_DIFFERENT_COLOR;
 					color = pixels[i];
-					start = i-1;
 				}
-				else if((i-start) >= 127) {
-					size += 1 + elementCount*128;
-					mode = MODE_RESET;
+				else if(mode == MODE_SAME_COLOR) {
+					if(color != pixels[i]) {
+						// packet + rleData
+						size += write(packet, encodeRLE(packet, 0, color, i-start, elementCount, format), writer);
+						mode = MODE_SELECT;
+						color = pixels[i];
+						start = i;
+					}
+					else if((i-start) >= 127) {
+						size += write(packet, encodeRLE(packet, 0, color, 128, elementCount, format), writer);
+						mode = MODE_RESET;
+					}
 				}
-			}
-			
-			if((i+1)%width == 0 && mode != MODE_RESET) {
-				if(mode == MODE_SAME_COLOR) {
-					size += 1 + elementCount;
+				else if(mode == MODE_DIFFERENT_COLOR) {
+					if(color == pixels[i]) {
+						// packet + rawData * count
+						size += write(packet, encodeRLE(packet, 0, pixels, start, i-1-start, elementCount, format), writer);
+						mode = MODE_SAME_COLOR;
+						color = pixels[i];
+						start = i-1;
+					}
+					else if((i-start) >= 127) {
+						size += write(packet, encodeRLE(packet, 0, pixels, start, 128, elementCount, format), writer);
+						mode = MODE_RESET;
+					}
 				}
-				else {
-					// MODE_SELECT or MODE_DIFFERENT_COLOR
-					size += 1 + elementCount*(i-start+1);
+				
+				if(i+1 == rowEnd && mode != MODE_RESET) {
+					if(mode == MODE_SAME_COLOR) {
+						size += write(packet, encodeRLE(packet, 0, color, i-start+1, elementCount, format), writer);
+					}
+					else {
+						// MODE_SELECT or MODE_DIFFERENT_COLOR
+						size += write(packet, encodeRLE(packet, 0, pixels, start, i-start+1, elementCount, format), writer);
+					}
+					mode = MODE_RESET;
 				}
-				mode = MODE_RESET;
+				
+				// update color
+				color = pixels[i];
+				
+				if(size >= limit) return false;
 			}
-			
-			// update color
-			color = pixels[i];
 		}
-
+		
 		if(mode != MODE_RESET) {
 			System.out.println("Error!");
 		}
 		
-		return size;
+		return true;
 		
 	}
 	
-	private static int encodeRLE(int [] pixels, int width, int elementCount, PixelFormat format, byte [] buffer, int index) {
-		
-		int color = 0;
-		int mode = MODE_RESET;
-		int start = 0;
-		
-		for(int i=0; i<pixels.length; i++) {
-			if(mode == MODE_RESET) {
-				color = pixels[i];
-				mode = MODE_SELECT;
-				start = i;
-			}
-			else if(mode == MODE_SELECT) {
-				mode = (color == pixels[i]) ? MODE_SAME_COLOR : MODE_DIFFERENT_COLOR;
-				color = pixels[i];
-			}
-			else if(mode == MODE_SAME_COLOR) {
-				if(color != pixels[i]) {
-					// packet + rleData
-					index = encodeRLE(buffer, index, color, i-start, elementCount, format);
-					mode = MODE_SELECT;
-					color = pixels[i];
-					start = i;
-				}
-				else if((i-start) >= 127) {
-					index = encodeRLE(buffer, index, color, 128, elementCount, format);
-					mode = MODE_RESET;
-				}
-			}
-			else if(mode == MODE_DIFFERENT_COLOR) {
-				if(color == pixels[i]) {
-					// packet + rawData * count
-					index = encodeRLE(buffer, index, pixels, start, i-1-start, elementCount, format);
-					mode = MODE_SAME_COLOR;
-					color = pixels[i];
-					start = i-1;
-				}
-				else if((i-start) >= 127) {
-					index = encodeRLE(buffer, index, pixels, start, 128, elementCount, format);
-					mode = MODE_RESET;
-				}
-			}
-			
-			if((i+1)%width == 0 && mode != MODE_RESET) {
-				if(mode == MODE_SAME_COLOR) {
-					index = encodeRLE(buffer, index, color, i-start+1, elementCount, format);
-				}
-				else {
-					// MODE_SELECT or MODE_DIFFERENT_COLOR
-					index = encodeRLE(buffer, index, pixels, start, i-start+1, elementCount, format);
-				}
-				mode = MODE_RESET;
-			}
-			
-			// update color
-			color = pixels[i];
-		}
-
-		if(mode != MODE_RESET) {
-			System.out.println("Error!");
-		}
-		
-		return index;
-		
+	private static int write(byte [] packet, int length, OutputWriter writer) throws IOException {
+		if(writer != null) writer.write(packet, 0, length);
+		return length;
 	}
 	
 	private static int encodeRLE(byte [] buffer, int index, int color, int count, int elementCount, PixelFormat format) {
@@ -289,15 +407,19 @@ public class TgaWriter {
 		return index;
 	}
 	
-	private static boolean hasAlpha(int [] pixels, PixelFormat format) {
+	private static boolean hasAlpha(int [] pixels, int offset, int stride, int width, int height, PixelFormat format) {
 		int alphaShift = format.getAlphaShift();
-		for(int i=0; i<pixels.length; i++) {
-			int alpha = (pixels[i] >> alphaShift) & 0xFF;
-			if(alpha != 0xFF) return true;
+		for(int j=0; j<height; j++) {
+			for(int i=offset+j*stride; i<offset+j*stride+width; i++) {
+				int alpha = (pixels[i] >> alphaShift) & 0xFF;
+				if(alpha != 0xFF) return true;
+			}
 		}
 		return false;
 	}
 	
+	private static final int HEADER_SIZE = 18;
+	
 	private static final byte [] FOOTER = {0,0,0,0,0,0,0,0,84,82,85,69,86,73,83,73,79,78,45,88,70,73,76,69,46,0}; // TRUEVISION-XFILE
 	
 }
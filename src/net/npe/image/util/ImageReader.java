@@ -18,11 +18,20 @@ package net.npe.image.util;
 import java.io.IOException;
 import java.io.InputStream;
 
+import net.npe.image.PixelExecutor;
 import net.npe.image.PixelFormat;
 import net.npe.image.PixelImage;
+import net.npe.image.PixelStorage;
 import net.npe.image.dds.DdsImage;
 import net.npe.image.psd.PsdImage;
 import net.npe.image.tga.TgaImage;
+import net.npe.io.CountingInputReader;
+import net.npe.io.CountingSeekableInputReader;
+import net.npe.io.IOStatistics;
+import net.npe.io.InputReader;
+import net.npe.io.InputReader.ByteOrderReader;
+import net.npe.io.SeekableInputReader;
+import net.npe.io.StreamReader;
 
 /**
  * Helper class for reading images.
@@ -41,20 +50,115 @@ public class ImageReader {
 		return null;
 	}
 	
-	/*
+	/**
+	 * create a PixelImage instance from InputReader with pixel format.
+	 * The reader is used as it is, so it should be big-endian for PSD.
+	 * @param type image type
+	 * @param format pixel format
+	 * @param reader InputReader
+	 * @return a PixelImage instance
+	 * @throws IOException throws IOException
+	 */
 	public static PixelImage read(ImageType type, PixelFormat format, InputReader reader) throws IOException {
 		switch(type) {
+		case DDS:
+			DdsImage ddsImage = new DdsImage();
+			ddsImage.read(reader, format);
+			return ddsImage;
+		case PSD:
+			PsdImage psdImage = new PsdImage();
+			psdImage.read(reader, format, false);
+			return psdImage;
+		case TGA:
+			TgaImage tgaImage = new TgaImage();
+			tgaImage.read(reader, format);
+			return tgaImage;
+		default:
+			throw new IOException("No Support ImageType:"+type.toString());
+		}
+	}
+	
+	/**
+	 * create a PixelImage instance from InputReader with pixel format.
+	 * The pixels are decoded into a storage allocated by the allocator.
+	 * @param type image type
+	 * @param format pixel format
+	 * @param reader InputReader
+	 * @param allocator allocator of the storage (e.g. DirectPixelStorage.ALLOCATOR)
+	 * @return a PixelImage instance
+	 * @throws IOException throws IOException
+	 */
+	public static PixelImage read(ImageType type, PixelFormat format, InputReader reader, PixelStorage.Allocator allocator) throws IOException {
+		switch(type) {
+		case DDS:
+			DdsImage ddsImage = new DdsImage();
+			ddsImage.read(reader, format, allocator);
+			return ddsImage;
 		case PSD:
 			PsdImage psdImage = new PsdImage();
-			psdImage.read(reader, false);
+			psdImage.read(reader, format, false, PixelExecutor.SEQUENTIAL, allocator);
 			return psdImage;
-		case DDS: // Not yet implemented
-		case TGA: // Not yet implemented
+		case TGA:
+			TgaImage tgaImage = new TgaImage();
+			tgaImage.read(reader, format, allocator);
+			return tgaImage;
 		default:
 			throw new IOException("No Support ImageType:"+type.toString());
 		}
 	}
-	*/
+	
+	/**
+	 * create a PixelImage instance from InputReader with pixel format, counting the bytes read.
+	 * The time is not measured, so each read only adds a counter update (see read(type, format, reader, statistics, timing)).
+	 * @param type image type
+	 * @param format pixel format
+	 * @param reader InputReader
+	 * @param statistics statistics to which the counts are added, also when the decoding fails
+	 * @return a PixelImage instance
+	 * @throws IOException throws IOException
+	 */
+	public static PixelImage read(ImageType type, PixelFormat format, InputReader reader, IOStatistics statistics) throws IOException {
+		return read(type, format, reader, statistics, false);
+	}
+	
+	/**
+	 * create a PixelImage instance from InputReader with pixel format, counting the bytes read and optionally the time spent in the reader.
+	 * A SeekableInputReader is wrapped by CountingSeekableInputReader, so the image is decoded in the same way.
+	 * @param type image type
+	 * @param format pixel format
+	 * @param reader InputReader
+	 * @param statistics statistics to which the counts are added, also when the decoding fails
+	 * @param timing true to measure the time spent in the reader, which calls System.nanoTime() twice per read
+	 * @return a PixelImage instance
+	 * @throws IOException throws IOException
+	 */
+	public static PixelImage read(ImageType type, PixelFormat format, InputReader reader, IOStatistics statistics, boolean timing) throws IOException {
+		if(reader instanceof SeekableInputReader) {
+			CountingSeekableInputReader counter = new CountingSeekableInputReader((SeekableInputReader)reader, timing);
+			try {
+				return read(type, format, counter);
+			}
+			finally {
+				statistics.add(counter.getStatistics());
+			}
+		}
+		CountingInputReader counter = new CountingInputReader(reader, timing);
+		try {
+			return read(type, format, counter);
+		}
+		finally {
+			statistics.add(counter.getStatistics());
+		}
+	}
+	
+	/**
+	 * get the default byte order of the image type.
+	 * @param type image type
+	 * @return InputReader.BigEndian or InputReader.LittleEndian
+	 */
+	public static ByteOrderReader getByteOrder(ImageType type) {
+		return (type == ImageType.PSD) ? InputReader.BigEndian : InputReader.LittleEndian;
+	}
 	
 	/**
 	 * create a PixelImage instance from buffer with pixel format.
@@ -86,7 +190,6 @@ public class ImageReader {
 	
 	/**
 	 * create a PixelImage instance from InputStream with pixel format.
-	 * DDS/TGA is not yet implemented.
 	 * @param type image type
 	 * @param format pixel format
 	 * @param is InputStream
@@ -94,16 +197,7 @@ public class ImageReader {
 	 * @throws IOException throws IOException
 	 */
 	public static PixelImage read(ImageType type, PixelFormat format, InputStream is) throws IOException {
-		switch(type) {
-		case PSD:
-			PsdImage psdImage = new PsdImage();
-			psdImage.read(is, format, false);
-			return psdImage;
-		case DDS: // Not yet implemented
-		case TGA: // Not yet implemented
-		default:
-			throw new IOException("No Support ImageType:"+type.toString());
-		}
+		return read(type, format, new StreamReader(is, getByteOrder(type)));
 	}
 	
 	public static PixelImage readFast(ImageType type, PixelFormat format, InputStream is) throws IOException {
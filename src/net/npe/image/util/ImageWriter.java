@@ -18,8 +18,12 @@ package net.npe.image.util;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import net.npe.image.AlphaInfo;
 import net.npe.image.PixelImage;
 import net.npe.image.tga.TgaWriter;
+import net.npe.io.ByteArrayWriter;
+import net.npe.io.OutputWriter;
+import net.npe.io.StreamWriter;
 
 /**
  * Helper class for writing images.
@@ -36,14 +40,60 @@ public class ImageWriter {
 	public static byte [] write(ImageType type, PixelImage image) throws IOException {
 		switch(type) {
 		case TGA:
-			return TgaWriter.write(image.getPixels(), image.getWidth(), image.getHeight(), image.getFormat());
+			return writeTga(image, TgaWriter.EncodeType.AUTO);
 		default:
 			throw new IOException("No Support ImageType:"+type.toString());
 		}
 	}
 	
+	/**
+	 * append an image to the byte array writer.
+	 * @param type image type
+	 * @param image pixel image
+	 * @param writer byte array writer, which can be reset and reused for the next image
+	 * @throws IOException throws IOException
+	 */
+	public static void write(ImageType type, PixelImage image, ByteArrayWriter writer) throws IOException {
+		write(type, image, (OutputWriter)writer);
+	}
+	
+	/**
+	 * write an image to the output writer, one row or RLE packet at a time.
+	 * The encoded file is not held in memory unless the writer is a ByteArrayWriter.
+	 * @param type image type
+	 * @param image pixel image
+	 * @param writer output writer (e.g. ChannelWriter or StreamWriter)
+	 * @throws IOException throws IOException
+	 */
+	public static void write(ImageType type, PixelImage image, OutputWriter writer) throws IOException {
+		switch(type) {
+		case TGA:
+			AlphaInfo alpha = image.getAlphaInfo();
+			int [] pixels = image.getPixels();
+			// the pixels are only read, so the alpha info is kept
+			image.setAlphaInfo(alpha);
+			if(pixels != null) {
+				TgaWriter.write(pixels, image.getOffset(), image.getStride(), image.getWidth(), image.getHeight(), image.getFormat(), alpha, TgaWriter.EncodeType.AUTO, writer);
+			}
+			else {
+				TgaWriter.write(getPixels(image), 0, image.getWidth(), image.getWidth(), image.getHeight(), image.getFormat(), alpha, TgaWriter.EncodeType.AUTO, writer);
+			}
+			break;
+		default:
+			throw new IOException("No Support ImageType:"+type.toString());
+		}
+	}
+	
+	/**
+	 * write an image to the output stream, one row or RLE packet at a time.
+	 * An unbuffered stream (e.g. FileOutputStream) should be wrapped by a BufferedOutputStream.
+	 * @param type image type
+	 * @param image pixel image
+	 * @param os output stream
+	 * @throws IOException throws IOException
+	 */
 	public static void write(ImageType type, PixelImage image, OutputStream os) throws IOException {
-		os.write(write(type, image));
+		write(type, image, new StreamWriter(os, OutputWriter.LittleEndian));
 	}
 	
 	/**
@@ -54,7 +104,21 @@ public class ImageWriter {
 	 * @throws IOException throws IOException
 	 */
 	public static byte [] writeTga(PixelImage image, TgaWriter.EncodeType encode) throws IOException {
-		return TgaWriter.write(image.getPixels(), image.getWidth(), image.getHeight(), image.getFormat(), encode);
+		AlphaInfo alpha = image.getAlphaInfo();
+		int [] pixels = image.getPixels();
+		// the pixels are only read, so the alpha info is kept
+		image.setAlphaInfo(alpha);
+		if(pixels != null) {
+			return TgaWriter.write(pixels, image.getOffset(), image.getStride(), image.getWidth(), image.getHeight(), image.getFormat(), alpha, encode);
+		}
+		return TgaWriter.write(getPixels(image), 0, image.getWidth(), image.getWidth(), image.getHeight(), image.getFormat(), alpha, encode);
 	}
-
+	
+	// pixels of an image in a storage are copied to the heap
+	private static int [] getPixels(PixelImage image) {
+		int [] pixels = new int[image.getWidth()*image.getHeight()];
+		image.getPixels(image.getFormat(), pixels, 0);
+		return pixels;
+	}
+	
 }
@@ -56,7 +56,7 @@ public final class AndroidImageReader {
 			InputStream is = null;
 			try {
 				is = assets.open(path);
-				image = ImageReader.readFast(type, format, is);
+				image = ImageReader.read(type, format, is);
 			}
 			catch(Exception e) {
 				e.printStackTrace();
@@ -125,7 +125,7 @@ public final class AndroidImageReader {
 			InputStream is = null;
 			try {
 				is = context.openFileInput(path);
-				image = ImageReader.readFast(type, format, is);
+				image = ImageReader.read(type, format, is);
 			}
 			catch(Exception e) {
 				e.printStackTrace();
@@ -182,7 +182,7 @@ public final class AndroidImageReader {
 			InputStream is = null;
 			try {
 				is = assets.open(path);
-				PixelImage image = ImageReader.readFast(type, PixelFormat.ARGB, is);
+				PixelImage image = ImageReader.read(type, PixelFormat.ARGB, is);
 				bitmap = createBitmap(image);
 			}
 			catch(Exception e) {
@@ -238,7 +238,7 @@ public final class AndroidImageReader {
 			InputStream is = null;
 			try {
 				is = context.openFileInput(path);
-				PixelImage image = ImageReader.readFast(type, PixelFormat.ARGB, is);
+				PixelImage image = ImageReader.read(type, PixelFormat.ARGB, is);
 				bitmap = createBitmap(image);
 			}
 			catch(Exception e) {
@@ -282,15 +282,28 @@ public final class AndroidImageReader {
 	
 	/**
 	 * create a bitmap from a pixel image.
+	 * The image is not changed. The pixels of an ARGB int array are passed as they are,
+	 * and the others (e.g. a storage or a premultiplied format) are copied as straight ARGB.
+	 * The bitmap of an opaque image (see PixelImage.getAlphaInfo()) has no alpha.
 	 * @param image pixel image
 	 * @return bitmap
 	 */
 	public static Bitmap createBitmap(PixelImage image) {
-		image.changeFormat(PixelFormat.ARGB);
-		int [] pixels = image.getPixels();
 		int width = image.getWidth();
 		int height = image.getHeight();
-		return Bitmap.createBitmap(pixels, 0, width, width, height, Config.ARGB_8888);
+		Bitmap bitmap;
+		if(image.getPixels() != null && image.getFormat() == PixelFormat.ARGB) {
+			bitmap = Bitmap.createBitmap(image.getPixels(), image.getOffset(), image.getStride(), width, height, Config.ARGB_8888);
+		}
+		else {
+			// Bitmap takes straight colors
+			int [] pixels = new int[width*height];
+			image.getPixels(PixelFormat.ARGB, pixels, 0);
+			bitmap = Bitmap.createBitmap(pixels, 0, width, width, height, Config.ARGB_8888);
+		}
+		// an opaque bitmap is drawn without blending
+		bitmap.setHasAlpha(!image.getAlphaInfo().isOpaque());
+		return bitmap;
 	}
 	
 	/**
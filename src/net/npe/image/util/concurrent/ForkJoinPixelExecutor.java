@@ -0,0 +1,117 @@
+/**
+ * ForkJoinPixelExecutor.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.image.util.concurrent;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import net.npe.image.PixelExecutor;
+
+/**
+ * PixelExecutor on a ForkJoinPool (Java SE 7+).
+ * <p>
+ * The parts are split in halves recursively, so idle workers steal the remaining halves.
+ * It can be called from a task running in the same pool.
+ * </p>
+ */
+public class ForkJoinPixelExecutor implements PixelExecutor {
+	
+	/**
+	 * constructor with a new ForkJoinPool of the available processors.
+	 */
+	public ForkJoinPixelExecutor() {
+		this(new ForkJoinPool());
+	}
+	
+	public ForkJoinPixelExecutor(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+	
+	@Override
+	public void execute(int count, Task task) throws IOException {
+		if(count <= 1) {
+			if(count == 1) task.run(0);
+			return;
+		}
+		Part part = new Part(task, 0, count);
+		try {
+			if(ForkJoinTask.getPool() == pool) {
+				part.invoke();
+			}
+			else {
+				pool.invoke(part);
+			}
+		}
+		catch(RuntimeException e) {
+			// the exception may be rethrown as a copy wrapping the original
+			for(Throwable t=e; t!=null; t=t.getCause()) {
+				if(t instanceof TaskException) throw (IOException)t.getCause();
+			}
+			throw e;
+		}
+	}
+	
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+	
+	private static final class Part extends RecursiveAction {
+		
+		Part(Task task, int begin, int end) {
+			this.task = task;
+			this.begin = begin;
+			this.end = end;
+		}
+		
+		@Override
+		protected void compute() {
+			if(end - begin == 1) {
+				try {
+					task.run(begin);
+				}
+				catch(IOException e) {
+					throw new TaskException(e);
+				}
+			}
+			else {
+				int middle = (begin + end) >>> 1;
+				invokeAll(new Part(task, begin, middle), new Part(task, middle, end));
+			}
+		}
+		
+		private Task task;
+		private int begin;
+		private int end;
+		
+		private static final long serialVersionUID = 1L;
+		
+	}
+	
+	private static final class TaskException extends RuntimeException {
+		
+		TaskException(IOException cause) {
+			super(cause);
+		}
+		
+		private static final long serialVersionUID = 1L;
+		
+	}
+	
+	private ForkJoinPool pool;
+	
+}
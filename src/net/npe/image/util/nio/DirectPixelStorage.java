@@ -0,0 +1,135 @@
+/**
+ * DirectPixelStorage.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.image.util.nio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+import net.npe.image.PixelFormat;
+import net.npe.image.PixelStorage;
+
+/**
+ * PixelStorage on a direct ByteBuffer, which is outside the Java heap.
+ * <p>
+ * The pixels are ints in the byte order of the buffer (the native order for allocate()),
+ * so the buffer can be passed to a native API without copying.
+ * </p>
+ * <p>
+ * The memory is released by the garbage collector, never explicitly:
+ * the buffers returned by getBuffer() and the views of concurrent bands share it,
+ * and stay valid after close() as long as the caller holds them.
+ * close() only drops the references of the storage, which must not be used after it.
+ * </p>
+ */
+public class DirectPixelStorage extends PixelStorage {
+	
+	/**
+	 * allocate a storage in native byte order.
+	 * @param length number of pixels
+	 * @return storage
+	 */
+	public static DirectPixelStorage allocate(int length) {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(4*length).order(ByteOrder.nativeOrder());
+		return new DirectPixelStorage(buffer);
+	}
+	
+	/**
+	 * wrap a buffer.
+	 * @param buffer buffer from the position to the limit
+	 * @return storage
+	 */
+	public static DirectPixelStorage wrap(ByteBuffer buffer) {
+		return new DirectPixelStorage(buffer.slice().order(buffer.order()));
+	}
+	
+	/**
+	 * get the buffer of the pixels.
+	 * The duplicate keeps the memory alive, also after close().
+	 * @return a duplicate of the buffer
+	 */
+	public ByteBuffer getBuffer() {
+		return buffer().duplicate().order(buffer.order());
+	}
+	
+	@Override
+	public int getLength() {
+		return length;
+	}
+	
+	@Override
+	public int get(int index) {
+		return ints().get(index);
+	}
+	
+	@Override
+	public void set(int index, int pixel) {
+		ints().put(index, pixel);
+	}
+	
+	@Override
+	public void get(int index, int [] destination, int offset, int length) {
+		// a duplicate has its own position for concurrent bands
+		IntBuffer view = ints().duplicate();
+		view.position(index);
+		view.get(destination, offset, length);
+	}
+	
+	@Override
+	public void set(int index, int [] source, int offset, int length) {
+		IntBuffer view = ints().duplicate();
+		view.position(index);
+		view.put(source, offset, length);
+	}
+	
+	@Override
+	public void close() {
+		// the buffer may still be in use by a duplicate, so it is left to the garbage collector
+		this.buffer = null;
+		this.ints = null;
+	}
+	
+	/** allocates DirectPixelStorage */
+	public static final Allocator ALLOCATOR = new Allocator() {
+		@Override
+		public PixelStorage allocate(int length, PixelFormat format) {
+			return DirectPixelStorage.allocate(length);
+		}
+	};
+	
+	protected DirectPixelStorage(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.ints = buffer.asIntBuffer();
+		this.length = ints.capacity();
+	}
+	
+	private ByteBuffer buffer() {
+		ByteBuffer buffer = this.buffer;
+		if(buffer == null) throw new IllegalStateException("Closed storage");
+		return buffer;
+	}
+	
+	private IntBuffer ints() {
+		IntBuffer ints = this.ints;
+		if(ints == null) throw new IllegalStateException("Closed storage");
+		return ints;
+	}
+	
+	private volatile ByteBuffer buffer;
+	private volatile IntBuffer ints;
+	private int length;
+	
+}
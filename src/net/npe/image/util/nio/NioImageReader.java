@@ -0,0 +1,206 @@
+/**
+ * NioImageReader.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.image.util.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import net.npe.image.BufferPool;
+import net.npe.image.PixelFormat;
+import net.npe.image.PixelImage;
+import net.npe.image.PixelStorage;
+import net.npe.image.util.ImageReader;
+import net.npe.image.util.ImageType;
+import net.npe.io.ByteArrayReader;
+import net.npe.io.nio.MappedFileReader;
+
+/**
+ * Helper class for reading image files with java.nio (Java SE 7+).
+ */
+public final class NioImageReader {
+	
+	/**
+	 * read a pixel image from a file. The image type is detected from the file extension.
+	 * @param path file path
+	 * @param format pixel format
+	 * @return a PixelImage instance
+	 * @throws IOException throws IOException
+	 */
+	public static PixelImage read(Path path, PixelFormat format) throws IOException {
+		ImageType type = ImageReader.getImageType(path.toString());
+		if(type == null) throw new IOException("Unsupport image format: "+path);
+		return read(type, format, path);
+	}
+	
+	/**
+	 * read a pixel image from a memory-mapped file.
+	 * The file is decoded without being copied into a byte array.
+	 * @param type image type
+	 * @param format pixel format
+	 * @param path file path
+	 * @return a PixelImage instance
+	 * @throws IOException throws IOException
+	 */
+	public static PixelImage read(ImageType type, PixelFormat format, Path path) throws IOException {
+		MappedFileReader reader;
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			reader = new MappedFileReader(channel, 0, channel.size(), ImageReader.getByteOrder(type));
+		}
+		finally {
+			// the mapping remains valid after the channel is closed
+			channel.close();
+		}
+		return ImageReader.read(type, format, reader);
+	}
+	
+	/**
+	 * read a pixel image from a memory-mapped file into a storage allocated by the allocator.
+	 * With DirectPixelStorage.ALLOCATOR, neither the file nor the pixels are copied to the Java heap.
+	 * @param type image type
+	 * @param format pixel format
+	 * @param path file path
+	 * @param allocator allocator of the storage
+	 * @return a PixelImage instance
+	 * @throws IOException throws IOException
+	 */
+	public static PixelImage read(ImageType type, PixelFormat format, Path path, PixelStorage.Allocator allocator) throws IOException {
+		MappedFileReader reader;
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			reader = new MappedFileReader(channel, 0, channel.size(), ImageReader.getByteOrder(type));
+		}
+		finally {
+			channel.close();
+		}
+		return ImageReader.read(type, format, reader, allocator);
+	}
+	
+	/**
+	 * read a pixel image asynchronously.
+	 * The file is read with AsynchronousFileChannel into a buffer of BufferPool.getDefault(),
+	 * and only the decoding runs on the executor, so no executor thread waits for I/O.
+	 * The buffer is released after decoding.
+	 * @param type image type
+	 * @param format pixel format
+	 * @param path file path
+	 * @param executor executor for decoding
+	 * @return future of the PixelImage, which also completes exceptionally if the executor rejects the decoding
+	 */
+	public static CompletableFuture<PixelImage> readAsync(ImageType type, PixelFormat format, Path path, Executor executor) {
+		CompletableFuture<PixelImage> future = new CompletableFuture<PixelImage>();
+		AsynchronousFileChannel channel = null;
+		byte [] buffer = null;
+		try {
+			channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+			long size = channel.size();
+			if(size > Integer.MAX_VALUE) throw new IOException("File is too large: "+path);
+			buffer = BufferPool.getDefault().getBytes((int)size);
+			ByteBuffer target = ByteBuffer.wrap(buffer, 0, (int)size);
+			channel.read(target, 0, target, new AsyncRead(channel, buffer, (int)size, type, format, executor, future));
+		}
+		catch(Throwable e) {
+			close(channel);
+			BufferPool.getDefault().release(buffer);
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+	
+	private static void close(AsynchronousFileChannel channel) {
+		if(channel == null) return;
+		try {
+			channel.close();
+		}
+		catch(IOException e) {
+			// nothing is written to the file
+		}
+	}
+	
+	private static final class AsyncRead implements CompletionHandler<Integer, ByteBuffer> {
+		
+		AsyncRead(AsynchronousFileChannel channel, byte [] buffer, int size, ImageType type, PixelFormat format, Executor executor, CompletableFuture<PixelImage> future) {
+			this.channel = channel;
+			this.buffer = buffer;
+			this.size = size;
+			this.type = type;
+			this.format = format;
+			this.executor = executor;
+			this.future = future;
+		}
+		
+		@Override
+		public void completed(Integer result, ByteBuffer target) {
+			try {
+				if(result < 0 && target.hasRemaining()) {
+					failed(new IOException("Unexpected end of file"), target);
+				}
+				else if(target.hasRemaining()) {
+					channel.read(target, target.position(), target, this);
+				}
+				else {
+					close(channel);
+					executor.execute(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								// the pooled buffer may be longer than the file
+								ByteArrayReader reader = new ByteArrayReader(buffer, 0, ImageReader.getByteOrder(type)).slice(0, size);
+								future.complete(ImageReader.read(type, format, reader));
+							}
+							catch(Throwable e) {
+								future.completeExceptionally(e);
+							}
+							finally {
+								BufferPool.getDefault().release(buffer);
+							}
+						}
+					});
+				}
+			}
+			catch(Throwable e) {
+				// e.g. RejectedExecutionException of a saturated or shut down executor
+				failed(e, target);
+			}
+		}
+		
+		@Override
+		public void failed(Throwable e, ByteBuffer target) {
+			close(channel);
+			BufferPool.getDefault().release(buffer);
+			future.completeExceptionally(e);
+		}
+		
+		private AsynchronousFileChannel channel;
+		private byte [] buffer;
+		private int size;
+		private ImageType type;
+		private PixelFormat format;
+		private Executor executor;
+		private CompletableFuture<PixelImage> future;
+		
+	}
+	
+	private NioImageReader() {}
+	
+}
@@ -0,0 +1,68 @@
+/**
+ * NioImageWriter.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-image-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-image-library.
+ * https://github.com/npedotnet/npe-image-library
+ *
+ * For more details, see npe-image-library wiki.
+ * https://github.com/npedotnet/npe-image-library/wiki
+ * 
+ */
+
+package net.npe.image.util.nio;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import net.npe.image.PixelImage;
+import net.npe.image.util.ImageType;
+import net.npe.image.util.ImageWriter;
+import net.npe.io.OutputWriter;
+import net.npe.io.nio.ChannelWriter;
+
+/**
+ * Helper class for writing image files with java.nio (Java SE 7+).
+ */
+public final class NioImageWriter {
+	
+	/**
+	 * write an image to a file.
+	 * @param type image type
+	 * @param image pixel image
+	 * @param path file path
+	 * @throws IOException throws IOException
+	 */
+	public static void write(ImageType type, PixelImage image, Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		ChannelWriter writer = new ChannelWriter(channel, OutputWriter.LittleEndian);
+		try {
+			write(type, image, writer);
+		}
+		finally {
+			writer.close();
+		}
+	}
+	
+	/**
+	 * write an image to the channel writer.
+	 * The header, rows and footer are encoded into the direct staging buffer of the writer,
+	 * so the file is neither held on the Java heap nor copied to a temporary direct buffer.
+	 * The staged bytes are left for the next flush() or close().
+	 * @param type image type
+	 * @param image pixel image
+	 * @param writer channel writer
+	 * @throws IOException throws IOException
+	 */
+	public static void write(ImageType type, PixelImage image, ChannelWriter writer) throws IOException {
+		ImageWriter.write(type, image, writer);
+	}
+	
+	private NioImageWriter() {}
+	
+}
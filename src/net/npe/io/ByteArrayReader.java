@@ -12,7 +12,10 @@
 
 package net.npe.io;
 
-public class ByteArrayReader extends InputReader {
+import java.io.EOFException;
+import java.io.IOException;
+
+public class ByteArrayReader extends SeekableInputReader {
 	
 	/**
 	 * constructor
@@ -21,33 +24,242 @@ public class ByteArrayReader extends InputReader {
 	 * @param endian default ByteOrderReader (LittleEndian or BigEndian)
 	 */
 	public ByteArrayReader(byte [] buffer, int offset, ByteOrderReader endian) {
+		this(buffer, 0, buffer.length, offset, endian);
+	}
+	
+	private ByteArrayReader(byte [] buffer, int start, int limit, int position, ByteOrderReader endian) {
 		super(endian);
 		this.buffer = buffer;
-		position = offset;
+		this.start = start;
+		this.limit = limit;
+		this.position = position;
 		mark();
 	}
 	
+	/**
+	 * create a reader of [offset, offset+length) of this reader, sharing the byte array.
+	 * The slice has its own position and mark, starting at 0, and cannot read beyond length.
+	 * seek(), skip() and reset() throw EOFException for a position outside of [0, length].
+	 * @param offset offset from the start of this reader
+	 * @param length number of bytes
+	 * @return slice
+	 */
+	public ByteArrayReader slice(int offset, int length) {
+		if(offset < 0 || length < 0 || offset + length > limit - start) {
+			throw new IndexOutOfBoundsException("offset:"+offset+", length:"+length);
+		}
+		return new ByteArrayReader(buffer, start+offset, start+offset+length, start+offset, endian);
+	}
+	
+	/**
+	 * create a reader of the same bytes with its own position and mark.
+	 * @return duplicate
+	 */
+	public ByteArrayReader duplicate() {
+		ByteArrayReader reader = new ByteArrayReader(buffer, start, limit, position, endian);
+		reader.marker = marker;
+		return reader;
+	}
+	
+	/**
+	 * get the number of bytes of this reader.
+	 * @return the number of bytes
+	 */
+	public int length() {
+		return limit - start;
+	}
+	
 	@Override
 	public int read() {
+		if(position >= limit) return -1;
 		return buffer[position++] & 0xFF;
 	}
 	
+	@Override
+	public void read(byte [] buffer, int offset, int length) throws IOException {
+		System.arraycopy(this.buffer, advance(length), buffer, offset, length);
+	}
+	
 	@Override
 	public void mark() {
 		marker = position;
 	}
 	
 	@Override
-	public void reset() {
-		position = marker;
+	public void reset() throws IOException {
+		seek(marker - start);
+	}
+	
+	@Override
+	public void skip(int numberOfBytes) throws IOException {
+		seek(getPosition() + numberOfBytes);
+	}
+	
+	@Override
+	public long getPosition() {
+		return position - start;
+	}
+	
+	@Override
+	public void seek(long position) throws IOException {
+		if(position < 0 || position > limit - start) {
+			throw new EOFException("Invalid position: "+position);
+		}
+		this.position = start + (int)position;
+	}
+	
+	// The predefined byte-orders are decoded directly from the buffer,
+	// so the reads below never go through ByteOrderReader.
+	
+	@Override
+	public short readShort() throws IOException {
+		if(endian == BigEndian) return readBigEndianShort();
+		if(endian == LittleEndian) return readLittleEndianShort();
+		return super.readShort();
+	}
+	
+	@Override
+	public int readInt() throws IOException {
+		if(endian == BigEndian) return readBigEndianInt();
+		if(endian == LittleEndian) return readLittleEndianInt();
+		return super.readInt();
+	}
+	
+	@Override
+	public long readLong() throws IOException {
+		if(endian == BigEndian) return readBigEndianLong();
+		if(endian == LittleEndian) return readLittleEndianLong();
+		return super.readLong();
+	}
+	
+	@Override
+	public float readFloat() throws IOException {
+		return Float.intBitsToFloat(readInt());
+	}
+	
+	@Override
+	public double readDouble() throws IOException {
+		return Double.longBitsToDouble(readLong());
+	}
+	
+	@Override
+	public void readShorts(short [] buffer, int offset, int length) throws IOException {
+		byte [] bytes = this.buffer;
+		int index = position;
+		if(index + 2*length > limit) throw new EOFException();
+		if(endian == BigEndian) {
+			for(int i=0; i<length; i++, index+=2) {
+				buffer[i+offset] = (short)((bytes[index] & 0xFF) << 8 | (bytes[index+1] & 0xFF));
+			}
+		}
+		else if(endian == LittleEndian) {
+			for(int i=0; i<length; i++, index+=2) {
+				buffer[i+offset] = (short)((bytes[index] & 0xFF) | (bytes[index+1] & 0xFF) << 8);
+			}
+		}
+		else {
+			super.readShorts(buffer, offset, length);
+			return;
+		}
+		position = index;
+	}
+	
+	@Override
+	public void readInts(int [] buffer, int offset, int length) throws IOException {
+		byte [] bytes = this.buffer;
+		int index = position;
+		if(index + 4*length > limit) throw new EOFException();
+		if(endian == BigEndian) {
+			for(int i=0; i<length; i++, index+=4) {
+				buffer[i+offset] = getBigEndianInt(bytes, index);
+			}
+		}
+		else if(endian == LittleEndian) {
+			for(int i=0; i<length; i++, index+=4) {
+				buffer[i+offset] = getLittleEndianInt(bytes, index);
+			}
+		}
+		else {
+			super.readInts(buffer, offset, length);
+			return;
+		}
+		position = index;
+	}
+	
+	@Override
+	public short readBigEndianShort() throws IOException {
+		int index = advance(2);
+		return (short)((buffer[index] & 0xFF) << 8 | (buffer[index+1] & 0xFF));
 	}
 	
 	@Override
-	public void skip(int numberOfBytes) {
-		position += numberOfBytes;
+	public int readBigEndianInt() throws IOException {
+		int index = advance(4);
+		return getBigEndianInt(buffer, index);
+	}
+	
+	@Override
+	public long readBigEndianLong() throws IOException {
+		int index = advance(8);
+		return (long)getBigEndianInt(buffer, index) << 32 | (getBigEndianInt(buffer, index+4) & 0xFFFFFFFFL);
+	}
+	
+	@Override
+	public float readBigEndianFloat() throws IOException {
+		return Float.intBitsToFloat(readBigEndianInt());
+	}
+	
+	@Override
+	public double readBigEndianDouble() throws IOException {
+		return Double.longBitsToDouble(readBigEndianLong());
+	}
+	
+	@Override
+	public short readLittleEndianShort() throws IOException {
+		int index = advance(2);
+		return (short)((buffer[index] & 0xFF) | (buffer[index+1] & 0xFF) << 8);
+	}
+	
+	@Override
+	public int readLittleEndianInt() throws IOException {
+		int index = advance(4);
+		return getLittleEndianInt(buffer, index);
+	}
+	
+	@Override
+	public long readLittleEndianLong() throws IOException {
+		int index = advance(8);
+		return (getLittleEndianInt(buffer, index) & 0xFFFFFFFFL) | (long)getLittleEndianInt(buffer, index+4) << 32;
+	}
+	
+	@Override
+	public float readLittleEndianFloat() throws IOException {
+		return Float.intBitsToFloat(readLittleEndianInt());
+	}
+	
+	@Override
+	public double readLittleEndianDouble() throws IOException {
+		return Double.longBitsToDouble(readLittleEndianLong());
+	}
+	
+	private int advance(int length) throws EOFException {
+		int index = position;
+		if(index < start || length < 0 || index + length > limit) throw new EOFException();
+		position = index + length;
+		return index;
+	}
+	
+	private static int getBigEndianInt(byte [] buffer, int index) {
+		return (buffer[index] & 0xFF) << 24 | (buffer[index+1] & 0xFF) << 16 | (buffer[index+2] & 0xFF) << 8 | (buffer[index+3] & 0xFF);
+	}
+	
+	private static int getLittleEndianInt(byte [] buffer, int index) {
+		return (buffer[index] & 0xFF) | (buffer[index+1] & 0xFF) << 8 | (buffer[index+2] & 0xFF) << 16 | (buffer[index+3] & 0xFF) << 24;
 	}
 	
 	private byte [] buffer;
+	private int start;
+	private int limit;
 	private int position;
 	private int marker;
 	
@@ -7,13 +7,39 @@
  * 
  * This file is a part of npe-library.
  * https://github.com/npedotnet/npe-library
- * 
+ *
  */
 
 package net.npe.io;
 
+import java.util.Arrays;
+
+/**
+ * OutputWriter for a byte array.
+ * <p>
+ * The buffer grows when a write goes past its end, so getBuffer() may return
+ * a different array from the one given to the constructor.
+ * reset() rewinds the writer to be reused without reallocating the buffer.
+ * </p>
+ */
 public class ByteArrayWriter extends OutputWriter {
 	
+	/** default initial capacity */
+	public static final int DEFAULT_CAPACITY = 256;
+	
+	public ByteArrayWriter(ByteOrderWriter endian) {
+		this(DEFAULT_CAPACITY, endian);
+	}
+	
+	/**
+	 * constructor
+	 * @param capacity initial capacity
+	 * @param endian default ByteOrderWriter (LittleEndian or BigEndian)
+	 */
+	public ByteArrayWriter(int capacity, ByteOrderWriter endian) {
+		this(new byte[capacity], 0, endian);
+	}
+	
 	/**
 	 * constructor
 	 * @param buffer byte array buffer
@@ -28,9 +54,59 @@ public class ByteArrayWriter extends OutputWriter {
 	
 	@Override
 	public void write(int byteValue) {
+		if(position >= buffer.length) ensureCapacity(position+1);
 		buffer[position++] = (byte)byteValue;
 	}
-
+	
+	@Override
+	public void write(byte [] buffer, int offset, int length) {
+		ensureCapacity(position+length);
+		System.arraycopy(buffer, offset, this.buffer, position, length);
+		position += length;
+	}
+	
+	/**
+	 * get the current buffer. Valid bytes are [0, getPosition()).
+	 * @return byte array buffer
+	 */
+	public byte [] getBuffer() {
+		return buffer;
+	}
+	
+	public int getPosition() {
+		return position;
+	}
+	
+	public void setPosition(int position) {
+		ensureCapacity(position);
+		this.position = position;
+	}
+	
+	/**
+	 * rewind the position to 0. The buffer is kept for reuse.
+	 */
+	public void reset() {
+		position = 0;
+	}
+	
+	/**
+	 * copy the written bytes to a new array.
+	 * @return bytes in [0, getPosition())
+	 */
+	public byte [] toByteArray() {
+		return Arrays.copyOf(buffer, position);
+	}
+	
+	/**
+	 * grow the buffer to hold at least capacity bytes.
+	 * @param capacity required capacity
+	 */
+	public void ensureCapacity(int capacity) {
+		if(capacity > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(capacity, 2*buffer.length));
+		}
+	}
+	
 	private byte [] buffer;
 	private int position;
 	
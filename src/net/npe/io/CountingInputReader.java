@@ -0,0 +1,169 @@
+/**
+ * CountingInputReader.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-library.
+ * https://github.com/npedotnet/npe-library
+ *
+ */
+
+package net.npe.io;
+
+import java.io.IOException;
+
+/**
+ * InputReader decorator which counts the bytes read and skipped, the mark/reset calls
+ * and optionally the time spent in the underlying reader.
+ * <p>
+ * Readers that are not wrapped have no overhead. With timing disabled,
+ * each call only adds a counter update.
+ * </p>
+ * <p>
+ * A SeekableInputReader should be wrapped by CountingSeekableInputReader instead,
+ * since decoders check the type of the reader to seek over sections and to decode in parallel.
+ * </p>
+ */
+public class CountingInputReader extends InputReader {
+	
+	public CountingInputReader(InputReader reader) {
+		this(reader, false);
+	}
+	
+	/**
+	 * constructor
+	 * @param reader underlying reader
+	 * @param timing true to measure the time spent in the underlying reader
+	 */
+	public CountingInputReader(InputReader reader, boolean timing) {
+		super(reader.endian);
+		this.reader = reader;
+		this.timing = timing;
+		this.statistics = new IOStatistics();
+	}
+	
+	@Override
+	public int read() throws IOException {
+		long start = start();
+		int value = reader.read();
+		stop(start);
+		if(value >= 0) statistics.bytes++;
+		return value;
+	}
+	
+	@Override
+	public void read(byte [] buffer, int offset, int length) throws IOException {
+		long start = start();
+		reader.read(buffer, offset, length);
+		stop(start);
+		statistics.bytes += length;
+	}
+	
+	@Override
+	public void mark() {
+		reader.mark();
+		statistics.marks++;
+	}
+	
+	@Override
+	public void reset() throws IOException {
+		long start = start();
+		reader.reset();
+		stop(start);
+		statistics.resets++;
+	}
+	
+	@Override
+	public void skip(int numberOfBytes) throws IOException {
+		long start = start();
+		reader.skip(numberOfBytes);
+		stop(start);
+		statistics.skippedBytes += numberOfBytes;
+	}
+	
+	@Override
+	public short readShort() throws IOException {
+		long start = start();
+		short value = reader.readShort();
+		stop(start);
+		statistics.bytes += 2;
+		return value;
+	}
+	
+	@Override
+	public int readInt() throws IOException {
+		long start = start();
+		int value = reader.readInt();
+		stop(start);
+		statistics.bytes += 4;
+		return value;
+	}
+	
+	@Override
+	public long readLong() throws IOException {
+		long start = start();
+		long value = reader.readLong();
+		stop(start);
+		statistics.bytes += 8;
+		return value;
+	}
+	
+	@Override
+	public float readFloat() throws IOException {
+		return Float.intBitsToFloat(readInt());
+	}
+	
+	@Override
+	public double readDouble() throws IOException {
+		return Double.longBitsToDouble(readLong());
+	}
+	
+	@Override
+	public void readShorts(short [] buffer, int offset, int length) throws IOException {
+		long start = start();
+		reader.readShorts(buffer, offset, length);
+		stop(start);
+		statistics.bytes += 2L*length;
+	}
+	
+	@Override
+	public void readInts(int [] buffer, int offset, int length) throws IOException {
+		long start = start();
+		reader.readInts(buffer, offset, length);
+		stop(start);
+		statistics.bytes += 4L*length;
+	}
+	
+	// seek the SeekableInputReader, counting the distance as skipped bytes
+	void seek(long position) throws IOException {
+		SeekableInputReader seekable = (SeekableInputReader)reader;
+		long from = seekable.getPosition();
+		long start = start();
+		seekable.seek(position);
+		stop(start);
+		statistics.skippedBytes += position - from;
+	}
+	
+	public InputReader getReader() {
+		return reader;
+	}
+	
+	public IOStatistics getStatistics() {
+		return statistics;
+	}
+	
+	private long start() {
+		return timing ? System.nanoTime() : 0;
+	}
+	
+	private void stop(long start) {
+		if(timing) statistics.nanoTime += System.nanoTime() - start;
+	}
+	
+	private InputReader reader;
+	private boolean timing;
+	private IOStatistics statistics;
+	
+}
@@ -0,0 +1,67 @@
+/**
+ * CountingOutputWriter.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-library.
+ * https://github.com/npedotnet/npe-library
+ *
+ */
+
+package net.npe.io;
+
+import java.io.IOException;
+
+/**
+ * OutputWriter decorator which counts the bytes written
+ * and optionally the time spent in the underlying writer.
+ */
+public class CountingOutputWriter extends OutputWriter {
+	
+	public CountingOutputWriter(OutputWriter writer) {
+		this(writer, false);
+	}
+	
+	/**
+	 * constructor
+	 * @param writer underlying writer
+	 * @param timing true to measure the time spent in the underlying writer
+	 */
+	public CountingOutputWriter(OutputWriter writer, boolean timing) {
+		super(writer.endian);
+		this.writer = writer;
+		this.timing = timing;
+		this.statistics = new IOStatistics();
+	}
+	
+	@Override
+	public void write(int byteValue) throws IOException {
+		long start = timing ? System.nanoTime() : 0;
+		writer.write(byteValue);
+		if(timing) statistics.nanoTime += System.nanoTime() - start;
+		statistics.bytes++;
+	}
+	
+	@Override
+	public void write(byte [] buffer, int offset, int length) throws IOException {
+		long start = timing ? System.nanoTime() : 0;
+		writer.write(buffer, offset, length);
+		if(timing) statistics.nanoTime += System.nanoTime() - start;
+		statistics.bytes += length;
+	}
+	
+	public OutputWriter getWriter() {
+		return writer;
+	}
+	
+	public IOStatistics getStatistics() {
+		return statistics;
+	}
+	
+	private OutputWriter writer;
+	private boolean timing;
+	private IOStatistics statistics;
+	
+}
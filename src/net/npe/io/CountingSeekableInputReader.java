@@ -0,0 +1,124 @@
+/**
+ * CountingSeekableInputReader.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-library.
+ * https://github.com/npedotnet/npe-library
+ *
+ */
+
+package net.npe.io;
+
+import java.io.IOException;
+
+/**
+ * CountingInputReader for a SeekableInputReader.
+ * getPosition() and seek() are forwarded to the underlying reader, so decoders keep seeking over sections.
+ * A seek is counted as skipped bytes of the distance, which is negative for a backward seek.
+ * <p>
+ * PsdImage decodes the parts of a wrapped ByteArrayReader in parallel as well,
+ * and the bytes of those parts are counted as skipped bytes.
+ * </p>
+ */
+public class CountingSeekableInputReader extends SeekableInputReader {
+	
+	public CountingSeekableInputReader(SeekableInputReader reader) {
+		this(reader, false);
+	}
+	
+	/**
+	 * constructor
+	 * @param reader underlying reader
+	 * @param timing true to measure the time spent in the underlying reader
+	 */
+	public CountingSeekableInputReader(SeekableInputReader reader, boolean timing) {
+		super(reader.endian);
+		this.reader = reader;
+		this.counter = new CountingInputReader(reader, timing);
+	}
+	
+	@Override
+	public long getPosition() {
+		return reader.getPosition();
+	}
+	
+	@Override
+	public void seek(long position) throws IOException {
+		counter.seek(position);
+	}
+	
+	@Override
+	public int read() throws IOException {
+		return counter.read();
+	}
+	
+	@Override
+	public void read(byte [] buffer, int offset, int length) throws IOException {
+		counter.read(buffer, offset, length);
+	}
+	
+	@Override
+	public void mark() {
+		counter.mark();
+	}
+	
+	@Override
+	public void reset() throws IOException {
+		counter.reset();
+	}
+	
+	@Override
+	public void skip(int numberOfBytes) throws IOException {
+		counter.skip(numberOfBytes);
+	}
+	
+	@Override
+	public short readShort() throws IOException {
+		return counter.readShort();
+	}
+	
+	@Override
+	public int readInt() throws IOException {
+		return counter.readInt();
+	}
+	
+	@Override
+	public long readLong() throws IOException {
+		return counter.readLong();
+	}
+	
+	@Override
+	public float readFloat() throws IOException {
+		return counter.readFloat();
+	}
+	
+	@Override
+	public double readDouble() throws IOException {
+		return counter.readDouble();
+	}
+	
+	@Override
+	public void readShorts(short [] buffer, int offset, int length) throws IOException {
+		counter.readShorts(buffer, offset, length);
+	}
+	
+	@Override
+	public void readInts(int [] buffer, int offset, int length) throws IOException {
+		counter.readInts(buffer, offset, length);
+	}
+	
+	public SeekableInputReader getReader() {
+		return reader;
+	}
+	
+	public IOStatistics getStatistics() {
+		return counter.getStatistics();
+	}
+	
+	private SeekableInputReader reader;
+	private CountingInputReader counter;
+	
+}
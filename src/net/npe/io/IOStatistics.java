@@ -0,0 +1,86 @@
+/**
+ * IOStatistics.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-library.
+ * https://github.com/npedotnet/npe-library
+ *
+ */
+
+package net.npe.io;
+
+/**
+ * Statistics collected by CountingInputReader, CountingSeekableInputReader and CountingOutputWriter.
+ */
+public class IOStatistics {
+	
+	/**
+	 * get the number of bytes read or written.
+	 * @return the number of bytes
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+	
+	/**
+	 * get the number of bytes skipped. Backward skips are subtracted.
+	 * @return the number of bytes
+	 */
+	public long getSkippedBytes() {
+		return skippedBytes;
+	}
+	
+	public int getMarks() {
+		return marks;
+	}
+	
+	public int getResets() {
+		return resets;
+	}
+	
+	/**
+	 * get the time spent in the underlying reader or writer.
+	 * @return nanoseconds, or 0 if the time is not measured
+	 */
+	public long getNanoTime() {
+		return nanoTime;
+	}
+	
+	/**
+	 * add all the values of the other statistics.
+	 * @param statistics statistics to add
+	 */
+	public void add(IOStatistics statistics) {
+		bytes += statistics.bytes;
+		skippedBytes += statistics.skippedBytes;
+		marks += statistics.marks;
+		resets += statistics.resets;
+		nanoTime += statistics.nanoTime;
+	}
+	
+	/**
+	 * clear all the values.
+	 */
+	public void clear() {
+		bytes = 0;
+		skippedBytes = 0;
+		marks = 0;
+		resets = 0;
+		nanoTime = 0;
+	}
+	
+	@Override
+	public String toString() {
+		return "bytes:"+bytes+", skippedBytes:"+skippedBytes+", marks:"+marks+", resets:"+resets+", nanoTime:"+nanoTime;
+	}
+	
+	long bytes;
+	long skippedBytes;
+	int marks;
+	int resets;
+	long nanoTime;
+	
+}
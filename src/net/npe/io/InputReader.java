@@ -90,6 +90,17 @@ public abstract class InputReader {
 	 * @throws IOException io exception
 	 */
 	public abstract int read() throws IOException;
+	
+	/**
+	 * read length bytes into byte array buffer.
+	 * @param buffer byte array buffer
+	 * @param offset offset in buffer
+	 * @param length number of bytes
+	 * @throws IOException I/O exception
+	 */
+	public void read(byte [] buffer, int offset, int length) throws IOException {
+		for(int i=0; i<length; i++) buffer[i+offset] = (byte)read();
+	}
 
 	/**
 	 * mark current position.
@@ -126,7 +137,8 @@ public abstract class InputReader {
 	 * @throws IOException I/O exception
 	 */
 	public short readShort() throws IOException {
-		return endian.readShort(read(), read());
+		read(works, 0, 2);
+		return endian.readShort(works[0]&0xFF, works[1]&0xFF);
 	}
 	
 	/**
@@ -135,7 +147,8 @@ public abstract class InputReader {
 	 * @throws IOException I/O exception
 	 */
 	public int readInt() throws IOException {
-		return endian.readInt(read(), read(), read(), read());
+		read(works, 0, 4);
+		return endian.readInt(works[0]&0xFF, works[1]&0xFF, works[2]&0xFF, works[3]&0xFF);
 	}
 	
 	/**
@@ -144,7 +157,8 @@ public abstract class InputReader {
 	 * @throws IOException I/O exception
 	 */
 	public long readLong() throws IOException {
-		return endian.readLong(read(), read(), read(), read(), read(), read(), read(), read());
+		read(works, 0, 8);
+		return endian.readLong(works[0]&0xFF, works[1]&0xFF, works[2]&0xFF, works[3]&0xFF, works[4]&0xFF, works[5]&0xFF, works[6]&0xFF, works[7]&0xFF);
 	}
 	
 	/**
@@ -153,7 +167,8 @@ public abstract class InputReader {
 	 * @throws IOException I/O exception
 	 */
 	public float readFloat() throws IOException {
-		return endian.readFloat(read(), read(), read(), read());
+		read(works, 0, 4);
+		return endian.readFloat(works[0]&0xFF, works[1]&0xFF, works[2]&0xFF, works[3]&0xFF);
 	}
 	
 	/**
@@ -162,7 +177,30 @@ public abstract class InputReader {
 	 * @throws IOException I/O exception
 	 */
 	public double readDouble() throws IOException {
-		return endian.readDouble(read(), read(), read(), read(), read(), read(), read(), read());
+		read(works, 0, 8);
+		return endian.readDouble(works[0]&0xFF, works[1]&0xFF, works[2]&0xFF, works[3]&0xFF, works[4]&0xFF, works[5]&0xFF, works[6]&0xFF, works[7]&0xFF);
+	}
+	
+	/**
+	 * read short values with default byte-order.
+	 * @param buffer short array buffer
+	 * @param offset offset in buffer
+	 * @param length number of short values
+	 * @throws IOException I/O exception
+	 */
+	public void readShorts(short [] buffer, int offset, int length) throws IOException {
+		for(int i=0; i<length; i++) buffer[i+offset] = readShort();
+	}
+	
+	/**
+	 * read int values with default byte-order.
+	 * @param buffer int array buffer
+	 * @param offset offset in buffer
+	 * @param length number of int values
+	 * @throws IOException I/O exception
+	 */
+	public void readInts(int [] buffer, int offset, int length) throws IOException {
+		for(int i=0; i<length; i++) buffer[i+offset] = readInt();
 	}
 	
 	/**
@@ -173,7 +211,7 @@ public abstract class InputReader {
 	 */
 	public final String readString(int length) throws IOException {
 		byte [] buffer = new byte[length];
-		for(int i=0; i<length; i++) buffer[i] = (byte)read();
+		read(buffer, 0, length);
 		String value = new String(buffer, 0, length);
 		return value;
 	}
@@ -184,7 +222,8 @@ public abstract class InputReader {
 	 * @throws IOException I/O exception
 	 */
 	public short readBigEndianShort() throws IOException {
-		return BigEndian.readShort(read(), read());
+		read(works, 0, 2);
+		return BigEndian.readShort(works[0]&0xFF, works[1]&0xFF);
 	}
 	
 	/**
@@ -193,7 +232,8 @@ public abstract class InputReader {
 	 * @throws IOException I/O exception
 	 */
 	public int readBigEndianInt() throws IOException {
-		return BigEndian.readInt(read(), read(), read(), read());
+		read(works, 0, 4);
+		return BigEndian.readInt(works[0]&0xFF, works[1]&0xFF, works[2]&0xFF, works[3]&0xFF);
 	}
 	
 	/**
@@ -202,7 +242,8 @@ public abstract class InputReader {
 	 * @throws IOException I/O exception
 	 */
 	public long readBigEndianLong() throws IOException {
-		return BigEndian.readLong(read(), read(), read(), read(), read(), read(), read(), read());
+		read(works, 0, 8);
+		return BigEndian.readLong(works[0]&0xFF, works[1]&0xFF, works[2]&0xFF, works[3]&0xFF, works[4]&0xFF, works[5]&0xFF, works[6]&0xFF, works[7]&0xFF);
 	}
 	
 	/**
@@ -211,7 +252,8 @@ public abstract class InputReader {
 	 * @throws IOException I/O exception
 	 */
 	public float readBigEndianFloat() throws IOException {
-		return BigEndian.readFloat(read(), read(), read(), read());
+		read(works, 0, 4);
+		return BigEndian.readFloat(works[0]&0xFF, works[1]&0xFF, works[2]&0xFF, works[3]&0xFF);
 	}
 	
 	/**
@@ -220,7 +262,8 @@ public abstract class InputReader {
 	 * @throws IOException I/O exception
 	 */
 	public double readBigEndianDouble() throws IOException {
-		return BigEndian.readDouble(read(), read(), read(), read(), read(), read(), read(), read());
+		read(works, 0, 8);
+		return BigEndian.readDouble(works[0]&0xFF, works[1]&0xFF, works[2]&0xFF, works[3]&0xFF, works[4]&0xFF, works[5]&0xFF, works[6]&0xFF, works[7]&0xFF);
 	}
 
 	/**
@@ -229,7 +272,8 @@ public abstract class InputReader {
 	 * @throws IOException I/O exception
 	 */
 	public short readLittleEndianShort() throws IOException {
-		return LittleEndian.readShort(read(), read());
+		read(works, 0, 2);
+		return LittleEndian.readShort(works[0]&0xFF, works[1]&0xFF);
 	}
 	
 	/**
@@ -238,7 +282,8 @@ public abstract class InputReader {
 	 * @throws IOException I/O exception
 	 */
 	public int readLittleEndianInt() throws IOException {
-		return LittleEndian.readInt(read(), read(), read(), read());
+		read(works, 0, 4);
+		return LittleEndian.readInt(works[0]&0xFF, works[1]&0xFF, works[2]&0xFF, works[3]&0xFF);
 	}
 	
 	/**
@@ -247,7 +292,8 @@ public abstract class InputReader {
 	 * @throws IOException I/O exception
 	 */
 	public long readLittleEndianLong() throws IOException {
-		return LittleEndian.readLong(read(), read(), read(), read(), read(), read(), read(), read());
+		read(works, 0, 8);
+		return LittleEndian.readLong(works[0]&0xFF, works[1]&0xFF, works[2]&0xFF, works[3]&0xFF, works[4]&0xFF, works[5]&0xFF, works[6]&0xFF, works[7]&0xFF);
 	}
 	
 	/**
@@ -256,7 +302,8 @@ public abstract class InputReader {
 	 * @throws IOException I/O exception
 	 */
 	public float readLittleEndianFloat() throws IOException {
-		return LittleEndian.readFloat(read(), read(), read(), read());
+		read(works, 0, 4);
+		return LittleEndian.readFloat(works[0]&0xFF, works[1]&0xFF, works[2]&0xFF, works[3]&0xFF);
 	}
 	
 	/**
@@ -265,10 +312,13 @@ public abstract class InputReader {
 	 * @throws IOException I/O exception
 	 */
 	public double readLittleEndianDouble() throws IOException {
-		return LittleEndian.readDouble(read(), read(), read(), read(), read(), read(), read(), read());
+		read(works, 0, 8);
+		return LittleEndian.readDouble(works[0]&0xFF, works[1]&0xFF, works[2]&0xFF, works[3]&0xFF, works[4]&0xFF, works[5]&0xFF, works[6]&0xFF, works[7]&0xFF);
 	}
 	
 	protected ByteOrderReader endian;
+	
+	private byte [] works = new byte[8];
 
 	private static final class BigEndianReader implements ByteOrderReader {
 		@Override
@@ -281,7 +331,7 @@ public abstract class InputReader {
 		}
 		@Override
 		public long readLong(int a, int b, int c, int d, int e, int f, int g, int h) {
-			return a<<56 | b<<48 | c<<40 | d<<32 | e<<24 | f<<16 | g<<8 | h;
+			return (long)a<<56 | (long)b<<48 | (long)c<<40 | (long)d<<32 | (long)e<<24 | f<<16 | g<<8 | h;
 		}
 		@Override
 		public float readFloat(int a, int b, int c, int d) {
@@ -304,7 +354,7 @@ public abstract class InputReader {
 		}
 		@Override
 		public long readLong(int a, int b, int c, int d, int e, int f, int g, int h) {
-			return a | b<<8 | c<<16 | d<<24 | e<<32 | f<<40 | g<<48 | h<<56;
+			return a | b<<8 | c<<16 | (long)d<<24 | (long)e<<32 | (long)f<<40 | (long)g<<48 | (long)h<<56;
 		}
 		@Override
 		public float readFloat(int a, int b, int c, int d) {
@@ -0,0 +1,57 @@
+/**
+ * SeekableInputReader.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-library.
+ * https://github.com/npedotnet/npe-library
+ *
+ */
+
+package net.npe.io;
+
+import java.io.IOException;
+
+/**
+ * InputReader with an absolute position.
+ * mark(), reset() and skip() are implemented with getPosition() and seek().
+ */
+public abstract class SeekableInputReader extends InputReader {
+	
+	public SeekableInputReader(ByteOrderReader endian) {
+		super(endian);
+	}
+	
+	/**
+	 * get the current position.
+	 * @return position
+	 */
+	public abstract long getPosition();
+	
+	/**
+	 * move to the position.
+	 * @param position position
+	 * @throws IOException I/O exception
+	 */
+	public abstract void seek(long position) throws IOException;
+	
+	@Override
+	public void mark() {
+		marker = getPosition();
+	}
+	
+	@Override
+	public void reset() throws IOException {
+		seek(marker);
+	}
+	
+	@Override
+	public void skip(int numberOfBytes) throws IOException {
+		seek(getPosition() + numberOfBytes);
+	}
+	
+	private long marker;
+	
+}
@@ -7,41 +7,165 @@
  * 
  * This file is a part of npe-library.
  * https://github.com/npedotnet/npe-library
- * 
+ *
  */
 
 package net.npe.io;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 
+/**
+ * Buffered InputReader for an InputStream.
+ * <p>
+ * mark/reset does not depend on InputStream.markSupported().
+ * The marked position is kept in the buffer until bufferSize - REWIND_SIZE bytes are read after mark(),
+ * and skip() can move backward by up to REWIND_SIZE bytes (or to the marked position)
+ * unless the previous forward skip went past the buffered bytes.
+ * </p>
+ */
 public class StreamReader extends InputReader {
 	
+	/** default buffer size */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+	
+	/** number of bytes always kept behind the current position for backward skip */
+	public static final int REWIND_SIZE = 64;
+	
 	public StreamReader(InputStream stream, ByteOrderReader endian) {
+		this(stream, endian, DEFAULT_BUFFER_SIZE);
+	}
+	
+	/**
+	 * constructor
+	 * @param stream input stream
+	 * @param endian default ByteOrderReader (LittleEndian or BigEndian)
+	 * @param bufferSize buffer size, which is also the window of mark/reset
+	 */
+	public StreamReader(InputStream stream, ByteOrderReader endian, int bufferSize) {
 		super(endian);
 		this.stream = stream;
+		this.buffer = new byte[Math.max(bufferSize, 2*REWIND_SIZE)];
+		this.marker = -1;
 	}
 	
 	@Override
 	public int read() throws IOException {
-		return stream.read();
+		if(position >= limit && !fill()) return -1;
+		return buffer[position++] & 0xFF;
+	}
+	
+	@Override
+	public void read(byte [] buffer, int offset, int length) throws IOException {
+		
+		// buffered bytes
+		int count = Math.min(length, limit - position);
+		System.arraycopy(this.buffer, position, buffer, offset, count);
+		position += count;
+		offset += count;
+		length -= count;
+		
+		if(length >= this.buffer.length && marker < 0) {
+			// large read, directly from the stream
+			while(length > 0) {
+				count = stream.read(buffer, offset, length);
+				if(count < 0) throw new EOFException();
+				offset += count;
+				length -= count;
+			}
+			// keep the last bytes for backward skip
+			System.arraycopy(buffer, offset-REWIND_SIZE, this.buffer, 0, REWIND_SIZE);
+			position = limit = REWIND_SIZE;
+			return;
+		}
+		
+		while(length > 0) {
+			if(!fill()) throw new EOFException();
+			count = Math.min(length, limit - position);
+			System.arraycopy(this.buffer, position, buffer, offset, count);
+			position += count;
+			offset += count;
+			length -= count;
+		}
+		
 	}
 	
 	@Override
 	public void mark() {
-		stream.mark(0);
+		marker = position;
 	}
 	
 	@Override
 	public void reset() throws IOException {
-		stream.reset();
+		if(marker < 0) throw new IOException("Resetting to invalid mark");
+		position = marker;
 	}
 	
 	@Override
 	public void skip(int numberOfBytes) throws IOException {
-		stream.skip(numberOfBytes);
+		
+		if(numberOfBytes < 0) {
+			if(position + numberOfBytes < 0) throw new IOException("Cannot skip backward: "+numberOfBytes);
+			position += numberOfBytes;
+			return;
+		}
+		
+		// buffered bytes
+		int count = Math.min(numberOfBytes, limit - position);
+		position += count;
+		numberOfBytes -= count;
+		
+		// keep the marked region in the buffer while it fits in the window
+		while(numberOfBytes > 0 && marker >= 0) {
+			if(!fill()) throw new EOFException();
+			count = Math.min(numberOfBytes, limit - position);
+			position += count;
+			numberOfBytes -= count;
+		}
+		
+		if(numberOfBytes > 0) {
+			while(numberOfBytes > 0) {
+				long skipped = stream.skip(numberOfBytes);
+				if(skipped <= 0) {
+					if(stream.read() < 0) throw new EOFException();
+					skipped = 1;
+				}
+				numberOfBytes -= skipped;
+			}
+			position = limit = 0;
+		}
+		
+	}
+	
+	private boolean fill() throws IOException {
+		
+		int start = Math.max(0, ((marker >= 0) ? Math.min(marker, position) : position) - REWIND_SIZE);
+		if(start == 0 && limit == buffer.length) {
+			// the marked region exceeds the window
+			marker = -1;
+			start = Math.max(0, position - REWIND_SIZE);
+		}
+		
+		if(start > 0) {
+			System.arraycopy(buffer, start, buffer, 0, limit - start);
+			position -= start;
+			limit -= start;
+			if(marker >= 0) marker -= start;
+		}
+		
+		int count = stream.read(buffer, limit, buffer.length - limit);
+		if(count <= 0) return false;
+		limit += count;
+		
+		return true;
+		
 	}
 	
 	private InputStream stream;
-
+	private byte [] buffer;
+	private int position;
+	private int limit;
+	private int marker;
+	
 }
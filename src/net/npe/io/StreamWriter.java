@@ -7,7 +7,7 @@
  * 
  * This file is a part of npe-library.
  * https://github.com/npedotnet/npe-library
- * 
+ *
  */
 
 package net.npe.io;
@@ -27,6 +27,11 @@ public class StreamWriter extends OutputWriter {
 		stream.write(byteValue);
 	}
 	
+	@Override
+	public void write(byte [] buffer, int offset, int length) throws IOException {
+		stream.write(buffer, offset, length);
+	}
+	
 	private OutputStream stream;
 
 }
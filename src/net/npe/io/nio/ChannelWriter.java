@@ -0,0 +1,163 @@
+/**
+ * ChannelWriter.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-library.
+ * https://github.com/npedotnet/npe-library
+ *
+ */
+
+package net.npe.io.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import net.npe.io.OutputWriter;
+
+/**
+ * OutputWriter for a WritableByteChannel.
+ * <p>
+ * Small writes are staged in a direct ByteBuffer, which can be shared by writers used one after another.
+ * write(ByteBuffer...) sends the staged bytes and the given buffers with one gathering write,
+ * and transferFrom() copies pre-encoded data from a FileChannel without going through the java heap.
+ * The channel is written only on flush(), close() or when the staging buffer is full.
+ * </p>
+ */
+public class ChannelWriter extends OutputWriter {
+	
+	/** default staging buffer size */
+	public static final int DEFAULT_BUFFER_SIZE = 64*1024;
+	
+	public ChannelWriter(WritableByteChannel channel, ByteOrderWriter endian) {
+		this(channel, endian, ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE));
+	}
+	
+	/**
+	 * constructor
+	 * @param channel output channel
+	 * @param endian default ByteOrderWriter (LittleEndian or BigEndian)
+	 * @param buffer staging buffer, cleared before use
+	 */
+	public ChannelWriter(WritableByteChannel channel, ByteOrderWriter endian, ByteBuffer buffer) {
+		super(endian);
+		this.channel = channel;
+		this.buffer = buffer;
+		buffer.clear();
+	}
+	
+	@Override
+	public void write(int byteValue) throws IOException {
+		if(!buffer.hasRemaining()) flush();
+		buffer.put((byte)byteValue);
+	}
+	
+	@Override
+	public void write(byte [] buffer, int offset, int length) throws IOException {
+		if(length <= this.buffer.remaining()) {
+			this.buffer.put(buffer, offset, length);
+		}
+		else if(length < this.buffer.capacity()) {
+			flush();
+			this.buffer.put(buffer, offset, length);
+		}
+		else {
+			write(ByteBuffer.wrap(buffer, offset, length));
+		}
+	}
+	
+	/**
+	 * write the staged bytes and the remaining bytes of the buffers.
+	 * A GatheringByteChannel receives all of them in one call.
+	 * @param sources buffers to write
+	 * @throws IOException I/O exception
+	 */
+	public void write(ByteBuffer... sources) throws IOException {
+		
+		buffer.flip();
+		
+		if(channel instanceof GatheringByteChannel) {
+			ByteBuffer [] buffers = new ByteBuffer[sources.length+1];
+			buffers[0] = buffer;
+			System.arraycopy(sources, 0, buffers, 1, sources.length);
+			long length = 0;
+			for(int i=0; i<buffers.length; i++) length += buffers[i].remaining();
+			GatheringByteChannel gathering = (GatheringByteChannel)channel;
+			while(length > 0) {
+				length -= gathering.write(buffers);
+			}
+		}
+		else {
+			writeFully(buffer);
+			for(int i=0; i<sources.length; i++) writeFully(sources[i]);
+		}
+		
+		buffer.clear();
+		
+	}
+	
+	/**
+	 * copy bytes from a file channel to the output channel.
+	 * The staged bytes are flushed first.
+	 * @param source source file channel
+	 * @param position position in the source file
+	 * @param count number of bytes
+	 * @throws IOException I/O exception
+	 */
+	public void transferFrom(FileChannel source, long position, long count) throws IOException {
+		flush();
+		while(count > 0) {
+			long transferred = source.transferTo(position, count, channel);
+			if(transferred <= 0) {
+				// some channels are not supported by transferTo, copy through the staging buffer
+				buffer.limit((int)Math.min(count, buffer.capacity()));
+				int n = source.read(buffer, position);
+				buffer.clear();
+				if(n <= 0) throw new IOException("Unexpected end of file: "+position);
+				buffer.position(n);
+				flush();
+				transferred = n;
+			}
+			position += transferred;
+			count -= transferred;
+		}
+	}
+	
+	/**
+	 * write the staged bytes to the channel.
+	 * @throws IOException I/O exception
+	 */
+	public void flush() throws IOException {
+		buffer.flip();
+		writeFully(buffer);
+		buffer.clear();
+	}
+	
+	/**
+	 * flush and close the channel.
+	 * @throws IOException I/O exception
+	 */
+	public void close() throws IOException {
+		try {
+			flush();
+		}
+		finally {
+			channel.close();
+		}
+	}
+	
+	private void writeFully(ByteBuffer source) throws IOException {
+		while(source.hasRemaining()) {
+			channel.write(source);
+		}
+	}
+	
+	private WritableByteChannel channel;
+	private ByteBuffer buffer;
+	
+}
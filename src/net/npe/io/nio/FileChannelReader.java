@@ -0,0 +1,125 @@
+/**
+ * FileChannelReader.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-library.
+ * https://github.com/npedotnet/npe-library
+ *
+ */
+
+package net.npe.io.nio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import net.npe.io.SeekableInputReader;
+
+/**
+ * Buffered InputReader for a FileChannel.
+ * <p>
+ * The channel is read with absolute positions, so its own position is not changed
+ * and seek() within the buffered bytes does not access the file.
+ * </p>
+ */
+public class FileChannelReader extends SeekableInputReader {
+	
+	/** default buffer size */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+	
+	public FileChannelReader(FileChannel channel, ByteOrderReader endian) {
+		this(channel, endian, DEFAULT_BUFFER_SIZE);
+	}
+	
+	/**
+	 * constructor
+	 * @param channel file channel
+	 * @param endian default ByteOrderReader (LittleEndian or BigEndian)
+	 * @param bufferSize buffer size
+	 */
+	public FileChannelReader(FileChannel channel, ByteOrderReader endian, int bufferSize) {
+		super(endian);
+		this.channel = channel;
+		this.buffer = new byte[bufferSize];
+		this.wrapper = ByteBuffer.wrap(buffer);
+		mark();
+	}
+	
+	@Override
+	public int read() throws IOException {
+		if(position >= limit && !fill()) return -1;
+		return buffer[position++] & 0xFF;
+	}
+	
+	@Override
+	public void read(byte [] buffer, int offset, int length) throws IOException {
+		
+		// buffered bytes
+		int count = Math.min(length, limit - position);
+		System.arraycopy(this.buffer, position, buffer, offset, count);
+		position += count;
+		offset += count;
+		length -= count;
+		
+		if(length >= this.buffer.length) {
+			// large read, directly from the channel
+			long filePosition = getPosition();
+			ByteBuffer target = ByteBuffer.wrap(buffer, offset, length);
+			while(target.hasRemaining()) {
+				if(channel.read(target, filePosition + target.position() - offset) < 0) throw new EOFException();
+			}
+			start = filePosition + length;
+			position = limit = 0;
+			return;
+		}
+		
+		while(length > 0) {
+			if(!fill()) throw new EOFException();
+			count = Math.min(length, limit - position);
+			System.arraycopy(this.buffer, position, buffer, offset, count);
+			position += count;
+			offset += count;
+			length -= count;
+		}
+		
+	}
+	
+	@Override
+	public long getPosition() {
+		return start + position;
+	}
+	
+	@Override
+	public void seek(long position) throws IOException {
+		if(position < 0) throw new IOException("Negative position: "+position);
+		if(position >= start && position <= start + limit) {
+			this.position = (int)(position - start);
+		}
+		else {
+			start = position;
+			this.position = limit = 0;
+		}
+	}
+	
+	private boolean fill() throws IOException {
+		start += position;
+		position = limit = 0;
+		wrapper.clear();
+		int count = channel.read(wrapper, start);
+		if(count <= 0) return false;
+		limit = count;
+		return true;
+	}
+	
+	private FileChannel channel;
+	private byte [] buffer;
+	private ByteBuffer wrapper;
+	private long start;
+	private int position;
+	private int limit;
+	
+}
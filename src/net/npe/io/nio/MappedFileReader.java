@@ -0,0 +1,191 @@
+/**
+ * MappedFileReader.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-library.
+ * https://github.com/npedotnet/npe-library
+ *
+ */
+
+package net.npe.io.nio;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import net.npe.io.SeekableInputReader;
+
+/**
+ * InputReader for a memory-mapped file.
+ * <p>
+ * The file is not copied into the java heap. mark, reset and skip only move the buffer position.
+ * </p>
+ */
+public class MappedFileReader extends SeekableInputReader {
+	
+	/**
+	 * constructor
+	 * @param file file to map
+	 * @param endian default ByteOrderReader (LittleEndian or BigEndian)
+	 * @throws IOException I/O exception
+	 */
+	public MappedFileReader(File file, ByteOrderReader endian) throws IOException {
+		super(endian);
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			buffer = map(channel, 0, channel.size());
+		}
+		finally {
+			// the mapping remains valid after the channel is closed
+			raf.close();
+		}
+		initialize();
+	}
+	
+	/**
+	 * constructor
+	 * @param channel file channel
+	 * @param position position in the file
+	 * @param size size of the mapped region
+	 * @param endian default ByteOrderReader (LittleEndian or BigEndian)
+	 * @throws IOException I/O exception
+	 */
+	public MappedFileReader(FileChannel channel, long position, long size, ByteOrderReader endian) throws IOException {
+		super(endian);
+		buffer = map(channel, position, size);
+		initialize();
+	}
+	
+	@Override
+	public int read() {
+		return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+	}
+	
+	@Override
+	public void read(byte [] buffer, int offset, int length) throws IOException {
+		if(this.buffer.remaining() < length) throw new EOFException();
+		this.buffer.get(buffer, offset, length);
+	}
+	
+	@Override
+	public void mark() {
+		marker = buffer.position();
+	}
+	
+	@Override
+	public void reset() {
+		buffer.position(marker);
+	}
+	
+	@Override
+	public void skip(int numberOfBytes) throws IOException {
+		seek((long)buffer.position() + numberOfBytes);
+	}
+	
+	@Override
+	public long getPosition() {
+		return buffer.position();
+	}
+	
+	@Override
+	public void seek(long position) throws IOException {
+		if(position < 0 || position > buffer.limit()) {
+			throw new EOFException("Invalid position: "+position);
+		}
+		buffer.position((int)position);
+	}
+	
+	@Override
+	public short readShort() throws IOException {
+		return usingBufferOrder ? require(2).getShort() : super.readShort();
+	}
+	
+	@Override
+	public int readInt() throws IOException {
+		return usingBufferOrder ? require(4).getInt() : super.readInt();
+	}
+	
+	@Override
+	public long readLong() throws IOException {
+		return usingBufferOrder ? require(8).getLong() : super.readLong();
+	}
+	
+	@Override
+	public float readFloat() throws IOException {
+		return usingBufferOrder ? require(4).getFloat() : super.readFloat();
+	}
+	
+	@Override
+	public double readDouble() throws IOException {
+		return usingBufferOrder ? require(8).getDouble() : super.readDouble();
+	}
+	
+	@Override
+	public void readShorts(short [] buffer, int offset, int length) throws IOException {
+		if(usingBufferOrder) {
+			if(length < 0 || length > this.buffer.remaining() / 2) throw new EOFException();
+			this.buffer.asShortBuffer().get(buffer, offset, length);
+			skip(2*length);
+		}
+		else {
+			super.readShorts(buffer, offset, length);
+		}
+	}
+	
+	@Override
+	public void readInts(int [] buffer, int offset, int length) throws IOException {
+		if(usingBufferOrder) {
+			if(length < 0 || length > this.buffer.remaining() / 4) throw new EOFException();
+			this.buffer.asIntBuffer().get(buffer, offset, length);
+			skip(4*length);
+		}
+		else {
+			super.readInts(buffer, offset, length);
+		}
+	}
+	
+	/**
+	 * get the number of bytes of the mapped region.
+	 * @return the number of bytes
+	 */
+	public int length() {
+		return buffer.limit();
+	}
+	
+	private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+		if(size > Integer.MAX_VALUE) throw new IOException("Too large to map: "+size);
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+	}
+	
+	// throw EOFException at the end of the data as the other readers do, rather than BufferUnderflowException
+	private MappedByteBuffer require(int length) throws EOFException {
+		if(buffer.remaining() < length) throw new EOFException();
+		return buffer;
+	}
+	
+	private void initialize() {
+		// use the ByteBuffer accessors when the default byte-order is one of the predefined readers
+		if(endian == BigEndian) {
+			buffer.order(ByteOrder.BIG_ENDIAN);
+			usingBufferOrder = true;
+		}
+		else if(endian == LittleEndian) {
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			usingBufferOrder = true;
+		}
+		mark();
+	}
+	
+	private MappedByteBuffer buffer;
+	private boolean usingBufferOrder;
+	private int marker;
+	
+}
@@ -0,0 +1,33 @@
+/**
+ * NioBuffers.java
+ * 
+ * Copyright (c) 2015 Kenji Sasaki
+ * Released under the MIT license.
+ * https://github.com/npedotnet/npe-library/blob/master/LICENSE
+ * 
+ * This file is a part of npe-library.
+ * https://github.com/npedotnet/npe-library
+ *
+ */
+
+package net.npe.io.nio;
+
+import java.nio.ByteBuffer;
+
+import net.npe.io.ByteArrayWriter;
+
+public final class NioBuffers {
+	
+	/**
+	 * wrap the written bytes of the writer without copying.
+	 * The returned buffer shares the writer's array, so it is valid until the writer grows or is reset.
+	 * @param writer byte array writer
+	 * @return ByteBuffer of [0, writer.getPosition())
+	 */
+	public static ByteBuffer wrap(ByteArrayWriter writer) {
+		return ByteBuffer.wrap(writer.getBuffer(), 0, writer.getPosition()).slice();
+	}
+	
+	private NioBuffers() {}
+	
+}